@@ -0,0 +1,59 @@
+package ecommerce.entity;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ecommerce.service.CarrinhoFixture;
+
+/**
+ * Mede o cálculo do peso tributável (maior entre peso físico e peso cúbico), com e sem cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProdutoBenchmark {
+
+    @Param({ "1", "10", "100", "10000" })
+    private int tamanho;
+
+    private Produto[] produtos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        produtos = CarrinhoFixture.criarProdutos(tamanho);
+    }
+
+    @Benchmark
+    public void calcularPesoTributavel(Blackhole blackhole) {
+        for (Produto produto : produtos) {
+            blackhole.consume(produto.calcularPesoTributavel());
+        }
+    }
+
+    /**
+     * Peso tributável sem aproveitar o cache: a alteração de dimensão invalida o valor calculado.
+     */
+    @Benchmark
+    public void recalcularPesoTributavel(Blackhole blackhole) {
+        for (Produto produto : produtos) {
+            produto.setAltura(produto.getAltura());
+            blackhole.consume(produto.calcularPesoTributavel());
+        }
+    }
+}
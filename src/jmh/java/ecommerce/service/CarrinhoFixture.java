@@ -0,0 +1,60 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Gera carrinhos determinísticos para os benchmarks: tipos de produto alternados,
+ * itens frágeis e não frágeis, peso físico e dimensões variadas.
+ */
+public final class CarrinhoFixture {
+
+    private static final long SEMENTE = 42L;
+
+    private CarrinhoFixture() {
+    }
+
+    public static CarrinhoDeCompras criarCarrinho(int quantidadeItens) {
+        SplittableRandom random = new SplittableRandom(SEMENTE);
+        TipoProduto[] tipos = TipoProduto.values();
+        List<ItemCompra> itens = new ArrayList<>(quantidadeItens);
+
+        for (int i = 0; i < quantidadeItens; i++) {
+            Produto produto = criarProduto(random, (long) i + 1, tipos[i % tipos.length]);
+            itens.add(new ItemCompra((long) i + 1, produto, (long) random.nextInt(1, 6)));
+        }
+
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(itens);
+        return carrinho;
+    }
+
+    public static Produto[] criarProdutos(int quantidade) {
+        SplittableRandom random = new SplittableRandom(SEMENTE);
+        TipoProduto[] tipos = TipoProduto.values();
+        Produto[] produtos = new Produto[quantidade];
+
+        for (int i = 0; i < quantidade; i++) {
+            produtos[i] = criarProduto(random, (long) i + 1, tipos[i % tipos.length]);
+        }
+        return produtos;
+    }
+
+    private static Produto criarProduto(SplittableRandom random, long id, TipoProduto tipo) {
+        return new Produto(id, "Produto " + id, "Produto gerado para benchmark",
+                BigDecimal.valueOf(random.nextLong(100, 200_000), 2),
+                BigDecimal.valueOf(random.nextLong(10, 2_000), 2),
+                BigDecimal.valueOf(random.nextLong(0, 60)),
+                BigDecimal.valueOf(random.nextLong(0, 60)),
+                BigDecimal.valueOf(random.nextLong(0, 60)),
+                random.nextInt(10) < 3,
+                tipo);
+    }
+}
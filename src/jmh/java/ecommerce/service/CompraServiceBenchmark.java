@@ -0,0 +1,97 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.config.CompraProperties.MotorPrecificacao;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.ResumoCarrinho;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Mede o cálculo de preço do checkout para carrinhos de 1 a 10 mil itens,
+ * em todas as combinações de região e tipo de cliente.
+ * <p>
+ * Use {@code -p tamanho=100 -p regiao=SUL} em {@code jmh.args} para restringir a matriz.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompraServiceBenchmark {
+
+    @Param({ "1", "10", "100", "10000" })
+    private int tamanho;
+
+    @Param({ "SUDESTE", "SUL", "CENTRO_OESTE", "NORDESTE", "NORTE" })
+    private Regiao regiao;
+
+    @Param({ "BRONZE", "PRATA", "OURO" })
+    private TipoCliente tipoCliente;
+
+    @Param({ "BIG_DECIMAL", "PONTO_FIXO" })
+    private MotorPrecificacao motor;
+
+    private CompraService compraService;
+    private CarrinhoDeCompras carrinho;
+    private CarrinhoDeCompras carrinhoComAgregados;
+    private List<ItemCompra> itens;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CompraProperties properties = new CompraProperties();
+        properties.getPrecificacao().setMotor(motor);
+        compraService = new CompraService(null, null, null, null, properties);
+        carrinho = CarrinhoFixture.criarCarrinho(tamanho);
+        itens = carrinho.getItens();
+        carrinhoComAgregados = CarrinhoFixture.criarCarrinho(tamanho);
+        carrinhoComAgregados.recalcularAgregados();
+    }
+
+    @Benchmark
+    public BigDecimal calcularCustoTotal() {
+        return compraService.calcularCustoTotal(carrinho, regiao, tipoCliente);
+    }
+
+    /**
+     * Cotação a partir dos agregados mantidos pelo carrinho: não percorre os itens.
+     */
+    @Benchmark
+    public BigDecimal calcularCustoTotalComAgregados() {
+        return compraService.calcularCustoTotal(carrinhoComAgregados, regiao, tipoCliente);
+    }
+
+    @Benchmark
+    public ResumoCarrinho agregarItens() {
+        return ResumoCarrinho.calcular(itens);
+    }
+
+    @Benchmark
+    public BigDecimal calcularSubTotalItens() {
+        return compraService.calcularDescontoTotal(compraService.calcularSubTotalItens(ResumoCarrinho.calcular(itens)));
+    }
+
+    @Benchmark
+    public BigDecimal calcularFrete() {
+        return compraService.calcularFrete(ResumoCarrinho.calcular(itens), tipoCliente, regiao);
+    }
+}
@@ -0,0 +1,112 @@
+package ecommerce.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import ecommerce.CompraApplication;
+import ecommerce.dto.CarrinhoImportacaoDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ItemCompraRepository;
+import ecommerce.repository.ProdutoRepository;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Mede a importação de um carrinho de 10 mil itens no H2 com os inserts em lotes JDBC
+ * ({@code loteJdbc=50}) e com um insert por linha ({@code loteJdbc=0}). Ao fim, imprime quantos
+ * comandos SQL cada importação preparou.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportacaoCarrinhosBenchmark {
+
+    @Param({ "10000" })
+    private int tamanho;
+
+    @Param({ "0", "50" })
+    private int loteJdbc;
+
+    private ConfigurableApplicationContext contexto;
+    private ImportacaoCarrinhosService importacaoService;
+    private CarrinhoDeComprasRepository carrinhoRepository;
+    private ItemCompraRepository itemRepository;
+    private Statistics statistics;
+    private List<CarrinhoImportacaoDTO> importacao;
+    private long importacoes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = new SpringApplicationBuilder(CompraApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off", "--logging.level.root=WARN",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + loteJdbc,
+                        "--spring.jpa.properties.hibernate.generate_statistics=true",
+                        "--compra.importacao.max-itens=" + tamanho);
+        importacaoService = contexto.getBean(ImportacaoCarrinhosService.class);
+        carrinhoRepository = contexto.getBean(CarrinhoDeComprasRepository.class);
+        itemRepository = contexto.getBean(ItemCompraRepository.class);
+        statistics = contexto.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        Cliente cliente = contexto.getBean(ClienteRepository.class)
+                .save(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+        ProdutoRepository produtoRepository = contexto.getBean(ProdutoRepository.class);
+
+        List<ItemCarrinhoDTO> itens = new ArrayList<>(tamanho);
+        for (ItemCompra item : CarrinhoFixture.criarCarrinho(tamanho).getItens()) {
+            item.getProduto().setId(null);
+            Produto produto = produtoRepository.save(item.getProduto());
+            itens.add(new ItemCarrinhoDTO(produto.getId(), item.getQuantidade()));
+        }
+        importacao = List.of(new CarrinhoImportacaoDTO(cliente.getId(), itens));
+        statistics.clear();
+    }
+
+    @TearDown(Level.Iteration)
+    public void limpar() {
+        itemRepository.deleteAllInBatch();
+        carrinhoRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nloteJdbc=%d: %d comandos SQL preparados por importação de %d itens%n", loteJdbc,
+                importacoes == 0 ? 0 : statistics.getPrepareStatementCount() / importacoes, tamanho);
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<Long> importar() {
+        importacoes++;
+        return importacaoService.importar(importacao);
+    }
+}
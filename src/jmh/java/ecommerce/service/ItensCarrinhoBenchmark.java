@@ -0,0 +1,129 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import ecommerce.CompraApplication;
+import ecommerce.dto.CarrinhoAlteradoDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+
+/**
+ * Compara a alteração de um item pelo {@link ItensCarrinhoService}, que grava só a linha alterada e
+ * cota pelos agregados, com o caminho ingênuo: salvar o carrinho inteiro (merge de todos os itens)
+ * e cotar percorrendo os itens. Sobe a aplicação sem servidor web, sobre o H2 em memória.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItensCarrinhoBenchmark {
+
+    @Param({ "1000" })
+    private int tamanho;
+
+    private ConfigurableApplicationContext contexto;
+    private ItensCarrinhoService itensCarrinhoService;
+    private CarrinhoDeComprasRepository carrinhoRepository;
+    private CompraService compraService;
+
+    private Cliente cliente;
+    private CarrinhoDeCompras carrinhoSalvoInteiro;
+    private Long carrinhoId;
+    private Long itemId;
+    private Long produtoId;
+    private long quantidade;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contexto = new SpringApplicationBuilder(CompraApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off", "--logging.level.root=WARN",
+                        "--compra.cotacao.cache.habilitado=false");
+        itensCarrinhoService = contexto.getBean(ItensCarrinhoService.class);
+        carrinhoRepository = contexto.getBean(CarrinhoDeComprasRepository.class);
+        compraService = contexto.getBean(CompraService.class);
+
+        cliente = contexto.getBean(ClienteRepository.class)
+                .save(new Cliente(null, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE));
+        ProdutoRepository produtoRepository = contexto.getBean(ProdutoRepository.class);
+
+        List<ItemCompra> itens = new ArrayList<>(tamanho);
+        List<ItemCompra> copias = new ArrayList<>(tamanho);
+        for (ItemCompra item : CarrinhoFixture.criarCarrinho(tamanho).getItens()) {
+            item.getProduto().setId(null);
+            var produto = produtoRepository.save(item.getProduto());
+            itens.add(new ItemCompra(null, produto, item.getQuantidade()));
+            copias.add(new ItemCompra(null, produto, item.getQuantidade()));
+        }
+        produtoId = itens.get(0).getProduto().getId();
+
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(null, cliente, itens, LocalDate.now());
+        carrinho.recalcularAgregados();
+        carrinho = carrinhoRepository.save(carrinho);
+        carrinhoId = carrinho.getId();
+        itemId = carrinho.getItens().get(tamanho / 2).getId();
+
+        CarrinhoDeCompras ingenuo = new CarrinhoDeCompras(null, cliente, copias, LocalDate.now());
+        ingenuo.recalcularAgregados();
+        carrinhoSalvoInteiro = carrinhoRepository.save(ingenuo);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public CarrinhoAlteradoDTO alterarQuantidade() {
+        return itensCarrinhoService.alterarQuantidade(carrinhoId, cliente.getId(), null, itemId,
+                1 + (quantidade++ & 3));
+    }
+
+    /**
+     * Inclusão e remoção do mesmo item, para manter o tamanho do carrinho entre as iterações.
+     */
+    @Benchmark
+    public CarrinhoAlteradoDTO adicionarERemoverItem() {
+        CarrinhoAlteradoDTO adicionado = itensCarrinhoService.adicionarItem(carrinhoId, cliente.getId(), null,
+                new ItemCarrinhoDTO(produtoId, 1L));
+        return itensCarrinhoService.removerItem(carrinhoId, cliente.getId(), null, adicionado.itemId());
+    }
+
+    @Benchmark
+    public BigDecimal alterarQuantidadeSalvandoCarrinho() {
+        carrinhoSalvoInteiro.getItens().get(tamanho / 2).setQuantidade(1 + (quantidade++ & 3));
+        carrinhoSalvoInteiro.setItens(carrinhoSalvoInteiro.getItens());
+        carrinhoSalvoInteiro = carrinhoRepository.save(carrinhoSalvoInteiro);
+        return compraService.calcularCustoTotal(carrinhoSalvoInteiro, cliente.getRegiao(), cliente.getTipo());
+    }
+}
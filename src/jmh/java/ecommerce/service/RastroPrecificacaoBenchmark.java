@@ -0,0 +1,69 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ecommerce.dto.ExplicacaoCotacaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Mede o custo do rastro de precificação: o cálculo com BigDecimal sem rastro, o mesmo cálculo
+ * registrando as regras no buffer da thread e a explicação completa, que traduz as regras em DTOs.
+ * <p>
+ * Rode com {@code -prof gc} em {@code jmh.args} para conferir que o registro não aloca.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RastroPrecificacaoBenchmark {
+
+    @Param({ "1", "10", "100", "10000" })
+    private int tamanho;
+
+    private CompraService compraService;
+    private CarrinhoDeCompras carrinho;
+    private List<ItemCompra> itens;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compraService = new CompraService(null, null, null, null);
+        carrinho = CarrinhoFixture.criarCarrinho(tamanho);
+        itens = carrinho.getItens();
+    }
+
+    @Benchmark
+    public BigDecimal calcularSemRastro() {
+        return compraService.calcularCustoTotal(itens, Regiao.NORDESTE, TipoCliente.PRATA, null);
+    }
+
+    @Benchmark
+    public BigDecimal calcularComRastro() {
+        return compraService.calcularCustoTotal(itens, Regiao.NORDESTE, TipoCliente.PRATA,
+                RastroPrecificacao.daThread());
+    }
+
+    @Benchmark
+    public ExplicacaoCotacaoDTO explicarCustoTotal() {
+        return compraService.explicarCustoTotal(carrinho, Regiao.NORDESTE, TipoCliente.PRATA);
+    }
+}
@@ -0,0 +1,148 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.DescontoValorDTO;
+import ecommerce.dto.RegrasPrecificacaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Compara a consulta às regras compiladas (busca binária em arrays ordenados) com a cadeia de ifs
+ * sobre constantes que ela substituiu, e mede cotações enquanto outra thread troca as regras.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegrasPrecificacaoBenchmark {
+
+    private static final int ENTRADAS = 1024;
+
+    private static final BigDecimal DESCONTO_TIPO_5_PERCENT = new BigDecimal("0.05");
+    private static final BigDecimal DESCONTO_TIPO_10_PERCENT = new BigDecimal("0.10");
+    private static final BigDecimal DESCONTO_TIPO_15_PERCENT = new BigDecimal("0.15");
+    private static final BigDecimal VALOR_MIN_DESCONTO_10 = new BigDecimal("500.00");
+    private static final BigDecimal VALOR_MIN_DESCONTO_20 = new BigDecimal("1000.00");
+    private static final BigDecimal LIMITE_PESO_FAIXA_A = new BigDecimal("5.00");
+    private static final BigDecimal LIMITE_PESO_FAIXA_B = new BigDecimal("10.00");
+    private static final BigDecimal LIMITE_PESO_FAIXA_C = new BigDecimal("50.00");
+
+    private RegrasPrecificacao regras;
+    private int[] quantidades;
+    private BigDecimal[] totais;
+    private BigDecimal[] pesos;
+
+    private CompraService compraService;
+    private CarrinhoDeCompras carrinho;
+    private List<RegrasPrecificacaoDTO> alternativas;
+    private int proximaAlternativa;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegrasPrecificacaoDTO padrao = new CompraProperties().getPrecificacao().getRegras().paraDTO();
+        regras = RegrasPrecificacao.compilar(padrao, 1);
+
+        SplittableRandom random = new SplittableRandom(42);
+        quantidades = new int[ENTRADAS];
+        totais = new BigDecimal[ENTRADAS];
+        pesos = new BigDecimal[ENTRADAS];
+        for (int i = 0; i < ENTRADAS; i++) {
+            quantidades[i] = random.nextInt(1, 12);
+            totais[i] = BigDecimal.valueOf(random.nextLong(0, 200_000), 2);
+            pesos[i] = BigDecimal.valueOf(random.nextLong(0, 800_000), 4);
+        }
+
+        compraService = new CompraService(null, null, null, null);
+        carrinho = CarrinhoFixture.criarCarrinho(100);
+        alternativas = List.of(padrao, new RegrasPrecificacaoDTO(null, padrao.descontosCategoria(),
+                List.of(new DescontoValorDTO(new BigDecimal("300.00"), new BigDecimal("0.15"))),
+                padrao.faixasPeso(), padrao.taxaItemFragil(), padrao.fatoresRegiao(), padrao.fatoresCliente()));
+    }
+
+    @Benchmark
+    public void consultarCadeiaDeIfs(Blackhole blackhole) {
+        for (int i = 0; i < ENTRADAS; i++) {
+            blackhole.consume(descontoTipo(quantidades[i]));
+            blackhole.consume(faixaDescontoValor(totais[i]));
+            blackhole.consume(faixaPeso(pesos[i]));
+        }
+    }
+
+    @Benchmark
+    public void consultarRegrasCompiladas(Blackhole blackhole) {
+        for (int i = 0; i < ENTRADAS; i++) {
+            blackhole.consume(regras.descontoCategoria(quantidades[i]));
+            blackhole.consume(regras.indiceDescontoValor(totais[i]));
+            blackhole.consume(regras.indiceFaixa(pesos[i]));
+        }
+    }
+
+    @Benchmark
+    @Group("trocaDeRegras")
+    @GroupThreads(3)
+    public BigDecimal cotarDuranteTroca() {
+        return compraService.calcularCustoTotal(carrinho, Regiao.NORDESTE, TipoCliente.PRATA);
+    }
+
+    @Benchmark
+    @Group("trocaDeRegras")
+    @GroupThreads(1)
+    public RegrasPrecificacaoDTO trocarRegras() {
+        RegrasPrecificacaoDTO proximas = alternativas.get(proximaAlternativa++ & 1);
+        return compraService.substituirRegrasPrecificacao(proximas);
+    }
+
+    private static BigDecimal descontoTipo(int quantidade) {
+        if (quantidade >= 8) {
+            return DESCONTO_TIPO_15_PERCENT;
+        } else if (quantidade >= 5) {
+            return DESCONTO_TIPO_10_PERCENT;
+        } else if (quantidade >= 3) {
+            return DESCONTO_TIPO_5_PERCENT;
+        }
+        return BigDecimal.ZERO;
+    }
+
+    private static int faixaDescontoValor(BigDecimal total) {
+        if (total.compareTo(VALOR_MIN_DESCONTO_20) > 0) {
+            return 1;
+        } else if (total.compareTo(VALOR_MIN_DESCONTO_10) > 0) {
+            return 0;
+        }
+        return -1;
+    }
+
+    private static int faixaPeso(BigDecimal peso) {
+        if (peso.compareTo(LIMITE_PESO_FAIXA_A) <= 0) {
+            return 0;
+        } else if (peso.compareTo(LIMITE_PESO_FAIXA_B) <= 0) {
+            return 1;
+        } else if (peso.compareTo(LIMITE_PESO_FAIXA_C) <= 0) {
+            return 2;
+        }
+        return 3;
+    }
+}
@@ -0,0 +1,36 @@
+package ecommerce.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+import ecommerce.service.FilaDeCancelamentos;
+
+/**
+ * Agenda o envio dos cancelamentos de pagamento pendentes. Usa atraso fixo, então uma rodada
+ * nunca começa antes de a anterior terminar.
+ */
+@Configuration
+@EnableScheduling
+public class CancelamentosConfig implements SchedulingConfigurer
+{
+
+	private final FilaDeCancelamentos filaDeCancelamentos;
+	private final CompraProperties properties;
+
+	@Autowired
+	public CancelamentosConfig(FilaDeCancelamentos filaDeCancelamentos, CompraProperties properties)
+	{
+		this.filaDeCancelamentos = filaDeCancelamentos;
+		this.properties = properties;
+	}
+
+	@Override
+	public void configureTasks(ScheduledTaskRegistrar registrar)
+	{
+		registrar.addFixedDelayTask(filaDeCancelamentos::processarPendentes,
+				properties.getPagamento().getCancelamentos().getIntervalo());
+	}
+}
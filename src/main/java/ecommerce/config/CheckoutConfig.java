@@ -0,0 +1,62 @@
+package ecommerce.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class CheckoutConfig
+{
+
+	/**
+	 * Os executores próprios da aplicação desativam o executor padrão do Spring Boot, usado pelo
+	 * MVC assíncrono (StreamingResponseBody); ele é recriado aqui com a configuração spring.task.execution.
+	 */
+	@Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+	@Primary
+	public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder)
+	{
+		return builder.build();
+	}
+
+	/**
+	 * Executor das etapas paralelas de finalizarCompra. Sem fila: quando todas as threads estão
+	 * ocupadas a etapa roda na própria thread da requisição. Com threads virtuais, cada etapa
+	 * ganha a sua thread e o limite deixa de existir.
+	 */
+	@Bean
+	public Executor checkoutExecutor(CompraProperties properties)
+	{
+		if (properties.getCheckout().isThreadsVirtuais())
+		{
+			return ThreadsVirtuais.novoExecutor();
+		}
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(properties.getCheckout().getThreads());
+		executor.setMaxPoolSize(properties.getCheckout().getThreads());
+		executor.setQueueCapacity(0);
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.setThreadNamePrefix("checkout-");
+		return executor;
+	}
+
+	/**
+	 * Troca o pool de threads do Tomcat por uma thread virtual por requisição, de modo que as
+	 * chamadas bloqueantes a estoque e pagamento não limitem os checkouts simultâneos.
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "compra.checkout", name = "threads-virtuais", havingValue = "true")
+	public TomcatProtocolHandlerCustomizer<?> tomcatThreadsVirtuais()
+	{
+		return protocolHandler -> protocolHandler.setExecutor(ThreadsVirtuais.novoExecutor());
+	}
+}
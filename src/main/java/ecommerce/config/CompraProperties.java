@@ -0,0 +1,872 @@
+package ecommerce.config;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import ecommerce.dto.DescontoQuantidadeDTO;
+import ecommerce.dto.DescontoValorDTO;
+import ecommerce.dto.FaixaPesoDTO;
+import ecommerce.dto.RegrasPrecificacaoDTO;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+@ConfigurationProperties(prefix = "compra")
+public class CompraProperties
+{
+
+	private final Precificacao precificacao = new Precificacao();
+
+	private final CotacaoLote cotacaoLote = new CotacaoLote();
+
+	private final Importacao importacao = new Importacao();
+
+	private final Catalogo catalogo = new Catalogo();
+
+	private final Cotacao cotacao = new Cotacao();
+
+	private final Checkout checkout = new Checkout();
+
+	private final Estoque estoque = new Estoque();
+
+	private final Pagamento pagamento = new Pagamento();
+
+	public Precificacao getPrecificacao()
+	{
+		return precificacao;
+	}
+
+	public CotacaoLote getCotacaoLote()
+	{
+		return cotacaoLote;
+	}
+
+	public Importacao getImportacao()
+	{
+		return importacao;
+	}
+
+	public Catalogo getCatalogo()
+	{
+		return catalogo;
+	}
+
+	public Cotacao getCotacao()
+	{
+		return cotacao;
+	}
+
+	public Checkout getCheckout()
+	{
+		return checkout;
+	}
+
+	public Estoque getEstoque()
+	{
+		return estoque;
+	}
+
+	public Pagamento getPagamento()
+	{
+		return pagamento;
+	}
+
+	public enum MotorPrecificacao
+	{
+		BIG_DECIMAL, PONTO_FIXO
+	}
+
+	public enum DistribuicaoLatencia
+	{
+		FIXA, UNIFORME, EXPONENCIAL
+	}
+
+	public static class Precificacao
+	{
+
+		/**
+		 * Motor usado em calcularCustoTotal. PONTO_FIXO usa long escalado e recorre ao
+		 * BigDecimal quando algum valor não é representável.
+		 */
+		private MotorPrecificacao motor = MotorPrecificacao.BIG_DECIMAL;
+
+		private final Regras regras = new Regras();
+
+		public MotorPrecificacao getMotor()
+		{
+			return motor;
+		}
+
+		public void setMotor(MotorPrecificacao motor)
+		{
+			this.motor = motor;
+		}
+
+		public Regras getRegras()
+		{
+			return regras;
+		}
+	}
+
+	/**
+	 * Regras de precificação carregadas na inicialização. Listas substituem os valores padrão por
+	 * inteiro; os fatores podem ser alterados por região ou tipo de cliente.
+	 */
+	public static class Regras
+	{
+
+		private List<DescontoQuantidadeDTO> descontosCategoria = new ArrayList<>(List.of(
+				new DescontoQuantidadeDTO(3, new BigDecimal("0.05")),
+				new DescontoQuantidadeDTO(5, new BigDecimal("0.10")),
+				new DescontoQuantidadeDTO(8, new BigDecimal("0.15"))));
+
+		private List<DescontoValorDTO> descontosValor = new ArrayList<>(List.of(
+				new DescontoValorDTO(new BigDecimal("500.00"), new BigDecimal("0.10")),
+				new DescontoValorDTO(new BigDecimal("1000.00"), new BigDecimal("0.20"))));
+
+		private List<FaixaPesoDTO> faixasPeso = new ArrayList<>(List.of(
+				new FaixaPesoDTO(new BigDecimal("5.00"), BigDecimal.ZERO, BigDecimal.ZERO),
+				new FaixaPesoDTO(new BigDecimal("10.00"), new BigDecimal("2.00"), new BigDecimal("12.00")),
+				new FaixaPesoDTO(new BigDecimal("50.00"), new BigDecimal("4.00"), new BigDecimal("12.00")),
+				new FaixaPesoDTO(null, new BigDecimal("7.00"), new BigDecimal("12.00"))));
+
+		private BigDecimal taxaItemFragil = new BigDecimal("5.00");
+
+		private final Map<Regiao, BigDecimal> fatoresRegiao = new EnumMap<>(Map.of(
+				Regiao.SUDESTE, new BigDecimal("1.00"),
+				Regiao.SUL, new BigDecimal("1.05"),
+				Regiao.NORDESTE, new BigDecimal("1.10"),
+				Regiao.CENTRO_OESTE, new BigDecimal("1.20"),
+				Regiao.NORTE, new BigDecimal("1.30")));
+
+		private final Map<TipoCliente, BigDecimal> fatoresCliente = new EnumMap<>(Map.of(
+				TipoCliente.BRONZE, BigDecimal.ONE,
+				TipoCliente.PRATA, new BigDecimal("0.50"),
+				TipoCliente.OURO, BigDecimal.ZERO));
+
+		public List<DescontoQuantidadeDTO> getDescontosCategoria()
+		{
+			return descontosCategoria;
+		}
+
+		public void setDescontosCategoria(List<DescontoQuantidadeDTO> descontosCategoria)
+		{
+			this.descontosCategoria = descontosCategoria;
+		}
+
+		public List<DescontoValorDTO> getDescontosValor()
+		{
+			return descontosValor;
+		}
+
+		public void setDescontosValor(List<DescontoValorDTO> descontosValor)
+		{
+			this.descontosValor = descontosValor;
+		}
+
+		public List<FaixaPesoDTO> getFaixasPeso()
+		{
+			return faixasPeso;
+		}
+
+		public void setFaixasPeso(List<FaixaPesoDTO> faixasPeso)
+		{
+			this.faixasPeso = faixasPeso;
+		}
+
+		public BigDecimal getTaxaItemFragil()
+		{
+			return taxaItemFragil;
+		}
+
+		public void setTaxaItemFragil(BigDecimal taxaItemFragil)
+		{
+			this.taxaItemFragil = taxaItemFragil;
+		}
+
+		public Map<Regiao, BigDecimal> getFatoresRegiao()
+		{
+			return fatoresRegiao;
+		}
+
+		public Map<TipoCliente, BigDecimal> getFatoresCliente()
+		{
+			return fatoresCliente;
+		}
+
+		public RegrasPrecificacaoDTO paraDTO()
+		{
+			return new RegrasPrecificacaoDTO(null, descontosCategoria, descontosValor, faixasPeso, taxaItemFragil,
+					fatoresRegiao, fatoresCliente);
+		}
+	}
+
+	public static class CotacaoLote
+	{
+
+		/**
+		 * Threads do pool de cotação em lote; 0 usa o número de processadores.
+		 */
+		private int paralelismo = 0;
+
+		/**
+		 * Máximo de carrinhos aceitos em uma única requisição.
+		 */
+		private int maxCarrinhos = 10_000;
+
+		/**
+		 * Cotações de um mesmo lote submetidas ao pool e ainda não entregues; as seguintes só são
+		 * submetidas à medida que a resposta é escrita.
+		 */
+		private int maxEmAndamento = 64;
+
+		/**
+		 * Capacidade da fila do pool, compartilhada por todos os lotes em andamento.
+		 */
+		private int fila = 1024;
+
+		public int getParalelismo()
+		{
+			return paralelismo;
+		}
+
+		public void setParalelismo(int paralelismo)
+		{
+			this.paralelismo = paralelismo;
+		}
+
+		public int getMaxCarrinhos()
+		{
+			return maxCarrinhos;
+		}
+
+		public void setMaxCarrinhos(int maxCarrinhos)
+		{
+			this.maxCarrinhos = maxCarrinhos;
+		}
+
+		public int getMaxEmAndamento()
+		{
+			return maxEmAndamento;
+		}
+
+		public void setMaxEmAndamento(int maxEmAndamento)
+		{
+			this.maxEmAndamento = maxEmAndamento;
+		}
+
+		public int getFila()
+		{
+			return fila;
+		}
+
+		public void setFila(int fila)
+		{
+			this.fila = fila;
+		}
+	}
+
+	public static class Importacao
+	{
+
+		/**
+		 * Máximo de itens, somados todos os carrinhos, aceitos em uma única importação.
+		 */
+		private int maxItens = 100_000;
+
+		/**
+		 * Itens gravados antes de descarregar e limpar a sessão do Hibernate, que assim não cresce
+		 * com o tamanho da importação.
+		 */
+		private int itensPorDescarga = 1_000;
+
+		public int getMaxItens()
+		{
+			return maxItens;
+		}
+
+		public void setMaxItens(int maxItens)
+		{
+			this.maxItens = maxItens;
+		}
+
+		public int getItensPorDescarga()
+		{
+			return itensPorDescarga;
+		}
+
+		public void setItensPorDescarga(int itensPorDescarga)
+		{
+			this.itensPorDescarga = itensPorDescarga;
+		}
+	}
+
+	public static class Catalogo
+	{
+
+		/**
+		 * Máximo de produtos mantidos no cache do catálogo.
+		 */
+		private long maxEntradas = 10_000;
+
+		/**
+		 * Tempo de vida de um produto no cache a partir do carregamento.
+		 */
+		private Duration ttl = Duration.ofMinutes(10);
+
+		public long getMaxEntradas()
+		{
+			return maxEntradas;
+		}
+
+		public void setMaxEntradas(long maxEntradas)
+		{
+			this.maxEntradas = maxEntradas;
+		}
+
+		public Duration getTtl()
+		{
+			return ttl;
+		}
+
+		public void setTtl(Duration ttl)
+		{
+			this.ttl = ttl;
+		}
+	}
+
+	public static class Cotacao
+	{
+
+		private final CacheCotacao cache = new CacheCotacao();
+
+		/**
+		 * Recalcula o resumo a partir dos itens a cada cotação e compara com os agregados do carrinho.
+		 */
+		private boolean verificarAgregados = false;
+
+		public CacheCotacao getCache()
+		{
+			return cache;
+		}
+
+		public boolean isVerificarAgregados()
+		{
+			return verificarAgregados;
+		}
+
+		public void setVerificarAgregados(boolean verificarAgregados)
+		{
+			this.verificarAgregados = verificarAgregados;
+		}
+	}
+
+	public static class CacheCotacao
+	{
+
+		private boolean habilitado = true;
+
+		/**
+		 * Soma máxima de itens dos carrinhos cujas cotações ficam memorizadas.
+		 */
+		private long maxItens = 1_000_000;
+
+		private Duration ttl = Duration.ofMinutes(30);
+
+		public boolean isHabilitado()
+		{
+			return habilitado;
+		}
+
+		public void setHabilitado(boolean habilitado)
+		{
+			this.habilitado = habilitado;
+		}
+
+		public long getMaxItens()
+		{
+			return maxItens;
+		}
+
+		public void setMaxItens(long maxItens)
+		{
+			this.maxItens = maxItens;
+		}
+
+		public Duration getTtl()
+		{
+			return ttl;
+		}
+
+		public void setTtl(Duration ttl)
+		{
+			this.ttl = ttl;
+		}
+	}
+
+	public static class Checkout
+	{
+
+		/**
+		 * Threads que executam as etapas paralelas do checkout (consulta de estoque e cálculo do custo).
+		 */
+		private int threads = 64;
+
+		/**
+		 * Executa as requisições do Tomcat e as etapas do checkout em threads virtuais (exige Java 21).
+		 */
+		private boolean threadsVirtuais = false;
+
+		/**
+		 * Espera máxima pela compra em andamento do mesmo carrinho.
+		 */
+		private Duration esperaCarrinho = Duration.ofSeconds(10);
+
+		/**
+		 * Travas que serializam compras do mesmo carrinho; carrinhos diferentes só competem quando
+		 * caem na mesma trava. Arredondado para a potência de 2 seguinte.
+		 */
+		private int travasCarrinho = 1024;
+
+		private final Idempotencia idempotencia = new Idempotencia();
+
+		public int getThreads()
+		{
+			return threads;
+		}
+
+		public void setThreads(int threads)
+		{
+			this.threads = threads;
+		}
+
+		public boolean isThreadsVirtuais()
+		{
+			return threadsVirtuais;
+		}
+
+		public void setThreadsVirtuais(boolean threadsVirtuais)
+		{
+			this.threadsVirtuais = threadsVirtuais;
+		}
+
+		public Duration getEsperaCarrinho()
+		{
+			return esperaCarrinho;
+		}
+
+		public void setEsperaCarrinho(Duration esperaCarrinho)
+		{
+			this.esperaCarrinho = esperaCarrinho;
+		}
+
+		public int getTravasCarrinho()
+		{
+			return travasCarrinho;
+		}
+
+		public void setTravasCarrinho(int travasCarrinho)
+		{
+			this.travasCarrinho = travasCarrinho;
+		}
+
+		public Idempotencia getIdempotencia()
+		{
+			return idempotencia;
+		}
+	}
+
+	public static class Idempotencia
+	{
+
+		/**
+		 * Máximo de chaves de idempotência lembradas.
+		 */
+		private long maxChaves = 100_000;
+
+		/**
+		 * Tempo durante o qual uma repetição com a mesma chave devolve a compra já finalizada.
+		 */
+		private Duration ttl = Duration.ofHours(24);
+
+		public long getMaxChaves()
+		{
+			return maxChaves;
+		}
+
+		public void setMaxChaves(long maxChaves)
+		{
+			this.maxChaves = maxChaves;
+		}
+
+		public Duration getTtl()
+		{
+			return ttl;
+		}
+
+		public void setTtl(Duration ttl)
+		{
+			this.ttl = ttl;
+		}
+	}
+
+	public static class Estoque
+	{
+
+		private final EstoqueSimulado simulado = new EstoqueSimulado();
+
+		private final Agrupamento agrupamento = new Agrupamento();
+
+		public EstoqueSimulado getSimulado()
+		{
+			return simulado;
+		}
+
+		public Agrupamento getAgrupamento()
+		{
+			return agrupamento;
+		}
+	}
+
+	public static class EstoqueSimulado
+	{
+
+		/**
+		 * Quantidade inicial de cada produto no estoque em memória.
+		 */
+		private long quantidadePadrao = 1_000;
+
+		/**
+		 * Tempo que uma reserva segura os itens antes de devolvê-los ao estoque.
+		 */
+		private Duration ttlReserva = Duration.ofSeconds(30);
+
+		/**
+		 * Granularidade da expiração de reservas.
+		 */
+		private Duration resolucaoReserva = Duration.ofMillis(100);
+
+		public long getQuantidadePadrao()
+		{
+			return quantidadePadrao;
+		}
+
+		public void setQuantidadePadrao(long quantidadePadrao)
+		{
+			this.quantidadePadrao = quantidadePadrao;
+		}
+
+		public Duration getTtlReserva()
+		{
+			return ttlReserva;
+		}
+
+		public void setTtlReserva(Duration ttlReserva)
+		{
+			this.ttlReserva = ttlReserva;
+		}
+
+		public Duration getResolucaoReserva()
+		{
+			return resolucaoReserva;
+		}
+
+		public void setResolucaoReserva(Duration resolucaoReserva)
+		{
+			this.resolucaoReserva = resolucaoReserva;
+		}
+	}
+
+	public static class Agrupamento
+	{
+
+		/**
+		 * Junta chamadas concorrentes de baixa e de disponibilidade em uma única chamada ao estoque.
+		 */
+		private boolean habilitado = false;
+
+		/**
+		 * Máximo de pedidos em uma chamada agrupada.
+		 */
+		private int maxLote = 64;
+
+		/**
+		 * Tempo máximo que o primeiro pedido de um lote espera pelos demais.
+		 */
+		private Duration atrasoMaximo = Duration.ofMillis(2);
+
+		/**
+		 * Tempo máximo que um pedido espera pelo resultado do seu lote.
+		 */
+		private Duration prazo = Duration.ofSeconds(5);
+
+		public boolean isHabilitado()
+		{
+			return habilitado;
+		}
+
+		public void setHabilitado(boolean habilitado)
+		{
+			this.habilitado = habilitado;
+		}
+
+		public int getMaxLote()
+		{
+			return maxLote;
+		}
+
+		public void setMaxLote(int maxLote)
+		{
+			this.maxLote = maxLote;
+		}
+
+		public Duration getAtrasoMaximo()
+		{
+			return atrasoMaximo;
+		}
+
+		public void setAtrasoMaximo(Duration atrasoMaximo)
+		{
+			this.atrasoMaximo = atrasoMaximo;
+		}
+
+		public Duration getPrazo()
+		{
+			return prazo;
+		}
+
+		public void setPrazo(Duration prazo)
+		{
+			this.prazo = prazo;
+		}
+	}
+
+	public static class Pagamento
+	{
+
+		private final PagamentoSimulado simulado = new PagamentoSimulado();
+
+		private final Resiliencia resiliencia = new Resiliencia();
+
+		private final Cancelamentos cancelamentos = new Cancelamentos();
+
+		public PagamentoSimulado getSimulado()
+		{
+			return simulado;
+		}
+
+		public Resiliencia getResiliencia()
+		{
+			return resiliencia;
+		}
+
+		public Cancelamentos getCancelamentos()
+		{
+			return cancelamentos;
+		}
+	}
+
+	public static class PagamentoSimulado
+	{
+
+		/**
+		 * FIXA sempre responde na latência média; UNIFORME sorteia entre zero e o dobro dela;
+		 * EXPONENCIAL tem a mesma média com cauda longa.
+		 */
+		private DistribuicaoLatencia distribuicao = DistribuicaoLatencia.FIXA;
+
+		private Duration latenciaMedia = Duration.ZERO;
+
+		/**
+		 * Fração das autorizações recusadas, entre 0 e 1.
+		 */
+		private double taxaRecusa = 0.0;
+
+		public DistribuicaoLatencia getDistribuicao()
+		{
+			return distribuicao;
+		}
+
+		public void setDistribuicao(DistribuicaoLatencia distribuicao)
+		{
+			this.distribuicao = distribuicao;
+		}
+
+		public Duration getLatenciaMedia()
+		{
+			return latenciaMedia;
+		}
+
+		public void setLatenciaMedia(Duration latenciaMedia)
+		{
+			this.latenciaMedia = latenciaMedia;
+		}
+
+		public double getTaxaRecusa()
+		{
+			return taxaRecusa;
+		}
+
+		public void setTaxaRecusa(double taxaRecusa)
+		{
+			this.taxaRecusa = taxaRecusa;
+		}
+	}
+
+	public static class Resiliencia
+	{
+
+		private boolean habilitado = true;
+
+		/**
+		 * Tempo máximo de espera por uma autorização, somando as tentativas.
+		 */
+		private Duration prazo = Duration.ofSeconds(2);
+
+		/**
+		 * Autorizações simultâneas; acima disso a chamada é recusada na hora.
+		 */
+		private int maxConcorrentes = 100;
+
+		/**
+		 * Falhas seguidas que abrem o circuito.
+		 */
+		private int limiteFalhas = 5;
+
+		/**
+		 * Tempo com o circuito aberto antes de deixar passar uma chamada de teste.
+		 */
+		private Duration tempoAberto = Duration.ofSeconds(10);
+
+		/**
+		 * Espera pela primeira resposta antes de disparar uma segunda tentativa; zero desativa.
+		 */
+		private Duration atrasoTentativaExtra = Duration.ZERO;
+
+		public boolean isHabilitado()
+		{
+			return habilitado;
+		}
+
+		public void setHabilitado(boolean habilitado)
+		{
+			this.habilitado = habilitado;
+		}
+
+		public Duration getPrazo()
+		{
+			return prazo;
+		}
+
+		public void setPrazo(Duration prazo)
+		{
+			this.prazo = prazo;
+		}
+
+		public int getMaxConcorrentes()
+		{
+			return maxConcorrentes;
+		}
+
+		public void setMaxConcorrentes(int maxConcorrentes)
+		{
+			this.maxConcorrentes = maxConcorrentes;
+		}
+
+		public int getLimiteFalhas()
+		{
+			return limiteFalhas;
+		}
+
+		public void setLimiteFalhas(int limiteFalhas)
+		{
+			this.limiteFalhas = limiteFalhas;
+		}
+
+		public Duration getTempoAberto()
+		{
+			return tempoAberto;
+		}
+
+		public void setTempoAberto(Duration tempoAberto)
+		{
+			this.tempoAberto = tempoAberto;
+		}
+
+		public Duration getAtrasoTentativaExtra()
+		{
+			return atrasoTentativaExtra;
+		}
+
+		public void setAtrasoTentativaExtra(Duration atrasoTentativaExtra)
+		{
+			this.atrasoTentativaExtra = atrasoTentativaExtra;
+		}
+	}
+
+	public static class Cancelamentos
+	{
+
+		/**
+		 * Intervalo entre o fim de uma rodada de envio dos cancelamentos pendentes e o início da próxima.
+		 */
+		private Duration intervalo = Duration.ofSeconds(1);
+
+		/**
+		 * Cancelamentos lidos do banco por vez.
+		 */
+		private int lote = 100;
+
+		/**
+		 * Espera antes de repetir um cancelamento que falhou; dobra a cada nova falha.
+		 */
+		private Duration atrasoInicial = Duration.ofSeconds(1);
+
+		private Duration atrasoMaximo = Duration.ofMinutes(5);
+
+		public Duration getIntervalo()
+		{
+			return intervalo;
+		}
+
+		public void setIntervalo(Duration intervalo)
+		{
+			this.intervalo = intervalo;
+		}
+
+		public int getLote()
+		{
+			return lote;
+		}
+
+		public void setLote(int lote)
+		{
+			this.lote = lote;
+		}
+
+		public Duration getAtrasoInicial()
+		{
+			return atrasoInicial;
+		}
+
+		public void setAtrasoInicial(Duration atrasoInicial)
+		{
+			this.atrasoInicial = atrasoInicial;
+		}
+
+		public Duration getAtrasoMaximo()
+		{
+			return atrasoMaximo;
+		}
+
+		public void setAtrasoMaximo(Duration atrasoMaximo)
+		{
+			this.atrasoMaximo = atrasoMaximo;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package ecommerce.config;
+
+import java.util.concurrent.Executor;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class CotacaoLoteConfig
+{
+
+	/**
+	 * Pool dedicado à cotação em lote, para não competir com o pool comum da JVM. Threads e fila
+	 * limitadas: com a fila cheia, ou o pool já encerrado, a cotação roda na própria thread que escreve
+	 * a resposta, para que nenhum carrinho do lote fique sem resultado.
+	 */
+	@Bean
+	public Executor cotacaoLoteExecutor(CompraProperties properties)
+	{
+		int paralelismo = properties.getCotacaoLote().getParalelismo();
+		int threads = paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors();
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(threads);
+		executor.setMaxPoolSize(threads);
+		executor.setQueueCapacity(properties.getCotacaoLote().getFila());
+		executor.setRejectedExecutionHandler((tarefa, pool) -> tarefa.run());
+		executor.setThreadNamePrefix("cotacao-lote-");
+		return executor;
+	}
+}
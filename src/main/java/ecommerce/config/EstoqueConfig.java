@@ -0,0 +1,29 @@
+package ecommerce.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import ecommerce.external.EstoqueExternalAgrupado;
+import ecommerce.external.fake.EstoqueSimulado;
+
+@Configuration
+public class EstoqueConfig
+{
+
+	/**
+	 * Com o agrupamento habilitado, o checkout passa a falar com o estoque através do decorador,
+	 * que junta as chamadas concorrentes antes de repassá-las ao estoque simulado.
+	 */
+	@Bean(destroyMethod = "close")
+	@Primary
+	@ConditionalOnProperty(prefix = "compra.estoque.agrupamento", name = "habilitado", havingValue = "true")
+	public EstoqueExternalAgrupado estoqueExternalAgrupado(EstoqueSimulado estoqueSimulado,
+			CompraProperties properties)
+	{
+		CompraProperties.Agrupamento agrupamento = properties.getEstoque().getAgrupamento();
+		return new EstoqueExternalAgrupado(estoqueSimulado, agrupamento.getMaxLote(), agrupamento.getAtrasoMaximo(),
+				agrupamento.getPrazo());
+	}
+}
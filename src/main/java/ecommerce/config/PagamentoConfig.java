@@ -0,0 +1,31 @@
+package ecommerce.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import ecommerce.external.PagamentoExternalResiliente;
+import ecommerce.external.fake.PagamentoSimulado;
+
+@Configuration
+public class PagamentoConfig
+{
+
+	/**
+	 * O checkout fala com o gateway simulado através do cliente resiliente, salvo quando
+	 * compra.pagamento.resiliencia.habilitado=false.
+	 */
+	@Bean(destroyMethod = "close")
+	@Primary
+	@ConditionalOnProperty(prefix = "compra.pagamento.resiliencia", name = "habilitado", havingValue = "true",
+			matchIfMissing = true)
+	public PagamentoExternalResiliente pagamentoExternalResiliente(PagamentoSimulado pagamentoSimulado,
+			CompraProperties properties)
+	{
+		CompraProperties.Resiliencia resiliencia = properties.getPagamento().getResiliencia();
+		return new PagamentoExternalResiliente(pagamentoSimulado, resiliencia.getPrazo(),
+				resiliencia.getMaxConcorrentes(), resiliencia.getLimiteFalhas(), resiliencia.getTempoAberto(),
+				resiliencia.getAtrasoTentativaExtra());
+	}
+}
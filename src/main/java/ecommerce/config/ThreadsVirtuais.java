@@ -0,0 +1,44 @@
+package ecommerce.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Acesso às threads virtuais (Java 21) a partir do código compilado para Java 17.
+ * O executor é obtido por reflexão para que o mesmo fonte compile nos dois perfis.
+ */
+public final class ThreadsVirtuais
+{
+
+	private ThreadsVirtuais()
+	{
+	}
+
+	public static boolean disponiveis()
+	{
+		return Runtime.version().feature() >= 21;
+	}
+
+	/**
+	 * Cria um executor que inicia uma thread virtual por tarefa.
+	 *
+	 * @throws IllegalStateException se a JVM não suportar threads virtuais
+	 */
+	public static ExecutorService novoExecutor()
+	{
+		if (!disponiveis())
+		{
+			throw new IllegalStateException(
+					"Threads virtuais exigem Java 21 ou superior (JVM atual: " + Runtime.version().feature() + ").");
+		}
+
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("Não foi possível criar o executor de threads virtuais.", e);
+		}
+	}
+}
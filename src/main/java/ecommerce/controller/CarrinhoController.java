@@ -0,0 +1,106 @@
+package ecommerce.controller;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import ecommerce.dto.CarrinhoAlteradoDTO;
+import ecommerce.dto.CarrinhoImportacaoDTO;
+import ecommerce.dto.ImportacaoCarrinhosDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.service.ImportacaoCarrinhosService;
+import ecommerce.service.ItensCarrinhoService;
+import ecommerce.service.MetricasCompra;
+
+/**
+ * Importação de carrinhos e alteração dos itens de um carrinho. Cada alteração responde com a nova
+ * versão do carrinho e a cotação atualizada; enviada em {@code versao}, a versão faz a alteração
+ * falhar com 409 se outra requisição alterou o carrinho desde a leitura.
+ */
+@RestController
+@RequestMapping("/carrinhos")
+public class CarrinhoController
+{
+
+	private final ItensCarrinhoService itensCarrinhoService;
+	private final ImportacaoCarrinhosService importacaoCarrinhosService;
+	private final MetricasCompra metricasCompra;
+
+	@Autowired
+	public CarrinhoController(ItensCarrinhoService itensCarrinhoService,
+			ImportacaoCarrinhosService importacaoCarrinhosService, MetricasCompra metricasCompra)
+	{
+		this.itensCarrinhoService = itensCarrinhoService;
+		this.importacaoCarrinhosService = importacaoCarrinhosService;
+		this.metricasCompra = metricasCompra;
+	}
+
+	/**
+	 * Cria os carrinhos enviados, com seus itens, em uma única transação.
+	 */
+	@PostMapping("/importacao")
+	public ResponseEntity<ImportacaoCarrinhosDTO> importar(@RequestBody List<CarrinhoImportacaoDTO> carrinhos)
+	{
+		try
+		{
+			return ResponseEntity.ok(new ImportacaoCarrinhosDTO(true, importacaoCarrinhosService.importar(carrinhos),
+					null));
+		}
+		catch (IllegalArgumentException e)
+		{
+			metricasCompra.registrarFalha("carrinho-importacao", HttpStatus.BAD_REQUEST.value(), e);
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+					.body(new ImportacaoCarrinhosDTO(false, null, e.getMessage()));
+		}
+	}
+
+	@PostMapping("/{carrinhoId}/itens")
+	public ResponseEntity<CarrinhoAlteradoDTO> adicionarItem(@PathVariable Long carrinhoId, @RequestParam Long clienteId,
+			@RequestParam(required = false) Long versao, @RequestBody ItemCarrinhoDTO item)
+	{
+		return alterar("carrinho-item-adicionar", carrinhoId,
+				() -> itensCarrinhoService.adicionarItem(carrinhoId, clienteId, versao, item));
+	}
+
+	@PutMapping("/{carrinhoId}/itens/{itemId}")
+	public ResponseEntity<CarrinhoAlteradoDTO> alterarQuantidade(@PathVariable Long carrinhoId,
+			@PathVariable Long itemId, @RequestParam Long clienteId, @RequestParam(required = false) Long versao,
+			@RequestParam Long quantidade)
+	{
+		return alterar("carrinho-item-alterar", carrinhoId,
+				() -> itensCarrinhoService.alterarQuantidade(carrinhoId, clienteId, versao, itemId, quantidade));
+	}
+
+	@DeleteMapping("/{carrinhoId}/itens/{itemId}")
+	public ResponseEntity<CarrinhoAlteradoDTO> removerItem(@PathVariable Long carrinhoId, @PathVariable Long itemId,
+			@RequestParam Long clienteId, @RequestParam(required = false) Long versao)
+	{
+		return alterar("carrinho-item-remover", carrinhoId,
+				() -> itensCarrinhoService.removerItem(carrinhoId, clienteId, versao, itemId));
+	}
+
+	private ResponseEntity<CarrinhoAlteradoDTO> alterar(String operacao, Long carrinhoId,
+			Supplier<CarrinhoAlteradoDTO> alteracao)
+	{
+		try
+		{
+			return ResponseEntity.ok(alteracao.get());
+		}
+		catch (IllegalArgumentException e)
+		{
+			metricasCompra.registrarFalha(operacao, HttpStatus.BAD_REQUEST.value(), e);
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+					.body(new CarrinhoAlteradoDTO(false, carrinhoId, null, null, null, e.getMessage()));
+		}
+		catch (IllegalStateException e)
+		{
+			metricasCompra.registrarFalha(operacao, HttpStatus.CONFLICT.value(), e);
+			return ResponseEntity.status(HttpStatus.CONFLICT)
+					.body(new CarrinhoAlteradoDTO(false, carrinhoId, null, null, null, e.getMessage()));
+		}
+	}
+}
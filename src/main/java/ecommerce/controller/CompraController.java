@@ -1,12 +1,28 @@
 package ecommerce.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ecommerce.dto.CompraDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoLoteDTO;
+import ecommerce.dto.RegrasPrecificacaoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
 import ecommerce.service.CompraService;
+import ecommerce.service.CotacaoLoteService;
+import ecommerce.service.IdempotenciaCompra;
+import ecommerce.service.MetricasCompra;
 
 @RestController
 @RequestMapping("/")
@@ -14,33 +30,179 @@ public class CompraController
 {
 
 	private final CompraService compraService;
+	private final CotacaoLoteService cotacaoLoteService;
+	private final IdempotenciaCompra idempotenciaCompra;
+	private final MetricasCompra metricasCompra;
+	private final ObjectMapper objectMapper;
 
 	@Autowired
-	public CompraController(CompraService compraService)
+	public CompraController(CompraService compraService, CotacaoLoteService cotacaoLoteService,
+			IdempotenciaCompra idempotenciaCompra, MetricasCompra metricasCompra, ObjectMapper objectMapper)
 	{
 		this.compraService = compraService;
+		this.cotacaoLoteService = cotacaoLoteService;
+		this.idempotenciaCompra = idempotenciaCompra;
+		this.metricasCompra = metricasCompra;
+		this.objectMapper = objectMapper;
 	}
 
+	/**
+	 * Com o cabeçalho Idempotency-Key, repetições da mesma requisição devolvem a compra já
+	 * finalizada em vez de cobrar de novo. Com {@code versao}, a compra só acontece se o carrinho
+	 * não mudou desde a leitura; um carrinho já comprado ou alterado responde 409.
+	 */
 	@PostMapping("/finalizar")
-	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId)
+	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId,
+			@RequestParam(required = false) Long versao,
+			@RequestHeader(name = "Idempotency-Key", required = false) String chaveIdempotencia)
 	{
 		try
 		{
-			CompraDTO compraDTO = compraService.finalizarCompra(carrinhoId, clienteId);
+			CompraDTO compraDTO = idempotenciaCompra.executar(chaveIdempotencia, clienteId, carrinhoId,
+					() -> compraService.finalizarCompra(carrinhoId, clienteId, versao));
 			return ResponseEntity.ok(compraDTO);
 		}
 		catch (IllegalArgumentException e)
 		{
+			metricasCompra.registrarFalha("finalizar", HttpStatus.BAD_REQUEST.value(), e);
 			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CompraDTO(false, null, e.getMessage()));
 		}
 		catch (IllegalStateException e)
 		{
+			metricasCompra.registrarFalha("finalizar", HttpStatus.CONFLICT.value(), e);
 			return ResponseEntity.status(HttpStatus.CONFLICT).body(new CompraDTO(false, null, e.getMessage()));
 		}
 		catch (Exception e)
 		{
+			metricasCompra.registrarFalha("finalizar", HttpStatus.INTERNAL_SERVER_ERROR.value(), e);
 			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
 					.body(new CompraDTO(false, null, "Erro ao processar compra."));
 		}
 	}
+
+	/**
+	 * Cota vários carrinhos em paralelo. A resposta é NDJSON: uma {@link CotacaoDTO} por linha,
+	 * escrita assim que cada cotação termina.
+	 */
+	@PostMapping("/carrinhos/cotacao-lote")
+	public ResponseEntity<StreamingResponseBody> cotarLote(@RequestBody CotacaoLoteDTO lote)
+	{
+		try
+		{
+			cotacaoLoteService.validarLote(lote);
+		}
+		catch (IllegalArgumentException e)
+		{
+			metricasCompra.registrarFalha("cotacao-lote", HttpStatus.BAD_REQUEST.value(), e);
+			CotacaoDTO erro = new CotacaoDTO(false, null, null, null, e.getMessage());
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_NDJSON)
+					.body(saida -> escreverLinha(saida, erro));
+		}
+
+		StreamingResponseBody corpo = saida -> cotacaoLoteService.cotarLote(lote,
+				cotacao -> escreverLinha(saida, cotacao));
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(corpo);
+	}
+
+	/**
+	 * Cota um carrinho em streaming (NDJSON): uma linha por categoria, o detalhamento do frete e o
+	 * total, nessa ordem. A escrita bloqueia enquanto o cliente não consome, sem acumular a resposta.
+	 */
+	@GetMapping("/carrinhos/{carrinhoId}/cotacao")
+	public ResponseEntity<StreamingResponseBody> cotarEmEtapas(@PathVariable Long carrinhoId,
+			@RequestParam Long clienteId)
+	{
+		CarrinhoDeCompras carrinho;
+		try
+		{
+			carrinho = compraService.buscarCarrinhoParaCotacao(carrinhoId, clienteId);
+		}
+		catch (IllegalArgumentException e)
+		{
+			metricasCompra.registrarFalha("cotacao", HttpStatus.BAD_REQUEST.value(), e);
+			CotacaoDTO erro = new CotacaoDTO(false, carrinhoId, null, null, e.getMessage());
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_NDJSON)
+					.body(saida -> escreverLinha(saida, erro));
+		}
+
+		Cliente cliente = carrinho.getCliente();
+		StreamingResponseBody corpo = saida -> {
+			try
+			{
+				compraService.cotarEmEtapas(carrinho, cliente.getRegiao(), cliente.getTipo(),
+						etapa -> escreverLinha(saida, etapa));
+			}
+			catch (IllegalArgumentException e)
+			{
+				metricasCompra.registrarFalha("cotacao", HttpStatus.OK.value(), e);
+				escreverLinha(saida, new CotacaoDTO(false, carrinhoId, null, null, e.getMessage()));
+			}
+		};
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(corpo);
+	}
+
+	/**
+	 * Explica a cotação de um carrinho: o total e cada regra de precificação que o determinou.
+	 */
+	@GetMapping("/carrinhos/{carrinhoId}/cotacao/explicacao")
+	public ResponseEntity<?> explicarCotacao(@PathVariable Long carrinhoId, @RequestParam Long clienteId)
+	{
+		try
+		{
+			CarrinhoDeCompras carrinho = compraService.buscarCarrinhoParaCotacao(carrinhoId, clienteId);
+			Cliente cliente = carrinho.getCliente();
+			return ResponseEntity.ok(compraService.explicarCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo()));
+		}
+		catch (IllegalArgumentException e)
+		{
+			metricasCompra.registrarFalha("cotacao-explicacao", HttpStatus.BAD_REQUEST.value(), e);
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+					.body(new CotacaoDTO(false, carrinhoId, null, null, e.getMessage()));
+		}
+	}
+
+	@GetMapping("/precificacao/regras")
+	public ResponseEntity<RegrasPrecificacaoDTO> regrasPrecificacao()
+	{
+		return ResponseEntity.ok(compraService.regrasPrecificacao());
+	}
+
+	/**
+	 * Troca as regras de precificação sem reiniciar a aplicação. Com {@code versao} no corpo, a troca
+	 * só acontece se ninguém alterou as regras desde a leitura; caso contrário, responde 409.
+	 */
+	@PutMapping("/precificacao/regras")
+	public ResponseEntity<?> substituirRegrasPrecificacao(@RequestBody RegrasPrecificacaoDTO regras)
+	{
+		try
+		{
+			return ResponseEntity.ok(compraService.substituirRegrasPrecificacao(regras));
+		}
+		catch (IllegalArgumentException e)
+		{
+			metricasCompra.registrarFalha("precificacao-regras", HttpStatus.BAD_REQUEST.value(), e);
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CompraDTO(false, null, e.getMessage()));
+		}
+		catch (IllegalStateException e)
+		{
+			metricasCompra.registrarFalha("precificacao-regras", HttpStatus.CONFLICT.value(), e);
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(new CompraDTO(false, null, e.getMessage()));
+		}
+	}
+
+	private void escreverLinha(OutputStream saida, Object valor)
+	{
+		try
+		{
+			saida.write(objectMapper.writeValueAsBytes(valor));
+			saida.write('\n');
+			saida.flush();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
 }
@@ -0,0 +1,12 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Resultado de uma alteração de itens do carrinho: a nova versão, a ser enviada na próxima
+ * alteração, e a cotação atualizada. itemId identifica o item incluído ou alterado.
+ */
+public record CarrinhoAlteradoDTO(Boolean sucesso, Long carrinhoId, Long versao, Long itemId, BigDecimal custoTotal,
+		String mensagem)
+{
+}
@@ -0,0 +1,10 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+public record CarrinhoCotacaoDTO(Regiao regiao, TipoCliente tipoCliente, List<ItemCarrinhoDTO> itens)
+{
+}
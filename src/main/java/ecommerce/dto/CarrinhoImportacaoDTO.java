@@ -0,0 +1,7 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+public record CarrinhoImportacaoDTO(Long clienteId, List<ItemCarrinhoDTO> itens)
+{
+}
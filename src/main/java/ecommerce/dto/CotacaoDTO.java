@@ -0,0 +1,11 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Resultado da cotação de um carrinho. Carrinhos persistidos são identificados por
+ * carrinhoId; carrinhos enviados no corpo, pela posição (indice) na lista do lote.
+ */
+public record CotacaoDTO(Boolean sucesso, Long carrinhoId, Integer indice, BigDecimal custoTotal, String mensagem)
+{
+}
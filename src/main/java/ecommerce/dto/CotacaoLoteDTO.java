@@ -0,0 +1,10 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * Lote de cotação: carrinhos persistidos (por id) e/ou carrinhos enviados no corpo.
+ */
+public record CotacaoLoteDTO(List<Long> carrinhosIds, List<CarrinhoCotacaoDTO> carrinhos)
+{
+}
@@ -0,0 +1,10 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Desconto aplicado ao subtotal de uma categoria com pelo menos {@code quantidadeMinima} unidades.
+ */
+public record DescontoQuantidadeDTO(Integer quantidadeMinima, BigDecimal percentual)
+{
+}
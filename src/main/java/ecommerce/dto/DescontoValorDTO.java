@@ -0,0 +1,10 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Desconto aplicado ao subtotal dos itens quando ele é maior que {@code valorMinimo}.
+ */
+public record DescontoValorDTO(BigDecimal valorMinimo, BigDecimal percentual)
+{
+}
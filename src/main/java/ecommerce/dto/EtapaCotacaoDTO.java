@@ -0,0 +1,11 @@
+package ecommerce.dto;
+
+/**
+ * Parte de uma cotação emitida em streaming. O campo etapa identifica o tipo da linha
+ * (CATEGORIA, FRETE ou TOTAL).
+ */
+public interface EtapaCotacaoDTO
+{
+
+	String etapa();
+}
@@ -0,0 +1,8 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record ExplicacaoCotacaoDTO(BigDecimal custoTotal, List<RegraAplicadaDTO> regras)
+{
+}
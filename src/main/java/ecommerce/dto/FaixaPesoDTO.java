@@ -0,0 +1,10 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Faixa de frete para pesos tributáveis até {@code pesoMaximo}; a última faixa não tem limite.
+ */
+public record FaixaPesoDTO(BigDecimal pesoMaximo, BigDecimal valorKg, BigDecimal taxaMinima)
+{
+}
@@ -0,0 +1,15 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+public record FreteDTO(String etapa, BigDecimal pesoTributavelTotal, String faixa, BigDecimal valorKg,
+		BigDecimal taxaMinima, BigDecimal taxaItensFrageis, BigDecimal fatorRegiao, BigDecimal total)
+		implements EtapaCotacaoDTO
+{
+
+	public FreteDTO(BigDecimal pesoTributavelTotal, String faixa, BigDecimal valorKg, BigDecimal taxaMinima,
+			BigDecimal taxaItensFrageis, BigDecimal fatorRegiao, BigDecimal total)
+	{
+		this("FRETE", pesoTributavelTotal, faixa, valorKg, taxaMinima, taxaItensFrageis, fatorRegiao, total);
+	}
+}
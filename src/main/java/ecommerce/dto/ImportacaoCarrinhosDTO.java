@@ -0,0 +1,10 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * Resultado da importação: os ids dos carrinhos criados, na ordem em que foram enviados.
+ */
+public record ImportacaoCarrinhosDTO(Boolean sucesso, List<Long> carrinhosIds, String mensagem)
+{
+}
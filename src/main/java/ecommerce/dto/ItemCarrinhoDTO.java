@@ -0,0 +1,5 @@
+package ecommerce.dto;
+
+public record ItemCarrinhoDTO(Long produtoId, Long quantidade)
+{
+}
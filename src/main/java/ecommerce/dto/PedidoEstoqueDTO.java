@@ -0,0 +1,10 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+/**
+ * Itens de um pedido ao estoque; {@code reservaId} só é informado na confirmação de uma reserva.
+ */
+public record PedidoEstoqueDTO(Long reservaId, List<Long> produtosIds, List<Long> produtosQuantidades)
+{
+}
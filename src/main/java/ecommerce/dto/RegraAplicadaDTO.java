@@ -0,0 +1,11 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Regra de precificação aplicada a uma cotação. {@code alvo} é a categoria, região ou tipo de
+ * cliente a que a regra se refere, quando há; {@code valor} é o percentual, fator ou taxa usado.
+ */
+public record RegraAplicadaDTO(String regra, String alvo, String decisao, BigDecimal valor)
+{
+}
@@ -0,0 +1,19 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Tabela de regras de precificação. {@code fatoresCliente} multiplica o frete já ajustado pela
+ * região: 1 não altera, 0 isenta. Na substituição, {@code versao} é a versão que o chamador leu;
+ * quando informada e diferente da vigente, a substituição é recusada.
+ */
+public record RegrasPrecificacaoDTO(Long versao, List<DescontoQuantidadeDTO> descontosCategoria,
+		List<DescontoValorDTO> descontosValor, List<FaixaPesoDTO> faixasPeso, BigDecimal taxaItemFragil,
+		Map<Regiao, BigDecimal> fatoresRegiao, Map<TipoCliente, BigDecimal> fatoresCliente)
+{
+}
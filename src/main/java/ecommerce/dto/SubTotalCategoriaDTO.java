@@ -0,0 +1,16 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+import ecommerce.entity.TipoProduto;
+
+public record SubTotalCategoriaDTO(String etapa, TipoProduto tipo, Long quantidade, BigDecimal subTotal,
+		BigDecimal desconto, BigDecimal subTotalComDesconto) implements EtapaCotacaoDTO
+{
+
+	public SubTotalCategoriaDTO(TipoProduto tipo, Long quantidade, BigDecimal subTotal, BigDecimal desconto,
+			BigDecimal subTotalComDesconto)
+	{
+		this("CATEGORIA", tipo, quantidade, subTotal, desconto, subTotalComDesconto);
+	}
+}
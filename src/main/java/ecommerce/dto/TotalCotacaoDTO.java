@@ -0,0 +1,13 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+public record TotalCotacaoDTO(String etapa, BigDecimal subTotalItens, BigDecimal totalItens, BigDecimal frete,
+		BigDecimal custoTotal) implements EtapaCotacaoDTO
+{
+
+	public TotalCotacaoDTO(BigDecimal subTotalItens, BigDecimal totalItens, BigDecimal frete, BigDecimal custoTotal)
+	{
+		this("TOTAL", subTotalItens, totalItens, frete, custoTotal);
+	}
+}
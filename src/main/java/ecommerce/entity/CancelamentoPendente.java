@@ -0,0 +1,123 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Cancelamento de pagamento aguardando envio ao gateway. Fica gravado até o gateway
+ * confirmar o cancelamento, de modo que uma falha no envio não perde o estorno.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_cancelamento_proxima_tentativa", columnList = "proximaTentativa"))
+public class CancelamentoPendente
+{
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(nullable = false)
+	private Long clienteId;
+
+	@Column(nullable = false)
+	private Long transacaoId;
+
+	private int tentativas;
+
+	@Column(nullable = false)
+	private Instant proximaTentativa;
+
+	private Instant criadoEm;
+
+	@Column(length = 500)
+	private String ultimoErro;
+
+	public CancelamentoPendente()
+	{
+	}
+
+	public CancelamentoPendente(Long clienteId, Long transacaoId, Instant criadoEm)
+	{
+		this.clienteId = clienteId;
+		this.transacaoId = transacaoId;
+		this.criadoEm = criadoEm;
+		this.proximaTentativa = criadoEm;
+	}
+
+	public Long getId()
+	{
+		return id;
+	}
+
+	public void setId(Long id)
+	{
+		this.id = id;
+	}
+
+	public Long getClienteId()
+	{
+		return clienteId;
+	}
+
+	public void setClienteId(Long clienteId)
+	{
+		this.clienteId = clienteId;
+	}
+
+	public Long getTransacaoId()
+	{
+		return transacaoId;
+	}
+
+	public void setTransacaoId(Long transacaoId)
+	{
+		this.transacaoId = transacaoId;
+	}
+
+	public int getTentativas()
+	{
+		return tentativas;
+	}
+
+	public void setTentativas(int tentativas)
+	{
+		this.tentativas = tentativas;
+	}
+
+	public Instant getProximaTentativa()
+	{
+		return proximaTentativa;
+	}
+
+	public void setProximaTentativa(Instant proximaTentativa)
+	{
+		this.proximaTentativa = proximaTentativa;
+	}
+
+	public Instant getCriadoEm()
+	{
+		return criadoEm;
+	}
+
+	public void setCriadoEm(Instant criadoEm)
+	{
+		this.criadoEm = criadoEm;
+	}
+
+	public String getUltimoErro()
+	{
+		return ultimoErro;
+	}
+
+	public void setUltimoErro(String ultimoErro)
+	{
+		this.ultimoErro = ultimoErro;
+	}
+}
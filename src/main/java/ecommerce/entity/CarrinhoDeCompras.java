@@ -1,10 +1,15 @@
 package ecommerce.entity;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -12,25 +17,57 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 
+/**
+ * Além dos itens, o carrinho mantém agregados para a cotação (quantidade e subtotal por categoria,
+ * peso tributável total e unidades frágeis), atualizados em O(1) por {@link #adicionarItem},
+ * {@link #removerItem} e {@link #alterarQuantidade} e gravados na linha do carrinho.
+ * <p>
+ * Alterar quantidade, produto ou carrinho de um item pelos seus setters descarta os agregados, assim
+ * como {@link #setItens} e {@link #invalidarAgregados()}; eles são reconstruídos a partir dos itens
+ * na próxima alteração ou em {@link #recalcularAgregados()}. Itens incluídos ou removidos direto em
+ * {@link #getItens()} não são percebidos: por isso o checkout cobra sempre pelos itens.
+ */
 @Entity
 public class CarrinhoDeCompras
 {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carrinho_de_compras_seq")
+	@SequenceGenerator(name = "carrinho_de_compras_seq", sequenceName = "carrinho_de_compras_seq", allocationSize = 50)
 	private Long id;
 
 	@ManyToOne // Um cliente pode ter vários carrinhos
 	@JoinColumn(name = "cliente_id") // Nome da chave estrangeira
 	private Cliente cliente;
 
-	@OneToMany(cascade = CascadeType.ALL, orphanRemoval = true) // Um carrinho tem vários itens
-	@JoinColumn(name = "carrinho_id") // Mapeamento de chave estrangeira na tabela ItemCompra
+	// Lado inverso: incluir ou remover um item grava só a linha do item, sem regravar a coleção
+	@OneToMany(mappedBy = "carrinho", cascade = CascadeType.ALL, orphanRemoval = true)
 	private List<ItemCompra> itens = new ArrayList<>();
 
 	private LocalDate data;
 
+	@Version
+	private Long versao;
+
+	// Na própria linha do carrinho: uma coleção seria mais uma consulta, ou multiplicaria as linhas
+	// dos itens quando buscada junto com eles
+	@Convert(converter = TotaisPorCategoriaConverter.class)
+	@Column(length = 1024)
+	private Map<TipoProduto, TotalCategoria> totaisPorCategoria = new EnumMap<>(TipoProduto.class);
+
+	@Convert(converter = DecimalExatoConverter.class)
+	@Column(length = 128)
+	private BigDecimal pesoTributavelTotal = BigDecimal.ZERO;
+
+	private long unidadesFrageis;
+
+	private boolean agregadosValidos;
+
+	private boolean finalizado;
+
 	public CarrinhoDeCompras()
 	{
 	}
@@ -41,6 +78,7 @@ public class CarrinhoDeCompras
 		this.cliente = cliente;
 		this.itens = itens;
 		this.data = data;
+		vincular(itens);
 	}
 
 	// Getters e Setters
@@ -72,6 +110,194 @@ public class CarrinhoDeCompras
 	public void setItens(List<ItemCompra> itens)
 	{
 		this.itens = itens;
+		vincular(itens);
+		invalidarAgregados();
+	}
+
+	/**
+	 * @throws IllegalArgumentException se a quantidade não for positiva ou o preço for negativo
+	 */
+	public void adicionarItem(ItemCompra item)
+	{
+		validar(item, item.getQuantidade());
+		garantirAgregados();
+
+		item.vincular(this);
+		itens.add(item);
+		acumular(item, 1);
+	}
+
+	/**
+	 * @return {@code false} se o item não estava no carrinho
+	 */
+	public boolean removerItem(ItemCompra item)
+	{
+		garantirAgregados();
+
+		if (!itens.remove(item))
+		{
+			return false;
+		}
+		item.vincular(null);
+		acumular(item, -1);
+		return true;
+	}
+
+	/**
+	 * Desconta dos agregados um item que será excluído diretamente, sem passar pela lista de itens,
+	 * que assim não precisa ser carregada. Quem chama exclui o item e não usa mais a lista.
+	 * <p>
+	 * Com os agregados inválidos a lista é carregada para reconstruí-los; o item sai dela antes, senão
+	 * o cascade da lista gravaria de novo o item excluído.
+	 */
+	public void descontarItemExcluido(ItemCompra item)
+	{
+		if (!agregadosValidos)
+		{
+			itens.remove(item);
+			recalcularAgregados();
+			return;
+		}
+		acumular(item, -1);
+	}
+
+	/**
+	 * @throws IllegalArgumentException se a quantidade não for positiva
+	 */
+	public void alterarQuantidade(ItemCompra item, Long quantidade)
+	{
+		validar(item, quantidade);
+		garantirAgregados();
+
+		acumular(item, -1);
+		item.atribuirQuantidade(quantidade);
+		acumular(item, 1);
+	}
+
+	/**
+	 * Reconstrói os agregados percorrendo todos os itens.
+	 *
+	 * @throws IllegalArgumentException se algum item tiver quantidade ou preço inválido
+	 */
+	public void recalcularAgregados()
+	{
+		for (ItemCompra item : itens)
+		{
+			validar(item, item.getQuantidade());
+		}
+
+		totaisPorCategoria.clear();
+		pesoTributavelTotal = BigDecimal.ZERO;
+		unidadesFrageis = 0;
+		agregadosValidos = true;
+
+		for (ItemCompra item : itens)
+		{
+			acumular(item, 1);
+		}
+	}
+
+	/**
+	 * Descarta os agregados; necessário quando um produto do carrinho muda de preço, peso ou dimensões.
+	 */
+	public void invalidarAgregados()
+	{
+		agregadosValidos = false;
+	}
+
+	public boolean isAgregadosValidos()
+	{
+		return agregadosValidos;
+	}
+
+	/**
+	 * Marca o carrinho como comprado; um carrinho finalizado não pode ser comprado de novo.
+	 */
+	public void finalizar()
+	{
+		finalizado = true;
+	}
+
+	public boolean isFinalizado()
+	{
+		return finalizado;
+	}
+
+	/**
+	 * Resumo para a cotação montado a partir dos agregados, sem percorrer os itens.
+	 *
+	 * @return o resumo, ou {@code null} se os agregados não estiverem válidos
+	 */
+	public ResumoCarrinho resumirAgregados()
+	{
+		if (!agregadosValidos)
+		{
+			return null;
+		}
+		return ResumoCarrinho.deAgregados(totaisPorCategoria, pesoTributavelTotal, unidadesFrageis);
+	}
+
+	private void vincular(List<ItemCompra> itens)
+	{
+		if (itens == null)
+		{
+			return;
+		}
+		for (ItemCompra item : itens)
+		{
+			if (item != null)
+			{
+				item.vincular(this);
+			}
+		}
+	}
+
+	private void garantirAgregados()
+	{
+		if (!agregadosValidos)
+		{
+			recalcularAgregados();
+		}
+	}
+
+	private void acumular(ItemCompra item, int sinal)
+	{
+		Produto produto = item.getProduto();
+		long quantidade = sinal * item.getQuantidade();
+
+		TotalCategoria atual = totaisPorCategoria.get(produto.getTipo());
+		long quantidadeCategoria = (atual == null ? 0 : atual.getQuantidade()) + quantidade;
+		BigDecimal subTotal = produto.getPreco().multiply(BigDecimal.valueOf(quantidade));
+
+		if (quantidadeCategoria == 0)
+		{
+			totaisPorCategoria.remove(produto.getTipo());
+		}
+		else
+		{
+			totaisPorCategoria.put(produto.getTipo(), new TotalCategoria(quantidadeCategoria,
+					atual == null ? subTotal : atual.getSubTotal().add(subTotal)));
+		}
+
+		pesoTributavelTotal = pesoTributavelTotal
+				.add(produto.calcularPesoTributavel().multiply(BigDecimal.valueOf(quantidade)));
+		if (produto.isFragil())
+		{
+			unidadesFrageis += quantidade;
+		}
+	}
+
+	private static void validar(ItemCompra item, Long quantidade)
+	{
+		if (quantidade == null || quantidade <= 0)
+		{
+			throw new IllegalArgumentException("Quantidade do item não pode ser zero ou negativa.");
+		}
+		Produto produto = item.getProduto();
+		if (produto == null || produto.getPreco() == null || produto.getPreco().compareTo(BigDecimal.ZERO) < 0)
+		{
+			throw new IllegalArgumentException("Preço do item não pode ser negativo.");
+		}
 	}
 
 	public LocalDate getData()
@@ -83,4 +309,14 @@ public class CarrinhoDeCompras
 	{
 		this.data = data;
 	}
+
+	public Long getVersao()
+	{
+		return versao;
+	}
+
+	public void setVersao(Long versao)
+	{
+		this.versao = versao;
+	}
 }
@@ -0,0 +1,27 @@
+package ecommerce.entity;
+
+import java.math.BigDecimal;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Grava um BigDecimal como texto, com a escala que ele tiver: uma coluna numérica de escala fixa
+ * arredondaria valores com mais casas e o valor relido não seria igual ao gravado.
+ */
+@Converter
+public class DecimalExatoConverter implements AttributeConverter<BigDecimal, String>
+{
+
+	@Override
+	public String convertToDatabaseColumn(BigDecimal valor)
+	{
+		return valor == null ? null : valor.toPlainString();
+	}
+
+	@Override
+	public BigDecimal convertToEntityAttribute(String coluna)
+	{
+		return coluna == null ? null : new BigDecimal(coluna);
+	}
+}
@@ -1,20 +1,28 @@
 package ecommerce.entity;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 
 @Entity
 public class ItemCompra
 {
 
+	// Sequência com blocos de 50 ids: com IDENTITY o Hibernate não agrupa os inserts em lotes JDBC
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_compra_seq")
+	@SequenceGenerator(name = "item_compra_seq", sequenceName = "item_compra_seq", allocationSize = 50)
 	private Long id;
 
+	@ManyToOne(fetch = FetchType.LAZY) // O item é dono da chave estrangeira do carrinho
+	@JoinColumn(name = "carrinho_id")
+	private CarrinhoDeCompras carrinho;
+
 	@ManyToOne // Vários itens podem se referir ao mesmo produto
 	@JoinColumn(name = "produto_id")
 	private Produto produto;
@@ -43,6 +51,22 @@ public class ItemCompra
 		this.id = id;
 	}
 
+	public CarrinhoDeCompras getCarrinho()
+	{
+		return carrinho;
+	}
+
+	/**
+	 * Descarta os agregados do carrinho anterior e do novo; a inclusão pelos métodos do carrinho
+	 * os mantém atualizados.
+	 */
+	public void setCarrinho(CarrinhoDeCompras carrinho)
+	{
+		invalidarAgregadosDoCarrinho();
+		this.carrinho = carrinho;
+		invalidarAgregadosDoCarrinho();
+	}
+
 	public Produto getProduto()
 	{
 		return produto;
@@ -51,6 +75,7 @@ public class ItemCompra
 	public void setProduto(Produto produto)
 	{
 		this.produto = produto;
+		invalidarAgregadosDoCarrinho();
 	}
 
 	public Long getQuantidade()
@@ -58,8 +83,31 @@ public class ItemCompra
 		return quantidade;
 	}
 
+	/**
+	 * Descarta os agregados do carrinho; {@link CarrinhoDeCompras#alterarQuantidade} os mantém.
+	 */
 	public void setQuantidade(Long quantidade)
 	{
 		this.quantidade = quantidade;
+		invalidarAgregadosDoCarrinho();
+	}
+
+	// Usados pelo carrinho, que atualiza os agregados por conta própria
+	void vincular(CarrinhoDeCompras carrinho)
+	{
+		this.carrinho = carrinho;
+	}
+
+	void atribuirQuantidade(Long quantidade)
+	{
+		this.quantidade = quantidade;
+	}
+
+	private void invalidarAgregadosDoCarrinho()
+	{
+		if (carrinho != null)
+		{
+			carrinho.invalidarAgregados();
+		}
 	}
 }
@@ -9,10 +9,19 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 
 @Entity
 public class Produto {
 
+    private static final BigDecimal DIVISOR_PESO_CUBICO = new BigDecimal("6000");
+
+    private static final long NAO_CALCULADO = Long.MIN_VALUE;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -46,17 +55,90 @@ public class Produto {
     @Enumerated(EnumType.STRING)
     private TipoProduto tipo;
 
+    @Version
+    private Long versao;
+
+    /**
+     * Contador de alterações em memória dos atributos usados na precificação; diferente de
+     * {@link #revisaoSalva}, o produto tem alterações ainda não gravadas.
+     */
+    @Transient
+    private long revisao;
+
+    @Transient
+    private long revisaoSalva;
+
+    /**
+     * Peso tributável já calculado; descartado quando peso ou dimensões mudam.
+     */
+    @Transient
+    private BigDecimal pesoTributavel;
+
+    /**
+     * Preço em centavos e peso tributável em decigramas (décimos de milésimo de kg), usados pela
+     * precificação em ponto fixo; calculados no primeiro uso e descartados com o valor de origem.
+     */
+    @Transient
+    private volatile long precoCentavos = NAO_CALCULADO;
+
+    @Transient
+    private volatile long pesoTributavelDecigramas = NAO_CALCULADO;
+
     public Produto() {
     }
 
     public BigDecimal calcularPesoTributavel() {
+        BigDecimal peso = this.pesoTributavel;
+        if (peso == null) {
+            peso = calcularPesoTributavelAtual();
+            this.pesoTributavel = peso;
+        }
+        return peso;
+    }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void atualizarPesoTributavel() {
+        this.pesoTributavel = calcularPesoTributavelAtual();
+        this.revisaoSalva = this.revisao;
+        // O Hibernate grava os campos direto, sem passar pelos setters
+        this.precoCentavos = NAO_CALCULADO;
+        this.pesoTributavelDecigramas = NAO_CALCULADO;
+    }
+
+    /**
+     * @throws ArithmeticException se o preço tiver mais de duas casas decimais ou não couber em long
+     */
+    public long getPrecoCentavos() {
+        long centavos = this.precoCentavos;
+        if (centavos == NAO_CALCULADO) {
+            centavos = preco.movePointRight(2).longValueExact();
+            this.precoCentavos = centavos;
+        }
+        return centavos;
+    }
+
+    /**
+     * @throws ArithmeticException se o peso tiver mais de quatro casas decimais ou não couber em long
+     */
+    public long calcularPesoTributavelDecigramas() {
+        long decigramas = this.pesoTributavelDecigramas;
+        if (decigramas == NAO_CALCULADO) {
+            decigramas = calcularPesoTributavel().movePointRight(4).longValueExact();
+            this.pesoTributavelDecigramas = decigramas;
+        }
+        return decigramas;
+    }
+
+    private BigDecimal calcularPesoTributavelAtual() {
         BigDecimal comp = (this.comprimento == null) ? BigDecimal.ZERO : this.comprimento;
         BigDecimal larg = (this.largura == null) ? BigDecimal.ZERO : this.largura;
         BigDecimal alt = (this.altura == null) ? BigDecimal.ZERO : this.altura;
         BigDecimal fisico = (this.pesoFisico == null) ? BigDecimal.ZERO : this.pesoFisico;
 
         BigDecimal pesoCubico = (comp.multiply(larg).multiply(alt))
-                .divide(new BigDecimal("6000"), 4, RoundingMode.HALF_UP);
+                .divide(DIVISOR_PESO_CUBICO, 4, RoundingMode.HALF_UP);
 
         return pesoCubico.max(fisico);
     }
@@ -107,6 +189,8 @@ public class Produto {
 
     public void setPreco(BigDecimal preco) {
         this.preco = preco;
+        this.precoCentavos = NAO_CALCULADO;
+        this.revisao++;
     }
 
     public BigDecimal getPesoFisico() {
@@ -115,6 +199,9 @@ public class Produto {
 
     public void setPesoFisico(BigDecimal pesoFisico) {
         this.pesoFisico = pesoFisico;
+        this.pesoTributavel = null;
+        this.pesoTributavelDecigramas = NAO_CALCULADO;
+        this.revisao++;
     }
 
     public BigDecimal getComprimento() {
@@ -123,6 +210,9 @@ public class Produto {
 
     public void setComprimento(BigDecimal comprimento) {
         this.comprimento = comprimento;
+        this.pesoTributavel = null;
+        this.pesoTributavelDecigramas = NAO_CALCULADO;
+        this.revisao++;
     }
 
     public BigDecimal getLargura() {
@@ -131,6 +221,9 @@ public class Produto {
 
     public void setLargura(BigDecimal largura) {
         this.largura = largura;
+        this.pesoTributavel = null;
+        this.pesoTributavelDecigramas = NAO_CALCULADO;
+        this.revisao++;
     }
 
     public BigDecimal getAltura() {
@@ -139,6 +232,9 @@ public class Produto {
 
     public void setAltura(BigDecimal altura) {
         this.altura = altura;
+        this.pesoTributavel = null;
+        this.pesoTributavelDecigramas = NAO_CALCULADO;
+        this.revisao++;
     }
 
     public Boolean isFragil() {
@@ -147,6 +243,23 @@ public class Produto {
 
     public void setFragil(Boolean fragil) {
         this.fragil = fragil;
+        this.revisao++;
+    }
+
+    public Long getVersao() {
+        return versao;
+    }
+
+    public void setVersao(Long versao) {
+        this.versao = versao;
+    }
+
+    /**
+     * Indica se algum atributo usado na precificação foi alterado em memória desde o último
+     * carregamento ou gravação, de modo que a versão não identifica mais o estado do produto.
+     */
+    public boolean possuiAlteracoesNaoSalvas() {
+        return revisao != revisaoSalva;
     }
 
     public TipoProduto getTipo() {
@@ -155,5 +268,6 @@ public class Produto {
 
     public void setTipo(TipoProduto tipo) {
         this.tipo = tipo;
+        this.revisao++;
     }
 }
\ No newline at end of file
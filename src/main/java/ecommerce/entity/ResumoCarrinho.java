@@ -0,0 +1,143 @@
+package ecommerce.entity;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agregados do carrinho obtidos em uma única passada pelos itens: quantidade e subtotal
+ * por {@link TipoProduto} (indexados pelo ordinal), peso tributável total e unidades frágeis.
+ */
+public class ResumoCarrinho {
+
+    private static final int QUANTIDADE_TIPOS = TipoProduto.values().length;
+
+    private final long[] quantidadePorTipo = new long[QUANTIDADE_TIPOS];
+    private final BigDecimal[] subTotalPorTipo = new BigDecimal[QUANTIDADE_TIPOS];
+    private BigDecimal pesoTributavelTotal = BigDecimal.ZERO;
+    private long unidadesFrageis;
+
+    private ResumoCarrinho() {
+    }
+
+    public static ResumoCarrinho calcular(List<ItemCompra> itens) {
+        ResumoCarrinho resumo = new ResumoCarrinho();
+
+        for (ItemCompra item : itens) {
+            resumo.adicionar(item, true);
+        }
+        return resumo;
+    }
+
+    /**
+     * Apenas quantidades e subtotais, para cotações com frete isento: peso tributável e unidades
+     * frágeis ficam zerados e o peso dos produtos não é calculado.
+     */
+    public static ResumoCarrinho calcularSemFrete(List<ItemCompra> itens) {
+        ResumoCarrinho resumo = new ResumoCarrinho();
+
+        for (ItemCompra item : itens) {
+            resumo.adicionar(item, false);
+        }
+        return resumo;
+    }
+
+    /**
+     * Resumo a partir dos agregados mantidos pelo {@link CarrinhoDeCompras}, em O(categorias).
+     */
+    static ResumoCarrinho deAgregados(Map<TipoProduto, TotalCategoria> totaisPorCategoria,
+                                      BigDecimal pesoTributavelTotal, long unidadesFrageis) {
+        ResumoCarrinho resumo = new ResumoCarrinho();
+
+        for (Map.Entry<TipoProduto, TotalCategoria> total : totaisPorCategoria.entrySet()) {
+            int tipo = total.getKey().ordinal();
+            resumo.quantidadePorTipo[tipo] = total.getValue().getQuantidade();
+            resumo.subTotalPorTipo[tipo] = total.getValue().getSubTotal();
+        }
+        resumo.pesoTributavelTotal = pesoTributavelTotal;
+        resumo.unidadesFrageis = unidadesFrageis;
+        return resumo;
+    }
+
+    private void adicionar(ItemCompra item, boolean comFrete) {
+        Produto produto = item.getProduto();
+        int tipo = produto.getTipo().ordinal();
+
+        if (item.getQuantidade() == null || item.getQuantidade() <= 0) {
+            throw new IllegalArgumentException("Quantidade do item não pode ser zero ou negativa.");
+        }
+        if (produto.getPreco() == null || produto.getPreco().compareTo(BigDecimal.ZERO) < 0) {
+            throw new IllegalArgumentException("Preço do item não pode ser negativo.");
+        }
+
+        long qtd = item.getQuantidade();
+        BigDecimal lineTotal = produto.getPreco().multiply(BigDecimal.valueOf(qtd));
+
+        quantidadePorTipo[tipo] = Math.addExact(quantidadePorTipo[tipo], qtd);
+        subTotalPorTipo[tipo] = subTotalPorTipo[tipo] == null ? lineTotal : subTotalPorTipo[tipo].add(lineTotal);
+
+        if (!comFrete) {
+            return;
+        }
+
+        BigDecimal quantidade = BigDecimal.valueOf(item.getQuantidade());
+        pesoTributavelTotal = pesoTributavelTotal.add(produto.calcularPesoTributavel().multiply(quantidade));
+
+        if (produto.isFragil()) {
+            unidadesFrageis += item.getQuantidade();
+        }
+    }
+
+    /**
+     * Compara os agregados numericamente, ignorando a escala dos BigDecimal.
+     */
+    public boolean equivalente(ResumoCarrinho outro) {
+        for (int tipo = 0; tipo < QUANTIDADE_TIPOS; tipo++) {
+            if (quantidadePorTipo[tipo] != outro.quantidadePorTipo[tipo]
+                    || (subTotalPorTipo[tipo] == null) != (outro.subTotalPorTipo[tipo] == null)
+                    || (subTotalPorTipo[tipo] != null
+                            && subTotalPorTipo[tipo].compareTo(outro.subTotalPorTipo[tipo]) != 0)) {
+                return false;
+            }
+        }
+        return pesoTributavelTotal.compareTo(outro.pesoTributavelTotal) == 0
+                && unidadesFrageis == outro.unidadesFrageis;
+    }
+
+    public boolean isVazio() {
+        for (BigDecimal subTotal : subTotalPorTipo) {
+            if (subTotal != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indica se o carrinho tem ao menos um item do tipo informado.
+     */
+    public boolean contem(TipoProduto tipo) {
+        return subTotalPorTipo[tipo.ordinal()] != null;
+    }
+
+    public long getQuantidade(TipoProduto tipo) {
+        return quantidadePorTipo[tipo.ordinal()];
+    }
+
+    public BigDecimal getSubTotal(TipoProduto tipo) {
+        BigDecimal subTotal = subTotalPorTipo[tipo.ordinal()];
+        return subTotal == null ? BigDecimal.ZERO : subTotal;
+    }
+
+    public SubTotalPorCategoria getSubTotalPorCategoria(TipoProduto tipo) {
+        return new SubTotalPorCategoria(Math.toIntExact(getQuantidade(tipo)), getSubTotal(tipo));
+    }
+
+    public BigDecimal getPesoTributavelTotal() {
+        return pesoTributavelTotal;
+    }
+
+    public long getUnidadesFrageis() {
+        return unidadesFrageis;
+    }
+}
@@ -0,0 +1,59 @@
+package ecommerce.entity;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Grava os totais por categoria do carrinho em uma coluna de texto, no formato
+ * {@code TIPO=quantidade:subtotal;...}. O subtotal mantém a escala do BigDecimal.
+ */
+@Converter
+public class TotaisPorCategoriaConverter implements AttributeConverter<Map<TipoProduto, TotalCategoria>, String>
+{
+
+	@Override
+	public String convertToDatabaseColumn(Map<TipoProduto, TotalCategoria> totais)
+	{
+		if (totais == null)
+		{
+			return null;
+		}
+
+		StringBuilder coluna = new StringBuilder();
+		for (Map.Entry<TipoProduto, TotalCategoria> total : totais.entrySet())
+		{
+			if (coluna.length() > 0)
+			{
+				coluna.append(';');
+			}
+			coluna.append(total.getKey().name()).append('=')
+					.append(total.getValue().getQuantidade()).append(':')
+					.append(total.getValue().getSubTotal().toPlainString());
+		}
+		return coluna.toString();
+	}
+
+	@Override
+	public Map<TipoProduto, TotalCategoria> convertToEntityAttribute(String coluna)
+	{
+		Map<TipoProduto, TotalCategoria> totais = new EnumMap<>(TipoProduto.class);
+		if (coluna == null || coluna.isEmpty())
+		{
+			return totais;
+		}
+
+		for (String total : coluna.split(";"))
+		{
+			int igual = total.indexOf('=');
+			int doisPontos = total.indexOf(':', igual);
+			totais.put(TipoProduto.valueOf(total.substring(0, igual)),
+					new TotalCategoria(Long.parseLong(total.substring(igual + 1, doisPontos)),
+							new BigDecimal(total.substring(doisPontos + 1))));
+		}
+		return totais;
+	}
+}
@@ -0,0 +1,53 @@
+package ecommerce.entity;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Quantidade e subtotal acumulados de uma categoria no carrinho. Imutável: cada alteração do
+ * carrinho grava uma nova instância. Igualdade por valor, usada pelo Hibernate para saber se os
+ * totais do carrinho mudaram.
+ */
+public class TotalCategoria
+{
+
+	private final long quantidade;
+
+	private final BigDecimal subTotal;
+
+	public TotalCategoria(long quantidade, BigDecimal subTotal)
+	{
+		this.quantidade = quantidade;
+		this.subTotal = subTotal;
+	}
+
+	public long getQuantidade()
+	{
+		return quantidade;
+	}
+
+	public BigDecimal getSubTotal()
+	{
+		return subTotal;
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o)
+		{
+			return true;
+		}
+		if (!(o instanceof TotalCategoria outro))
+		{
+			return false;
+		}
+		return quantidade == outro.quantidade && Objects.equals(subTotal, outro.subTotal);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(quantidade, subTotal);
+	}
+}
@@ -0,0 +1,224 @@
+package ecommerce.external;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Junta chamadas concorrentes em lotes: a primeira chamada da fila abre uma janela de no
+ * máximo {@code atrasoMaximoNanos}, e o lote é enviado quando a janela fecha ou quando atinge
+ * {@code maxLote} chamadas. Cada chamador fica bloqueado até o resultado do seu pedido, por no
+ * máximo {@code prazoNanos}.
+ * <p>
+ * Uma chamada que desiste por prazo ou interrupção antes de o seu lote ser enviado sai do lote;
+ * se o lote já foi enviado, o resultado dela é descartado. Ao fechar, as chamadas que ainda não
+ * foram enviadas falham e novas chamadas são recusadas.
+ */
+final class AgrupadorDeChamadas<P, R> implements AutoCloseable
+{
+
+	private static final long ESPERA_OCIOSA_MS = 100;
+	private static final String ENCERRADO = "Agrupador de chamadas encerrado.";
+
+	private final BlockingQueue<Chamada<P, R>> fila = new LinkedBlockingQueue<>();
+	private final Function<List<P>, List<R>> processarLote;
+	private final int maxLote;
+	private final long atrasoMaximoNanos;
+	private final long prazoNanos;
+	private final Thread despachante;
+	private volatile boolean ativo = true;
+
+	AgrupadorDeChamadas(String nome, Function<List<P>, List<R>> processarLote, int maxLote, long atrasoMaximoNanos,
+			long prazoNanos)
+	{
+		if (maxLote < 1)
+		{
+			throw new IllegalArgumentException("Tamanho máximo do lote deve ser positivo.");
+		}
+
+		this.processarLote = processarLote;
+		this.maxLote = maxLote;
+		this.atrasoMaximoNanos = atrasoMaximoNanos;
+		this.prazoNanos = prazoNanos;
+		this.despachante = new Thread(this::despachar, nome);
+		this.despachante.setDaemon(true);
+		this.despachante.start();
+	}
+
+	R executar(P pedido)
+	{
+		if (!ativo)
+		{
+			throw new IllegalStateException(ENCERRADO);
+		}
+
+		Chamada<P, R> chamada = new Chamada<>(pedido);
+		fila.add(chamada);
+		// O fechamento pode ter esvaziado a fila entre a verificação e a inclusão
+		if (!ativo && fila.remove(chamada))
+		{
+			throw new IllegalStateException(ENCERRADO);
+		}
+
+		try
+		{
+			return chamada.resultado.get(prazoNanos, TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			desistir(chamada);
+			throw new IllegalStateException("Tempo esgotado aguardando o lote de chamadas.");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			desistir(chamada);
+			throw new IllegalStateException("Chamada interrompida.", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException causa)
+			{
+				throw causa;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private void desistir(Chamada<P, R> chamada)
+	{
+		fila.remove(chamada);
+		chamada.resultado.cancel(false);
+	}
+
+	private void despachar()
+	{
+		List<Chamada<P, R>> lote = new ArrayList<>(maxLote);
+
+		while (ativo)
+		{
+			try
+			{
+				Chamada<P, R> primeira = fila.poll(ESPERA_OCIOSA_MS, TimeUnit.MILLISECONDS);
+				if (primeira == null)
+				{
+					continue;
+				}
+
+				lote.add(primeira);
+				long prazo = System.nanoTime() + atrasoMaximoNanos;
+
+				while (lote.size() < maxLote)
+				{
+					long restante = prazo - System.nanoTime();
+					Chamada<P, R> proxima = restante > 0 ? fila.poll(restante, TimeUnit.NANOSECONDS) : fila.poll();
+					if (proxima == null)
+					{
+						break;
+					}
+					lote.add(proxima);
+				}
+
+				processar(lote);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				ativo = false;
+				falhar(lote);
+			}
+			finally
+			{
+				lote.clear();
+			}
+		}
+
+		falharPendentes();
+	}
+
+	private void processar(List<Chamada<P, R>> lote)
+	{
+		// Quem já desistiu não entra no lote enviado
+		lote.removeIf(chamada -> chamada.resultado.isDone());
+		if (lote.isEmpty())
+		{
+			return;
+		}
+
+		Throwable falha = null;
+		try
+		{
+			List<P> pedidos = new ArrayList<>(lote.size());
+			for (Chamada<P, R> chamada : lote)
+			{
+				pedidos.add(chamada.pedido);
+			}
+
+			List<R> resultados = processarLote.apply(pedidos);
+			for (int i = 0; i < Math.min(lote.size(), resultados.size()); i++)
+			{
+				lote.get(i).resultado.complete(resultados.get(i));
+			}
+		}
+		catch (Throwable e)
+		{
+			falha = e;
+		}
+		finally
+		{
+			// Com um Error ou menos resultados do que pedidos, nenhum chamador fica sem resposta
+			for (Chamada<P, R> chamada : lote)
+			{
+				if (!chamada.resultado.isDone())
+				{
+					chamada.resultado.completeExceptionally(
+							falha != null ? falha : new IllegalStateException("Lote sem resultado para a chamada."));
+				}
+			}
+		}
+	}
+
+	private void falharPendentes()
+	{
+		List<Chamada<P, R>> pendentes = new ArrayList<>();
+		fila.drainTo(pendentes);
+		falhar(pendentes);
+	}
+
+	private static <P, R> void falhar(List<Chamada<P, R>> chamadas)
+	{
+		IllegalStateException encerrado = new IllegalStateException(ENCERRADO);
+		for (Chamada<P, R> chamada : chamadas)
+		{
+			chamada.resultado.completeExceptionally(encerrado);
+		}
+	}
+
+	/**
+	 * Recusa novas chamadas e falha as que ainda estão na fila; um lote já enviado termina normalmente.
+	 */
+	@Override
+	public void close()
+	{
+		ativo = false;
+		falharPendentes();
+	}
+
+	private static final class Chamada<P, R>
+	{
+
+		private final P pedido;
+		private final CompletableFuture<R> resultado = new CompletableFuture<>();
+
+		private Chamada(P pedido)
+		{
+			this.pedido = pedido;
+		}
+	}
+}
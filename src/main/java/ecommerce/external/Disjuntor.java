@@ -0,0 +1,63 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuito que abre depois de {@code limiteFalhas} falhas seguidas e recusa chamadas por
+ * {@code tempoAberto}. Passado esse tempo, uma única chamada de teste é liberada: se tiver
+ * sucesso o circuito fecha, se falhar volta a abrir.
+ */
+final class Disjuntor
+{
+
+	private final int limiteFalhas;
+	private final long tempoAbertoNanos;
+	private final AtomicInteger falhasSeguidas = new AtomicInteger();
+	private final AtomicBoolean testando = new AtomicBoolean();
+	private volatile boolean aberto;
+	private volatile long abertoAte;
+
+	Disjuntor(int limiteFalhas, Duration tempoAberto)
+	{
+		if (limiteFalhas < 1)
+		{
+			throw new IllegalArgumentException("Limite de falhas deve ser positivo.");
+		}
+
+		this.limiteFalhas = limiteFalhas;
+		this.tempoAbertoNanos = tempoAberto.toNanos();
+	}
+
+	boolean permitir()
+	{
+		if (!aberto)
+		{
+			return true;
+		}
+		return System.nanoTime() - abertoAte >= 0 && testando.compareAndSet(false, true);
+	}
+
+	void registrarSucesso()
+	{
+		falhasSeguidas.set(0);
+		aberto = false;
+		testando.set(false);
+	}
+
+	void registrarFalha()
+	{
+		if (testando.get() || falhasSeguidas.incrementAndGet() >= limiteFalhas)
+		{
+			abertoAte = System.nanoTime() + tempoAbertoNanos;
+			aberto = true;
+			testando.set(false);
+		}
+	}
+
+	boolean isAberto()
+	{
+		return aberto;
+	}
+}
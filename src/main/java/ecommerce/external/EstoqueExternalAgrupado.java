@@ -0,0 +1,187 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PedidoEstoqueDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+/**
+ * Decorador de {@link IEstoqueExternal} que agrupa chamadas concorrentes de {@code darBaixa} e
+ * {@code verificarDisponibilidade} em uma única chamada ao serviço, com as quantidades somadas
+ * por produto, e distribui o resultado entre os pedidos.
+ * <p>
+ * Quando a chamada agrupada falha, só os pedidos afetados são refeitos individualmente: na
+ * disponibilidade, os que contêm produtos indisponíveis; na baixa, todos, já que o serviço
+ * não informa qual produto faltou. Assume que {@code darBaixa} é tudo ou nada.
+ * <p>
+ * Reservas e confirmações, usadas pelo checkout, seguem pelas chamadas em lote do serviço
+ * ({@link IEstoqueExternal#reservarEmLote}, {@link IEstoqueExternal#confirmarReservasEmLote}):
+ * sem somar quantidades, já que cada pedido precisa da sua própria reserva para poder liberá-la
+ * sozinho. Liberações só acontecem em checkouts que falharam e vão direto ao serviço.
+ */
+public class EstoqueExternalAgrupado implements IEstoqueExternal, AutoCloseable
+{
+
+	private final IEstoqueExternal delegado;
+	private final AgrupadorDeChamadas<PedidoEstoque, EstoqueBaixaDTO> baixas;
+	private final AgrupadorDeChamadas<PedidoEstoque, DisponibilidadeDTO> verificacoes;
+	private final AgrupadorDeChamadas<PedidoEstoqueDTO, ReservaEstoqueDTO> reservas;
+	private final AgrupadorDeChamadas<PedidoEstoqueDTO, EstoqueBaixaDTO> confirmacoes;
+
+	/**
+	 * @param prazo tempo máximo que cada chamada espera pelo resultado do seu lote
+	 */
+	public EstoqueExternalAgrupado(IEstoqueExternal delegado, int maxLote, Duration atrasoMaximo, Duration prazo)
+	{
+		this.delegado = delegado;
+		this.baixas = new AgrupadorDeChamadas<>("estoque-baixa", this::darBaixaEmLote, maxLote,
+				atrasoMaximo.toNanos(), prazo.toNanos());
+		this.verificacoes = new AgrupadorDeChamadas<>("estoque-disponibilidade", this::verificarEmLote, maxLote,
+				atrasoMaximo.toNanos(), prazo.toNanos());
+		this.reservas = new AgrupadorDeChamadas<>("estoque-reserva", this::reservarEmLote, maxLote,
+				atrasoMaximo.toNanos(), prazo.toNanos());
+		this.confirmacoes = new AgrupadorDeChamadas<>("estoque-confirmacao", this::confirmarReservasEmLote,
+				maxLote, atrasoMaximo.toNanos(), prazo.toNanos());
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return baixas.executar(new PedidoEstoque(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return verificacoes.executar(new PedidoEstoque(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return reservas.executar(new PedidoEstoqueDTO(null, produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId, List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		return confirmacoes.executar(new PedidoEstoqueDTO(reservaId, produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public void liberarReserva(Long reservaId)
+	{
+		delegado.liberarReserva(reservaId);
+	}
+
+	@Override
+	public List<ReservaEstoqueDTO> reservarEmLote(List<PedidoEstoqueDTO> pedidos)
+	{
+		if (pedidos.size() == 1)
+		{
+			PedidoEstoqueDTO pedido = pedidos.get(0);
+			return List.of(delegado.reservar(pedido.produtosIds(), pedido.produtosQuantidades()));
+		}
+		return delegado.reservarEmLote(pedidos);
+	}
+
+	@Override
+	public List<EstoqueBaixaDTO> confirmarReservasEmLote(List<PedidoEstoqueDTO> pedidos)
+	{
+		if (pedidos.size() == 1)
+		{
+			PedidoEstoqueDTO pedido = pedidos.get(0);
+			return List.of(delegado.confirmarReserva(pedido.reservaId(), pedido.produtosIds(),
+					pedido.produtosQuantidades()));
+		}
+		return delegado.confirmarReservasEmLote(pedidos);
+	}
+
+	private List<EstoqueBaixaDTO> darBaixaEmLote(List<PedidoEstoque> pedidos)
+	{
+		List<EstoqueBaixaDTO> resultados = new ArrayList<>(pedidos.size());
+
+		if (pedidos.size() > 1)
+		{
+			PedidoEstoque agregado = agregar(pedidos);
+			if (delegado.darBaixa(agregado.produtosIds(), agregado.produtosQuantidades()).sucesso())
+			{
+				pedidos.forEach(pedido -> resultados.add(new EstoqueBaixaDTO(true)));
+				return resultados;
+			}
+		}
+
+		for (PedidoEstoque pedido : pedidos)
+		{
+			resultados.add(delegado.darBaixa(pedido.produtosIds(), pedido.produtosQuantidades()));
+		}
+		return resultados;
+	}
+
+	private List<DisponibilidadeDTO> verificarEmLote(List<PedidoEstoque> pedidos)
+	{
+		List<DisponibilidadeDTO> resultados = new ArrayList<>(pedidos.size());
+
+		if (pedidos.size() == 1)
+		{
+			PedidoEstoque pedido = pedidos.get(0);
+			resultados.add(delegado.verificarDisponibilidade(pedido.produtosIds(), pedido.produtosQuantidades()));
+			return resultados;
+		}
+
+		PedidoEstoque agregado = agregar(pedidos);
+		DisponibilidadeDTO disponibilidade = delegado.verificarDisponibilidade(agregado.produtosIds(),
+				agregado.produtosQuantidades());
+		Set<Long> indisponiveis = disponibilidade.disponivel() ? Set.of()
+				: new HashSet<>(disponibilidade.idsProdutosIndisponiveis());
+
+		for (PedidoEstoque pedido : pedidos)
+		{
+			// A demanda de um pedido nunca é maior que a do lote: só é preciso reconsultar quem
+			// contém um produto que faltou no agregado
+			if (pedido.produtosIds().stream().noneMatch(indisponiveis::contains))
+			{
+				resultados.add(new DisponibilidadeDTO(true, List.of()));
+			}
+			else
+			{
+				resultados.add(delegado.verificarDisponibilidade(pedido.produtosIds(), pedido.produtosQuantidades()));
+			}
+		}
+		return resultados;
+	}
+
+	private static PedidoEstoque agregar(List<PedidoEstoque> pedidos)
+	{
+		Map<Long, Long> quantidades = new LinkedHashMap<>();
+		for (PedidoEstoque pedido : pedidos)
+		{
+			for (int i = 0; i < pedido.produtosIds().size(); i++)
+			{
+				quantidades.merge(pedido.produtosIds().get(i), pedido.produtosQuantidades().get(i), Long::sum);
+			}
+		}
+		return new PedidoEstoque(new ArrayList<>(quantidades.keySet()), new ArrayList<>(quantidades.values()));
+	}
+
+	@Override
+	public void close()
+	{
+		baixas.close();
+		verificacoes.close();
+		reservas.close();
+		confirmacoes.close();
+	}
+
+	private record PedidoEstoque(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+	}
+}
@@ -1,9 +1,12 @@
 package ecommerce.external;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PedidoEstoqueDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
 
 public interface IEstoqueExternal
 {
@@ -12,4 +15,58 @@ public interface IEstoqueExternal
 
 	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades);
 
+	/**
+	 * Separa os itens até a confirmação ou a expiração da reserva. Serviços sem suporte a
+	 * reserva apenas verificam a disponibilidade e devolvem uma reserva sem id.
+	 */
+	public default ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+		return new ReservaEstoqueDTO(disponibilidade.disponivel(), null, disponibilidade.idsProdutosIndisponiveis());
+	}
+
+	/**
+	 * Efetiva a baixa dos itens reservados. Os itens são informados de novo para que a baixa
+	 * possa ser feita mesmo quando a reserva expirou ou o serviço não tem suporte a reserva.
+	 */
+	public default EstoqueBaixaDTO confirmarReserva(Long reservaId, List<Long> produtosIds,
+			List<Long> produtosQuantidades)
+	{
+		return darBaixa(produtosIds, produtosQuantidades);
+	}
+
+	/**
+	 * Devolve ao estoque os itens de uma reserva que não será confirmada.
+	 */
+	public default void liberarReserva(Long reservaId)
+	{
+	}
+
+	/**
+	 * Reserva vários pedidos em uma única chamada. Cada pedido é reservado ou recusado por conta
+	 * própria e recebe a sua reserva, na ordem recebida.
+	 */
+	public default List<ReservaEstoqueDTO> reservarEmLote(List<PedidoEstoqueDTO> pedidos)
+	{
+		List<ReservaEstoqueDTO> reservas = new ArrayList<>(pedidos.size());
+		for (PedidoEstoqueDTO pedido : pedidos)
+		{
+			reservas.add(reservar(pedido.produtosIds(), pedido.produtosQuantidades()));
+		}
+		return reservas;
+	}
+
+	/**
+	 * Confirma várias reservas em uma única chamada, com um resultado por reserva, na ordem recebida.
+	 */
+	public default List<EstoqueBaixaDTO> confirmarReservasEmLote(List<PedidoEstoqueDTO> pedidos)
+	{
+		List<EstoqueBaixaDTO> baixas = new ArrayList<>(pedidos.size());
+		for (PedidoEstoqueDTO pedido : pedidos)
+		{
+			baixas.add(confirmarReserva(pedido.reservaId(), pedido.produtosIds(), pedido.produtosQuantidades()));
+		}
+		return baixas;
+	}
+
 }
@@ -0,0 +1,201 @@
+package ecommerce.external;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ecommerce.dto.PagamentoDTO;
+
+/**
+ * Decorador de {@link IPagamentoExternal} que protege o checkout de um gateway lento:
+ * <ul>
+ * <li>limita as tentativas de autorização em andamento no gateway e recusa na hora as excedentes;
+ * cada tentativa ocupa uma vaga até terminar, mesmo depois que quem chamou desistiu, então nem as
+ * chamadas ao gateway nem as threads que esperam por ele se acumulam quando ele fica lento;</li>
+ * <li>abre o circuito depois de falhas seguidas, recusando chamadas sem tocar no gateway;</li>
+ * <li>desiste da autorização quando o prazo acaba;</li>
+ * <li>opcionalmente dispara uma segunda tentativa quando a primeira demora, se houver vaga, e
+ * fica com a que responder antes.</li>
+ * </ul>
+ * Uma autorização que chega depois do prazo, ou que perde para a outra tentativa, é cancelada
+ * no gateway para não deixar valor retido. Recusa do gateway não conta como falha do circuito.
+ */
+public class PagamentoExternalResiliente implements IPagamentoExternal, AutoCloseable
+{
+
+	private final IPagamentoExternal delegado;
+	private final Semaphore concorrentes;
+	private final Disjuntor disjuntor;
+	private final long prazoNanos;
+	private final long atrasoTentativaExtraNanos;
+	private final ExecutorService executor;
+
+	public PagamentoExternalResiliente(IPagamentoExternal delegado, Duration prazo, int maxConcorrentes,
+			int limiteFalhas, Duration tempoAberto, Duration atrasoTentativaExtra)
+	{
+		this.delegado = delegado;
+		this.concorrentes = new Semaphore(maxConcorrentes);
+		this.disjuntor = new Disjuntor(limiteFalhas, tempoAberto);
+		this.prazoNanos = prazo.toNanos();
+		this.atrasoTentativaExtraNanos = atrasoTentativaExtra.toNanos();
+
+		AtomicInteger sequencia = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(tarefa -> {
+			Thread thread = new Thread(tarefa, "pagamento-" + sequencia.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
+	{
+		if (!concorrentes.tryAcquire())
+		{
+			throw new IllegalStateException("Serviço de pagamento sobrecarregado.");
+		}
+		if (!disjuntor.permitir())
+		{
+			concorrentes.release();
+			throw new IllegalStateException("Serviço de pagamento indisponível.");
+		}
+
+		try
+		{
+			PagamentoDTO pagamento = autorizarNoPrazo(clienteId, custoTotal);
+			disjuntor.registrarSucesso();
+			return pagamento;
+		}
+		catch (RuntimeException e)
+		{
+			disjuntor.registrarFalha();
+			throw e;
+		}
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
+	{
+		delegado.cancelarPagamento(clienteId, pagamentoTransacaoId);
+	}
+
+	/**
+	 * A primeira tentativa usa a vaga já obtida por quem chamou; a segunda só corre se houver outra.
+	 */
+	private PagamentoDTO autorizarNoPrazo(Long clienteId, Double custoTotal)
+	{
+		long prazo = System.nanoTime() + prazoNanos;
+		CompletableFuture<PagamentoDTO> resposta = new CompletableFuture<>();
+		AtomicInteger pendentes = new AtomicInteger(1);
+
+		tentar(clienteId, custoTotal, resposta, pendentes);
+
+		try
+		{
+			if (atrasoTentativaExtraNanos > 0 && atrasoTentativaExtraNanos < prazoNanos)
+			{
+				try
+				{
+					return resposta.get(atrasoTentativaExtraNanos, TimeUnit.NANOSECONDS);
+				}
+				catch (TimeoutException e)
+				{
+					// A primeira tentativa ainda pode ganhar; a segunda só corre em paralelo
+					if (concorrentes.tryAcquire())
+					{
+						if (pendentes.getAndIncrement() > 0)
+						{
+							tentar(clienteId, custoTotal, resposta, pendentes);
+						}
+						else
+						{
+							concorrentes.release();
+						}
+					}
+				}
+			}
+			return resposta.get(prazo - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			resposta.completeExceptionally(e);
+			throw new IllegalStateException("Tempo esgotado na autorização do pagamento.");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			resposta.completeExceptionally(e);
+			throw new IllegalStateException("Autorização de pagamento interrompida.");
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException causa)
+			{
+				throw causa;
+			}
+			throw new IllegalStateException("Erro na autorização do pagamento.", e.getCause());
+		}
+	}
+
+	private void tentar(Long clienteId, Double custoTotal, CompletableFuture<PagamentoDTO> resposta,
+			AtomicInteger pendentes)
+	{
+		CompletableFuture<PagamentoDTO> tentativa;
+		try
+		{
+			tentativa = CompletableFuture.supplyAsync(() -> delegado.autorizarPagamento(clienteId, custoTotal),
+					executor);
+		}
+		catch (RejectedExecutionException e)
+		{
+			concorrentes.release();
+			if (pendentes.decrementAndGet() == 0)
+			{
+				resposta.completeExceptionally(new IllegalStateException("Serviço de pagamento encerrado."));
+			}
+			return;
+		}
+
+		tentativa.whenComplete((pagamento, erro) -> {
+			concorrentes.release();
+			if (erro == null)
+			{
+				if (!resposta.complete(pagamento))
+				{
+					descartar(clienteId, pagamento);
+				}
+			}
+			else if (pendentes.decrementAndGet() == 0)
+			{
+				resposta.completeExceptionally(erro instanceof CompletionException ? erro.getCause() : erro);
+			}
+		});
+	}
+
+	private void descartar(Long clienteId, PagamentoDTO pagamento)
+	{
+		if (pagamento != null && Boolean.TRUE.equals(pagamento.autorizado()))
+		{
+			delegado.cancelarPagamento(clienteId, pagamento.transacaoId());
+		}
+	}
+
+	boolean isCircuitoAberto()
+	{
+		return disjuntor.isAberto();
+	}
+
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+	}
+}
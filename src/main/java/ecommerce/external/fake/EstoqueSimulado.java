@@ -1,28 +1,250 @@
 package ecommerce.external.fake;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import ecommerce.config.CompraProperties;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
 import ecommerce.external.IEstoqueExternal;
 
+/**
+ * Estoque em memória usado no lugar do serviço externo. Produtos sem estoque definido
+ * começam com a quantidade padrão configurada.
+ * <p>
+ * Cada produto tem o seu saldo e a sua trava, sem trava global: a baixa de vários produtos trava
+ * os produtos do pedido em ordem crescente de id, o que evita impasses, confere todos os saldos e
+ * só então debita. Uma baixa que falha não debita nada, então uma baixa concorrente nunca é
+ * recusada por causa de um débito que seria desfeito. Devoluções só somam e não precisam da trava.
+ * <p>
+ * Uma reserva debita o saldo na hora e fica pendente até ser confirmada ou liberada; se nada
+ * acontecer dentro do prazo, a roda de expiração devolve os itens.
+ */
 @Service
-public class EstoqueSimulado implements IEstoqueExternal
+public class EstoqueSimulado implements IEstoqueExternal, AutoCloseable
 {
 
+	private final ConcurrentHashMap<Long, Saldo> estoque = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Long, Map<Long, Long>> reservas = new ConcurrentHashMap<>();
+	private final AtomicLong proximaReserva = new AtomicLong();
+	private final long quantidadePadrao;
+	private final Duration ttlReserva;
+	private final RodaDeExpiracao<Long> expiracao;
+
+	@Autowired
+	public EstoqueSimulado(CompraProperties properties)
+	{
+		this(properties.getEstoque().getSimulado().getQuantidadePadrao(),
+				properties.getEstoque().getSimulado().getTtlReserva(),
+				properties.getEstoque().getSimulado().getResolucaoReserva());
+	}
+
+	public EstoqueSimulado(long quantidadePadrao)
+	{
+		this(quantidadePadrao, Duration.ofSeconds(30), Duration.ofMillis(100));
+	}
+
+	public EstoqueSimulado(long quantidadePadrao, Duration ttlReserva, Duration resolucaoReserva)
+	{
+		this.quantidadePadrao = quantidadePadrao;
+		this.ttlReserva = ttlReserva;
+		this.expiracao = new RodaDeExpiracao<>(resolucaoReserva, this::liberarReserva);
+	}
+
+	public void definirEstoque(Long produtoId, long quantidade)
+	{
+		Saldo saldo = saldo(produtoId);
+		saldo.trava.lock();
+		try
+		{
+			saldo.quantidade.set(quantidade);
+		}
+		finally
+		{
+			saldo.trava.unlock();
+		}
+	}
+
+	public long consultarEstoque(Long produtoId)
+	{
+		Saldo saldo = estoque.get(produtoId);
+		return saldo == null ? quantidadePadrao : saldo.quantidade.get();
+	}
+
 	@Override
 	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		return new EstoqueBaixaDTO(debitar(somarPorProduto(produtosIds, produtosQuantidades)) == null);
+	}
+
+	@Override
+	public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		Map<Long, Long> pedido = somarPorProduto(produtosIds, produtosQuantidades);
+		Long semSaldo = debitar(pedido);
+
+		if (semSaldo != null)
+		{
+			List<Long> indisponiveis = indisponiveis(pedido);
+			return new ReservaEstoqueDTO(false, null, indisponiveis.isEmpty() ? List.of(semSaldo) : indisponiveis);
+		}
+
+		Long reservaId = proximaReserva.incrementAndGet();
+		reservas.put(reservaId, pedido);
+		expiracao.agendar(reservaId, ttlReserva);
+		return new ReservaEstoqueDTO(true, reservaId, List.of());
+	}
+
+	/**
+	 * Uma reserva pendente já foi debitada e só deixa de poder expirar; uma reserva que expirou
+	 * ou foi liberada é refeita como baixa comum.
+	 */
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(Long reservaId, List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		if (reservaId != null && reservas.remove(reservaId) != null)
+		{
+			return new EstoqueBaixaDTO(true);
+		}
+		return darBaixa(produtosIds, produtosQuantidades);
+	}
+
+	@Override
+	public void liberarReserva(Long reservaId)
+	{
+		Map<Long, Long> pedido = reservaId == null ? null : reservas.remove(reservaId);
+		if (pedido != null)
+		{
+			pedido.forEach((produtoId, quantidade) -> saldo(produtoId).quantidade.addAndGet(quantidade));
+		}
 	}
 
 	@Override
 	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		List<Long> indisponiveis = indisponiveis(somarPorProduto(produtosIds, produtosQuantidades));
+		return new DisponibilidadeDTO(indisponiveis.isEmpty(), indisponiveis);
+	}
+
+	public int reservasPendentes()
+	{
+		return reservas.size();
+	}
+
+	@Override
+	public void close()
+	{
+		expiracao.close();
+	}
+
+	/**
+	 * Debita todo o pedido ou nada; devolve o primeiro produto sem saldo, ou null em caso de sucesso.
+	 * O pedido vem em ordem crescente de id, a mesma em que as travas são tomadas.
+	 */
+	private Long debitar(Map<Long, Long> pedido)
+	{
+		List<Saldo> saldos = new ArrayList<>(pedido.size());
+		for (Long produtoId : pedido.keySet())
+		{
+			saldos.add(saldo(produtoId));
+		}
+
+		int travados = 0;
+		try
+		{
+			for (Saldo saldo : saldos)
+			{
+				saldo.trava.lock();
+				travados++;
+			}
+
+			int i = 0;
+			for (Map.Entry<Long, Long> item : pedido.entrySet())
+			{
+				if (saldos.get(i++).quantidade.get() < item.getValue())
+				{
+					return item.getKey();
+				}
+			}
+
+			i = 0;
+			for (Long quantidade : pedido.values())
+			{
+				saldos.get(i++).quantidade.addAndGet(-quantidade);
+			}
+			return null;
+		}
+		finally
+		{
+			while (travados > 0)
+			{
+				saldos.get(--travados).trava.unlock();
+			}
+		}
+	}
+
+	private List<Long> indisponiveis(Map<Long, Long> pedido)
+	{
+		List<Long> indisponiveis = new ArrayList<>();
+		pedido.forEach((produtoId, quantidade) -> {
+			if (consultarEstoque(produtoId) < quantidade)
+			{
+				indisponiveis.add(produtoId);
+			}
+		});
+		return indisponiveis;
+	}
+
+	private Saldo saldo(Long produtoId)
+	{
+		Saldo saldo = estoque.get(produtoId);
+		return saldo != null ? saldo : estoque.computeIfAbsent(produtoId, id -> new Saldo(quantidadePadrao));
+	}
+
+	/**
+	 * Soma as quantidades de produtos repetidos, em ordem crescente de id.
+	 */
+	static Map<Long, Long> somarPorProduto(List<Long> produtosIds, List<Long> produtosQuantidades)
+	{
+		if (produtosIds.size() != produtosQuantidades.size())
+		{
+			throw new IllegalArgumentException("Listas de produtos e quantidades devem ter o mesmo tamanho.");
+		}
+
+		Map<Long, Long> pedido = new TreeMap<>();
+		for (int i = 0; i < produtosIds.size(); i++)
+		{
+			if (produtosQuantidades.get(i) < 0)
+			{
+				throw new IllegalArgumentException("Quantidade não pode ser negativa.");
+			}
+			pedido.merge(produtosIds.get(i), produtosQuantidades.get(i), Long::sum);
+		}
+		return pedido;
+	}
+
+	/**
+	 * Quantidade lida e somada sem trava; conferir e debitar só com a trava do produto.
+	 */
+	private static final class Saldo
+	{
+
+		private final ReentrantLock trava = new ReentrantLock();
+		private final AtomicLong quantidade;
+
+		private Saldo(long quantidade)
+		{
+			this.quantidade = new AtomicLong(quantidade);
+		}
 	}
 }
@@ -1,25 +1,124 @@
 package ecommerce.external.fake;
 
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import ecommerce.config.CompraProperties;
+import ecommerce.config.CompraProperties.DistribuicaoLatencia;
 import ecommerce.dto.PagamentoDTO;
 import ecommerce.external.IPagamentoExternal;
 
+/**
+ * Gateway de pagamento em memória usado no lugar do serviço externo. Cada autorização espera
+ * uma latência sorteada da distribuição configurada e pode ser recusada com a taxa informada.
+ */
 @Service
 public class PagamentoSimulado implements IPagamentoExternal
 {
 
+	private final AtomicLong proximaTransacao = new AtomicLong();
+	private final Set<Long> autorizadas = ConcurrentHashMap.newKeySet();
+	private final Set<Long> canceladas = ConcurrentHashMap.newKeySet();
+	private final DistribuicaoLatencia distribuicao;
+	private final long latenciaMediaNanos;
+	private final double taxaRecusa;
+
+	@Autowired
+	public PagamentoSimulado(CompraProperties properties)
+	{
+		this(properties.getPagamento().getSimulado().getDistribuicao(),
+				properties.getPagamento().getSimulado().getLatenciaMedia(),
+				properties.getPagamento().getSimulado().getTaxaRecusa());
+	}
+
+	public PagamentoSimulado(DistribuicaoLatencia distribuicao, Duration latenciaMedia, double taxaRecusa)
+	{
+		if (taxaRecusa < 0 || taxaRecusa > 1)
+		{
+			throw new IllegalArgumentException("Taxa de recusa deve estar entre 0 e 1.");
+		}
+
+		this.distribuicao = distribuicao;
+		this.latenciaMediaNanos = latenciaMedia.toNanos();
+		this.taxaRecusa = taxaRecusa;
+	}
+
 	@Override
 	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal)
 	{
-		// TODO Auto-generated method stub
-		return null;
+		aguardarLatencia();
+
+		if (taxaRecusa > 0 && ThreadLocalRandom.current().nextDouble() < taxaRecusa)
+		{
+			return new PagamentoDTO(false, null);
+		}
+
+		Long transacaoId = proximaTransacao.incrementAndGet();
+		autorizadas.add(transacaoId);
+		return new PagamentoDTO(true, transacaoId);
 	}
 
 	@Override
 	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId)
 	{
-		// TODO Auto-generated method stub
+		if (pagamentoTransacaoId != null && autorizadas.remove(pagamentoTransacaoId))
+		{
+			canceladas.add(pagamentoTransacaoId);
+		}
+	}
+
+	public boolean isCancelado(Long transacaoId)
+	{
+		return canceladas.contains(transacaoId);
+	}
+
+	/**
+	 * Autorizações que não foram canceladas.
+	 */
+	public int autorizacoesAtivas()
+	{
+		return autorizadas.size();
+	}
+
+	private void aguardarLatencia()
+	{
+		long latencia = sortearLatencia();
+		if (latencia <= 0)
+		{
+			return;
+		}
+
+		try
+		{
+			TimeUnit.NANOSECONDS.sleep(latencia);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Autorização de pagamento interrompida.");
+		}
+	}
+
+	private long sortearLatencia()
+	{
+		if (latenciaMediaNanos <= 0)
+		{
+			return 0;
+		}
 
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return switch (distribuicao)
+		{
+			case FIXA -> latenciaMediaNanos;
+			case UNIFORME -> random.nextLong(2 * latenciaMediaNanos + 1);
+			case EXPONENCIAL -> (long) (-latenciaMediaNanos * Math.log(1.0 - random.nextDouble()));
+		};
 	}
 }
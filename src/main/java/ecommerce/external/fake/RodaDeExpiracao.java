@@ -0,0 +1,94 @@
+package ecommerce.external.fake;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Roda de temporização com granularidade fixa: cada item vai para a posição do tique em que
+ * vence e, a cada tique, só a posição atual é percorrida. Agendar custa O(1) e o trabalho por
+ * tique é proporcional aos itens daquela posição, não ao total pendente. Itens que vencem
+ * mais de uma volta à frente são mantidos na posição até a volta certa.
+ */
+final class RodaDeExpiracao<T> implements AutoCloseable
+{
+
+	private static final int POSICOES = 512;
+
+	private final Queue<Agendamento<T>>[] posicoes;
+	private final long resolucaoNanos;
+	private final Consumer<T> aoExpirar;
+	private final ScheduledExecutorService relogio;
+	private volatile long tiqueAtual;
+
+	@SuppressWarnings("unchecked")
+	RodaDeExpiracao(Duration resolucao, Consumer<T> aoExpirar)
+	{
+		this.posicoes = new Queue[POSICOES];
+		for (int i = 0; i < POSICOES; i++)
+		{
+			posicoes[i] = new ConcurrentLinkedQueue<>();
+		}
+		this.resolucaoNanos = resolucao.toNanos();
+		this.aoExpirar = aoExpirar;
+		this.relogio = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+			Thread thread = new Thread(tarefa, "estoque-expiracao");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.relogio.scheduleAtFixedRate(this::avancar, resolucaoNanos, resolucaoNanos, TimeUnit.NANOSECONDS);
+	}
+
+	void agendar(T item, Duration prazo)
+	{
+		// Arredonda para cima e soma um tique: o item nunca expira antes do prazo
+		long tiques = (prazo.toNanos() + resolucaoNanos - 1) / resolucaoNanos + 1;
+		long vencimento = tiqueAtual + tiques;
+		posicoes[(int) (vencimento % POSICOES)].add(new Agendamento<>(item, vencimento));
+	}
+
+	private void avancar()
+	{
+		long tique = tiqueAtual + 1;
+		Queue<Agendamento<T>> posicao = posicoes[(int) (tique % POSICOES)];
+
+		for (int pendentes = posicao.size(); pendentes > 0; pendentes--)
+		{
+			Agendamento<T> agendamento = posicao.poll();
+			if (agendamento == null)
+			{
+				break;
+			}
+			if (agendamento.vencimento() <= tique)
+			{
+				try
+				{
+					aoExpirar.accept(agendamento.item());
+				}
+				catch (RuntimeException e)
+				{
+					// Uma falha não pode parar o relógio das demais expirações
+				}
+			}
+			else
+			{
+				posicao.add(agendamento);
+			}
+		}
+		tiqueAtual = tique;
+	}
+
+	@Override
+	public void close()
+	{
+		relogio.shutdownNow();
+	}
+
+	private record Agendamento<T>(T item, long vencimento)
+	{
+	}
+}
@@ -0,0 +1,17 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import ecommerce.entity.CancelamentoPendente;
+
+@Repository
+public interface CancelamentoPendenteRepository extends JpaRepository<CancelamentoPendente, Long>
+{
+
+	List<CancelamentoPendente> findByProximaTentativaLessThanEqualOrderByIdAsc(Instant agora, Pageable pagina);
+}
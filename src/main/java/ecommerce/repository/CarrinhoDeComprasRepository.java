@@ -1,8 +1,14 @@
 package ecommerce.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import ecommerce.entity.CarrinhoDeCompras;
@@ -13,4 +19,25 @@ public interface CarrinhoDeComprasRepository extends JpaRepository<CarrinhoDeCom
 {
 
 	Optional<CarrinhoDeCompras> findByIdAndCliente(Long id, Cliente cliente);
+
+	/**
+	 * Carrega carrinho, cliente, itens e produtos em uma única consulta, evitando o N+1 das
+	 * associações {@code itens} e {@code produto} no checkout.
+	 */
+	@EntityGraph(attributePaths = { "cliente", "itens", "itens.produto" })
+	Optional<CarrinhoDeCompras> findWithItensByIdAndCliente(Long id, Cliente cliente);
+
+	@EntityGraph(attributePaths = { "cliente", "itens", "itens.produto" })
+	List<CarrinhoDeCompras> findAllWithItensByIdIn(Collection<Long> ids);
+
+	/**
+	 * Marca como inválidos os agregados dos carrinhos que contêm o produto, para que sejam
+	 * reconstruídos a partir dos itens com o preço e o peso atuais. Avança também a versão: uma
+	 * transação que leu o carrinho antes disso falha ao gravar em vez de regravar agregados antigos
+	 * como válidos.
+	 */
+	@Modifying
+	@Query("update CarrinhoDeCompras c set c.agregadosValidos = false, c.versao = c.versao + 1 where c.id in "
+			+ "(select i.carrinho.id from ItemCompra i where i.produto.id = :produtoId)")
+	int invalidarAgregadosComProduto(@Param("produtoId") Long produtoId);
 }
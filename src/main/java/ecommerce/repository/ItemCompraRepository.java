@@ -0,0 +1,16 @@
+package ecommerce.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+
+@Repository
+public interface ItemCompraRepository extends JpaRepository<ItemCompra, Long>
+{
+
+	Optional<ItemCompra> findByIdAndCarrinho(Long id, CarrinhoDeCompras carrinho);
+}
@@ -1,6 +1,11 @@
 package ecommerce.service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import ecommerce.entity.CarrinhoDeCompras;
@@ -10,6 +15,8 @@ import ecommerce.repository.CarrinhoDeComprasRepository;
 @Service
 public class CarrinhoDeComprasService
 {
+	private static final String CARRINHO_ALTERADO = "Carrinho alterado por outra compra.";
+
 	private final CarrinhoDeComprasRepository repository;
 
 	@Autowired
@@ -23,4 +30,53 @@ public class CarrinhoDeComprasService
 		return repository.findByIdAndCliente(carrinhoId, cliente)
 				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
 	}
+
+	/**
+	 * Carrega o carrinho com itens e produtos em uma única consulta.
+	 */
+	public CarrinhoDeCompras buscarComItensPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente)
+	{
+		return repository.findWithItensByIdAndCliente(carrinhoId, cliente)
+				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
+	}
+
+	/**
+	 * Carrega os carrinhos com cliente, itens e produtos em uma única consulta.
+	 * Ids inexistentes são ignorados.
+	 */
+	public List<CarrinhoDeCompras> buscarPorIds(Collection<Long> carrinhosIds)
+	{
+		return repository.findAllWithItensByIdIn(carrinhosIds);
+	}
+
+	/**
+	 * Marca o carrinho como finalizado e grava na hora, conferindo a versão lida. A linha fica
+	 * bloqueada até o fim da transação: em outra instância, uma compra do mesmo carrinho espera o
+	 * commit e então falha pela versão; se esta transação for desfeita, o carrinho volta a poder ser
+	 * comprado.
+	 *
+	 * @param versao versão que o cliente leu, ou {@code null} para aceitar a versão carregada
+	 * @throws IllegalStateException se o carrinho já foi finalizado ou não está mais na versão
+	 */
+	public void finalizar(CarrinhoDeCompras carrinho, Long versao)
+	{
+		if (carrinho.isFinalizado())
+		{
+			throw new IllegalStateException("Carrinho já finalizado.");
+		}
+		if (versao != null && !Objects.equals(versao, carrinho.getVersao()))
+		{
+			throw new IllegalStateException(CARRINHO_ALTERADO);
+		}
+
+		carrinho.finalizar();
+		try
+		{
+			repository.flush();
+		}
+		catch (OptimisticLockingFailureException e)
+		{
+			throw new IllegalStateException(CARRINHO_ALTERADO);
+		}
+	}
 }
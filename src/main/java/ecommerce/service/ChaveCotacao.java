@@ -0,0 +1,80 @@
+package ecommerce.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Impressão digital do conteúdo de um carrinho para o cache de cotações: para cada item,
+ * id e versão do produto e quantidade, além da região e do tipo de cliente. Como a versão
+ * persistida muda a cada gravação do produto, e a versão das regras de precificação a cada troca,
+ * uma chave nunca aponta para uma cotação calculada com dados antigos; por isso o cache não
+ * precisa ser invalidado ao salvar um produto.
+ */
+final class ChaveCotacao {
+
+    private static final int CAMPOS_POR_ITEM = 3;
+
+    private final long[] itens;
+    private final Regiao regiao;
+    private final TipoCliente tipoCliente;
+    private final long versaoRegras;
+    private final int hash;
+
+    private ChaveCotacao(long[] itens, Regiao regiao, TipoCliente tipoCliente, long versaoRegras) {
+        this.itens = itens;
+        this.regiao = regiao;
+        this.tipoCliente = tipoCliente;
+        this.versaoRegras = versaoRegras;
+        this.hash = 31 * (31 * (31 * Arrays.hashCode(itens) + regiao.hashCode()) + tipoCliente.hashCode())
+                + Long.hashCode(versaoRegras);
+    }
+
+    /**
+     * @return a chave, ou {@code null} se algum item não puder ser identificado (produto
+     *         ainda não persistido, com alterações não salvas ou dados incompletos), caso em que
+     *         a cotação não é memorizada
+     */
+    static ChaveCotacao de(List<ItemCompra> itens, Regiao regiao, TipoCliente tipoCliente, long versaoRegras) {
+        long[] dados = new long[itens.size() * CAMPOS_POR_ITEM];
+        int i = 0;
+
+        for (ItemCompra item : itens) {
+            Produto produto = item.getProduto();
+            if (produto == null || produto.getId() == null || produto.getVersao() == null
+                    || produto.possuiAlteracoesNaoSalvas() || item.getQuantidade() == null) {
+                return null;
+            }
+
+            dados[i++] = produto.getId();
+            dados[i++] = produto.getVersao();
+            dados[i++] = item.getQuantidade();
+        }
+        return new ChaveCotacao(dados, regiao, tipoCliente, versaoRegras);
+    }
+
+    int quantidadeItens() {
+        return itens.length / CAMPOS_POR_ITEM;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChaveCotacao outra)) {
+            return false;
+        }
+        return hash == outra.hash && regiao == outra.regiao && tipoCliente == outra.tipoCliente
+                && versaoRegras == outra.versaoRegras && Arrays.equals(itens, outra.itens);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
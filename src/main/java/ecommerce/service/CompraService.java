@@ -3,21 +3,39 @@ package ecommerce.service;
 import java.math.BigDecimal;
 import java.math.RoundingMode; // Importado para o arredondamento final
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import ecommerce.config.CompraProperties;
+import ecommerce.config.CompraProperties.MotorPrecificacao;
 import ecommerce.dto.CompraDTO;
-import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.EtapaCotacaoDTO;
+import ecommerce.dto.ExplicacaoCotacaoDTO;
+import ecommerce.dto.FreteDTO;
 import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.RegrasPrecificacaoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.dto.SubTotalCategoriaDTO;
+import ecommerce.dto.TotalCotacaoDTO;
 import ecommerce.entity.*;
 import ecommerce.external.IEstoqueExternal;
 import ecommerce.external.IPagamentoExternal;
-import jakarta.transaction.Transactional;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 // Imports não utilizados no método de cálculo foram removidos para clareza
 // import ecommerce.dto.CompraDTO;
@@ -27,207 +45,557 @@ import org.springframework.stereotype.Service;
 @Service
 public class CompraService {
 
-    private static final BigDecimal DESCONTO_TIPO_5_PERCENT = new BigDecimal("0.05");
-    private static final BigDecimal DESCONTO_TIPO_10_PERCENT = new BigDecimal("0.10");
-    private static final BigDecimal DESCONTO_TIPO_15_PERCENT = new BigDecimal("0.15");
-
-    private static final BigDecimal VALOR_MIN_DESCONTO_10 = new BigDecimal("500.00");
-    private static final BigDecimal VALOR_MIN_DESCONTO_20 = new BigDecimal("1000.00");
-    private static final BigDecimal DESCONTO_VALOR_10_PERCENT = new BigDecimal("0.10");
-    private static final BigDecimal DESCONTO_VALOR_20_PERCENT = new BigDecimal("0.20");
-
-    private static final BigDecimal LIMITE_PESO_FAIXA_A = new BigDecimal("5.00");
-    private static final BigDecimal LIMITE_PESO_FAIXA_B = new BigDecimal("10.00");
-    private static final BigDecimal LIMITE_PESO_FAIXA_C = new BigDecimal("50.00");
-
-    private static final BigDecimal VALOR_KG_FAIXA_A = BigDecimal.ZERO;
-    private static final BigDecimal VALOR_KG_FAIXA_B = new BigDecimal("2.00");
-    private static final BigDecimal VALOR_KG_FAIXA_C = new BigDecimal("4.00");
-    private static final BigDecimal VALOR_KG_FAIXA_D = new BigDecimal("7.00");
-
-    private static final BigDecimal TAXA_MINIMA_FRETE = new BigDecimal("12.00");
-    private static final BigDecimal TAXA_ITEM_FRAGIL = new BigDecimal("5.00");
+    private final CarrinhoDeComprasService carrinhoService;
+    private final ClienteService clienteService;
+    private final IEstoqueExternal estoqueExternal;
+    private final IPagamentoExternal pagamentoExternal;
+    private final CompraProperties properties;
+    private final CotacaoCache cotacaoCache;
+    private final Executor checkoutExecutor;
+    private final FilaDeCancelamentos filaDeCancelamentos;
+    private final MetricasCompra metricas;
+    private final TravasPorCarrinho travasPorCarrinho;
+    private final TransactionTemplate transacoes;
+    private final AtomicReference<RegrasPrecificacao> regras;
 
-    private static final BigDecimal DESCONTO_CLIENTE_PRATA = new BigDecimal("0.50");
+    public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+                         IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal) {
+        this(carrinhoService, clienteService, estoqueExternal, pagamentoExternal, new CompraProperties());
+    }
 
-    private static final Map<Regiao, BigDecimal> FATOR_REGIAO_MAP = new HashMap<>();
+    public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+                         IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+                         CompraProperties properties) {
+        this(carrinhoService, clienteService, estoqueExternal, pagamentoExternal, properties, null, Runnable::run);
+    }
 
-    static {
-        FATOR_REGIAO_MAP.put(Regiao.SUDESTE, new BigDecimal("1.00"));
-        FATOR_REGIAO_MAP.put(Regiao.SUL, new BigDecimal("1.05"));
-        FATOR_REGIAO_MAP.put(Regiao.NORDESTE, new BigDecimal("1.10"));
-        FATOR_REGIAO_MAP.put(Regiao.CENTRO_OESTE, new BigDecimal("1.20"));
-        FATOR_REGIAO_MAP.put(Regiao.NORTE, new BigDecimal("1.30"));
+    public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+                         IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+                         CompraProperties properties, CotacaoCache cotacaoCache, Executor checkoutExecutor) {
+        this(carrinhoService, clienteService, estoqueExternal, pagamentoExternal, properties, cotacaoCache,
+                checkoutExecutor, null);
     }
 
+    /**
+     * Sem fila de cancelamentos, o pagamento de um checkout que falhou é cancelado na própria
+     * requisição; as métricas ficam em um registro próprio, fora do actuator.
+     */
+    public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+                         IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+                         CompraProperties properties, CotacaoCache cotacaoCache, Executor checkoutExecutor,
+                         FilaDeCancelamentos filaDeCancelamentos) {
+        this(carrinhoService, clienteService, estoqueExternal, pagamentoExternal, properties, cotacaoCache,
+                checkoutExecutor, filaDeCancelamentos, new MetricasCompra(new SimpleMeterRegistry()));
+    }
 
-    private final CarrinhoDeComprasService carrinhoService;
-    private final ClienteService clienteService;
-    private final IEstoqueExternal estoqueExternal;
-    private final IPagamentoExternal pagamentoExternal;
+    /**
+     * Sem gerenciador de transações, o checkout roda sem transação.
+     */
+    public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+                         IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+                         CompraProperties properties, CotacaoCache cotacaoCache, Executor checkoutExecutor,
+                         FilaDeCancelamentos filaDeCancelamentos, MetricasCompra metricas) {
+        this(carrinhoService, clienteService, estoqueExternal, pagamentoExternal, properties, cotacaoCache,
+                checkoutExecutor, filaDeCancelamentos, metricas, null);
+    }
 
     @Autowired
     public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
-                         IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal) {
+                         IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+                         CompraProperties properties, CotacaoCache cotacaoCache,
+                         @Qualifier("checkoutExecutor") Executor checkoutExecutor,
+                         FilaDeCancelamentos filaDeCancelamentos, MetricasCompra metricas,
+                         TransactionTemplate transacoes) {
         this.carrinhoService = carrinhoService;
         this.clienteService = clienteService;
         this.estoqueExternal = estoqueExternal;
         this.pagamentoExternal = pagamentoExternal;
+        this.properties = properties;
+        this.cotacaoCache = properties.getCotacao().getCache().isHabilitado() ? cotacaoCache : null;
+        this.checkoutExecutor = checkoutExecutor;
+        this.filaDeCancelamentos = filaDeCancelamentos;
+        this.metricas = metricas;
+        this.travasPorCarrinho = new TravasPorCarrinho(properties.getCheckout().getTravasCarrinho());
+        this.transacoes = transacoes;
+        this.regras = new AtomicReference<>(
+                RegrasPrecificacao.compilar(properties.getPrecificacao().getRegras().paraDTO(), 1));
     }
 
-    @Transactional
     public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId) {
-        Cliente cliente = clienteService.buscarPorId(clienteId);
-        CarrinhoDeCompras carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+        return finalizarCompra(carrinhoId, clienteId, null);
+    }
+
+    /**
+     * Compras do mesmo carrinho são serializadas nesta instância pela trava do carrinho e, entre
+     * instâncias, pela finalização gravada no carrinho no início da transação. A trava é tomada
+     * antes da transação e só é liberada depois do commit: quem esperou por ela já encontra o
+     * carrinho finalizado e falha sem consultar estoque nem pagamento.
+     *
+     * @param versao versão do carrinho que o cliente leu; quando informada, a compra só acontece se
+     *               o carrinho ainda estiver nela
+     */
+    public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId, Long versao) {
+        if (carrinhoId == null) {
+            throw new IllegalArgumentException("Carrinho não encontrado.");
+        }
+        ReentrantLock trava = travasPorCarrinho.para(carrinhoId);
+        travar(trava);
+        try {
+            return emTransacao(() -> {
+                Cliente cliente = metricas.medirEtapa(MetricasCompra.ETAPA_CLIENTE,
+                        () -> clienteService.buscarPorId(clienteId));
+                CarrinhoDeCompras carrinho = metricas.medirEtapa(MetricasCompra.ETAPA_CARRINHO,
+                        () -> carrinhoService.buscarComItensPorCarrinhoIdEClienteId(carrinhoId, cliente));
+
+                carrinhoService.finalizar(carrinho, versao);
+                return finalizarCompra(cliente, carrinho);
+            });
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private <T> T emTransacao(Supplier<T> acao) {
+        return transacoes == null ? acao.get() : transacoes.execute(status -> acao.get());
+    }
+
+    private void travar(ReentrantLock trava) {
+        try {
+            if (!trava.tryLock(properties.getCheckout().getEsperaCarrinho().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new IllegalStateException("Compra deste carrinho já está em andamento.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Compra interrompida.");
+        }
+    }
 
+    private CompraDTO finalizarCompra(Cliente cliente, CarrinhoDeCompras carrinho) {
         List<Long> produtosIds = carrinho.getItens().stream().map(i -> i.getProduto().getId())
                 .collect(Collectors.toList());
         List<Long> produtosQtds = carrinho.getItens().stream().map(i -> i.getQuantidade()).collect(Collectors.toList());
 
-        DisponibilidadeDTO disponibilidade = estoqueExternal.verificarDisponibilidade(produtosIds, produtosQtds);
+        // A reserva de estoque (E/S) e o cálculo do custo (CPU) são independentes e rodam em paralelo
+        CompletableFuture<ReservaEstoqueDTO> reservaFutura = CompletableFuture.supplyAsync(
+                () -> metricas.medirEtapa(MetricasCompra.ETAPA_ESTOQUE,
+                        () -> estoqueExternal.reservar(produtosIds, produtosQtds)),
+                checkoutExecutor);
+        CompletableFuture<BigDecimal> custoTotalFuturo = CompletableFuture.supplyAsync(
+                () -> metricas.medirEtapa(MetricasCompra.ETAPA_PRECIFICACAO,
+                        () -> calcularCustoACobrar(carrinho, cliente.getRegiao(), cliente.getTipo())),
+                checkoutExecutor);
 
-        if (!disponibilidade.disponivel()) {
+        ReservaEstoqueDTO reserva = aguardar(reservaFutura);
+
+        if (!reserva.reservado()) {
+            custoTotalFuturo.cancel(false);
             throw new IllegalStateException("Itens fora de estoque.");
         }
 
-        BigDecimal custoTotal = calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
-
-        PagamentoDTO pagamento = pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue());
+        // Com os itens reservados, nenhum outro checkout pode levá-los enquanto o pagamento é
+        // autorizado: qualquer falha até aqui só libera a reserva, sem cancelar pagamento
+        PagamentoDTO pagamento;
+        try {
+            BigDecimal custoTotal = aguardar(custoTotalFuturo);
+            metricas.registrarCotacao(carrinho.getItens().size(), custoTotal);
+            pagamento = metricas.medirEtapa(MetricasCompra.ETAPA_PAGAMENTO,
+                    () -> pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue()));
+        } catch (RuntimeException e) {
+            estoqueExternal.liberarReserva(reserva.reservaId());
+            throw e;
+        }
 
         if (!pagamento.autorizado()) {
+            estoqueExternal.liberarReserva(reserva.reservaId());
             throw new IllegalStateException("Pagamento não autorizado.");
         }
 
-        EstoqueBaixaDTO baixaDTO = estoqueExternal.darBaixa(produtosIds, produtosQtds);
+        // Daqui em diante o pagamento já foi autorizado: qualquer falha, inclusive no commit, cancela
+        // o pagamento e devolve a reserva
+        Long clienteId = cliente.getId();
+        Long transacaoId = pagamento.transacaoId();
+        try {
+            EstoqueBaixaDTO baixaDTO = metricas.medirEtapa(MetricasCompra.ETAPA_BAIXA,
+                    () -> estoqueExternal.confirmarReserva(reserva.reservaId(), produtosIds, produtosQtds));
 
-        if (!baixaDTO.sucesso()) {
-            pagamentoExternal.cancelarPagamento(cliente.getId(), pagamento.transacaoId());
-            throw new IllegalStateException("Erro ao dar baixa no estoque.");
+            if (!baixaDTO.sucesso()) {
+                throw new IllegalStateException("Erro ao dar baixa no estoque.");
+            }
+            desfazerSeNaoConfirmada(clienteId, transacaoId, reserva.reservaId());
+        } catch (RuntimeException e) {
+            try {
+                desfazerCompra(clienteId, transacaoId, reserva.reservaId());
+            } catch (RuntimeException falha) {
+                e.addSuppressed(falha);
+            }
+            throw e;
         }
 
-        CompraDTO compraDTO = new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
+        CompraDTO compraDTO = new CompraDTO(true, transacaoId, "Compra finalizada com sucesso.");
 
         return compraDTO;
     }
 
+    /**
+     * Dentro de uma transação, agenda o desfazimento da compra para o caso de ela não ser
+     * confirmada: um commit que falha, ou cujo resultado é desconhecido, não pode deixar o
+     * pagamento autorizado.
+     */
+    private void desfazerSeNaoConfirmada(Long clienteId, Long transacaoId, Long reservaId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    desfazerCompra(clienteId, transacaoId, reservaId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancela o pagamento e devolve a reserva ainda não confirmada; uma baixa já confirmada não
+     * volta ao estoque, porque o serviço de estoque não tem estorno.
+     */
+    private void desfazerCompra(Long clienteId, Long transacaoId, Long reservaId) {
+        try {
+            cancelarPagamento(clienteId, transacaoId);
+        } finally {
+            estoqueExternal.liberarReserva(reservaId);
+        }
+    }
+
+    /**
+     * Toda falha depois da autorização chega aqui por {@link #desfazerCompra}: com a fila, o
+     * cancelamento é gravado em transação própria e sobrevive ao rollback do checkout.
+     */
+    private void cancelarPagamento(Long clienteId, Long transacaoId) {
+        if (filaDeCancelamentos != null) {
+            filaDeCancelamentos.enfileirar(clienteId, transacaoId);
+        } else {
+            pagamentoExternal.cancelarPagamento(clienteId, transacaoId);
+        }
+    }
+
+    private static <T> T aguardar(CompletableFuture<T> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException("Erro ao processar compra.", e.getCause());
+        }
+    }
+
+
+    /**
+     * Carrega o carrinho do cliente com itens e produtos, pronto para ser cotado fora da transação.
+     */
+    public CarrinhoDeCompras buscarCarrinhoParaCotacao(Long carrinhoId, Long clienteId) {
+        Cliente cliente = clienteService.buscarPorId(clienteId);
+        return carrinhoService.buscarComItensPorCarrinhoIdEClienteId(carrinhoId, cliente);
+    }
 
     public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
 
-        if (carrinho == null || carrinho.getItens() == null) {
-            throw new IllegalArgumentException("Carrinho ou lista de itens não pode ser nulo.");
+        validarCotacao(carrinho, regiao, tipoCliente);
+
+        // Com agregados válidos a cotação custa O(categorias): não há o que memorizar, e os itens
+        // nem precisam estar carregados
+        ResumoCarrinho agregados = resumirAgregados(carrinho);
+        if (agregados != null) {
+            return agregados.isVazio() ? BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP)
+                    : calcularCustoTotal(agregados, regiao, tipoCliente, regras.get(), null);
         }
-        if (regiao == null || tipoCliente == null) {
-            throw new IllegalArgumentException("Região e Tipo de Cliente não podem ser nulos.");
+        return calcularCustoTotalPelosItens(carrinho.getItens(), regiao, tipoCliente);
+    }
+
+    /**
+     * Custo cobrado no checkout: sempre a partir dos itens, que já vêm carregados com o carrinho,
+     * porque itens ou produtos gravados por fora dos métodos do carrinho e de
+     * {@link ProdutoService#salvar} deixam os agregados desatualizados sem invalidá-los. Agregados
+     * válidos que divergem dos itens são contados em {@code compra.carrinho.agregados.divergentes}.
+     */
+    private BigDecimal calcularCustoACobrar(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
+        validarCotacao(carrinho, regiao, tipoCliente);
+
+        ResumoCarrinho agregados = carrinho.resumirAgregados();
+        if (agregados != null && !agregados.equivalente(ResumoCarrinho.calcular(carrinho.getItens()))) {
+            metricas.registrarDivergenciaAgregados();
         }
-        if (carrinho.getItens().isEmpty()) {
+        return calcularCustoTotalPelosItens(carrinho.getItens(), regiao, tipoCliente);
+    }
+
+    private BigDecimal calcularCustoTotalPelosItens(List<ItemCompra> itensCarrinho, Regiao regiao,
+                                                    TipoCliente tipoCliente) {
+        if (itensCarrinho.isEmpty()) {
             return BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP);
         }
 
-        List<ItemCompra> itensCarrinho = carrinho.getItens();
+        RegrasPrecificacao vigentes = regras.get();
 
-        BigDecimal subTotalItensComDescontoTipo = calcularSubTotalItens(itensCarrinho);
-        BigDecimal subTotalItensDescontoFinal = calcularDescontoTotal(subTotalItensComDescontoTipo);
-        BigDecimal frete = calcularFrete(itensCarrinho, tipoCliente, regiao);
+        ChaveCotacao chave = cotacaoCache == null ? null
+                : ChaveCotacao.de(itensCarrinho, regiao, tipoCliente, vigentes.versao());
+        if (chave != null) {
+            BigDecimal memorizado = cotacaoCache.buscar(chave);
+            if (memorizado != null) {
+                return memorizado;
+            }
+        }
+
+        BigDecimal custoTotal = calcularCustoTotal(itensCarrinho, regiao, tipoCliente, vigentes);
+
+        if (chave != null) {
+            cotacaoCache.guardar(chave, custoTotal);
+        }
+        return custoTotal;
+    }
+
+    private BigDecimal calcularCustoTotal(List<ItemCompra> itensCarrinho, Regiao regiao, TipoCliente tipoCliente,
+                                          RegrasPrecificacao regras) {
+        if (properties.getPrecificacao().getMotor() == MotorPrecificacao.PONTO_FIXO && regras.pontoFixo() != null) {
+            BigDecimal total = regras.pontoFixo().calcularCustoTotal(itensCarrinho, regiao, tipoCliente);
+            if (total != null) {
+                return total;
+            }
+        }
+
+        return calcularCustoTotal(itensCarrinho, regiao, tipoCliente, regras, null);
+    }
+
+    BigDecimal calcularCustoTotal(List<ItemCompra> itensCarrinho, Regiao regiao, TipoCliente tipoCliente,
+                                  RastroPrecificacao rastro) {
+        return calcularCustoTotal(itensCarrinho, regiao, tipoCliente, regras.get(), rastro);
+    }
+
+    /**
+     * Cálculo com BigDecimal. Com rastro, cada regra aplicada é registrada no buffer da thread;
+     * sem rastro, o custo é uma comparação com null por regra.
+     */
+    private BigDecimal calcularCustoTotal(List<ItemCompra> itensCarrinho, Regiao regiao, TipoCliente tipoCliente,
+                                          RegrasPrecificacao regras, RastroPrecificacao rastro) {
+        // Sem rastro ninguém vê o detalhamento do frete: se ele é isento, peso e itens frágeis são ignorados
+        boolean freteIsento = rastro == null && regras.fatorFrete(regiao, tipoCliente).signum() == 0;
+        ResumoCarrinho resumo = freteIsento ? ResumoCarrinho.calcularSemFrete(itensCarrinho)
+                : ResumoCarrinho.calcular(itensCarrinho);
+
+        return calcularCustoTotal(resumo, regiao, tipoCliente, regras, rastro);
+    }
+
+    private BigDecimal calcularCustoTotal(ResumoCarrinho resumo, Regiao regiao, TipoCliente tipoCliente,
+                                          RegrasPrecificacao regras, RastroPrecificacao rastro) {
+        boolean freteIsento = rastro == null && regras.fatorFrete(regiao, tipoCliente).signum() == 0;
+
+        BigDecimal subTotalItensComDescontoTipo = calcularSubTotalItens(resumo, regras, rastro);
+        BigDecimal subTotalItensDescontoFinal = calcularDescontoTotal(subTotalItensComDescontoTipo, regras, rastro);
+        BigDecimal frete = freteIsento ? BigDecimal.ZERO
+                : detalharFrete(resumo, tipoCliente, regiao, regras, rastro).total();
 
         return subTotalItensDescontoFinal.add(frete).setScale(2, RoundingMode.HALF_UP);
     }
 
-    private BigDecimal calcularSubTotalItens(List<ItemCompra> itens) {
-        BigDecimal totalFinal = BigDecimal.ZERO;
+    /**
+     * Calcula o custo total listando as regras que o determinaram: desconto de cada categoria,
+     * desconto por valor, faixa de frete, taxas, fator da região e benefício do cliente. Não usa
+     * o cache de cotações nem o motor de ponto fixo, que chegam ao mesmo total.
+     */
+    public ExplicacaoCotacaoDTO explicarCustoTotal(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
 
-        Map<TipoProduto, SubTotalPorCategoria> subTotalPorCategoriaMap = itens.stream()
-                .collect(Collectors.groupingBy(
-                        item -> item.getProduto().getTipo(),
-                        Collectors.collectingAndThen(
-                                Collectors.toList(),
-                                SubTotalPorCategoria::calcularSubTotal
-                        )
-                ));
-
-        for (SubTotalPorCategoria subTotalPorCategoria : subTotalPorCategoriaMap.values()) {
-            int totalQuantidade = subTotalPorCategoria.getTotalQuantidade();
-            BigDecimal subTotalCategoria = subTotalPorCategoria.getSubTotal();
-            BigDecimal desconto = BigDecimal.ZERO;
-
-            if (totalQuantidade >= 8) {
-                desconto = DESCONTO_TIPO_15_PERCENT;
-            } else if (totalQuantidade >= 5) {
-                desconto = DESCONTO_TIPO_10_PERCENT;
-            } else if (totalQuantidade >= 3) {
-                desconto = DESCONTO_TIPO_5_PERCENT;
-            }
+        validarCotacao(carrinho, regiao, tipoCliente);
 
-            totalFinal = totalFinal.add(subTotalCategoria.multiply(BigDecimal.ONE.subtract(desconto)));
+        if (carrinho.getItens().isEmpty()) {
+            return new ExplicacaoCotacaoDTO(BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP), List.of());
         }
-        return totalFinal;
+
+        RegrasPrecificacao vigentes = regras.get();
+        RastroPrecificacao rastro = RastroPrecificacao.daThread();
+        long marca = rastro.marcar();
+        BigDecimal custoTotal = calcularCustoTotal(resumir(carrinho), regiao, tipoCliente, vigentes, rastro);
+
+        return new ExplicacaoCotacaoDTO(custoTotal, rastro.desde(marca, vigentes));
     }
 
-    private BigDecimal calcularDescontoTotal(BigDecimal total) {
+    public RegrasPrecificacaoDTO regrasPrecificacao() {
+        return regras.get().definicao();
+    }
 
-        if (total.compareTo(VALOR_MIN_DESCONTO_20) > 0) {
-            return total.multiply(BigDecimal.ONE.subtract(DESCONTO_VALOR_20_PERCENT));
+    /**
+     * Compila e publica novas regras de precificação. Cotações em andamento terminam com as regras
+     * que leram; as seguintes usam as novas, e o cache deixa de devolver cotações anteriores à troca.
+     *
+     * @throws IllegalArgumentException se a tabela for inválida
+     * @throws IllegalStateException se as regras mudaram desde a versão informada
+     */
+    public RegrasPrecificacaoDTO substituirRegrasPrecificacao(RegrasPrecificacaoDTO novas) {
+        RegrasPrecificacao atuais = regras.get();
+
+        if (novas != null && novas.versao() != null && novas.versao() != atuais.versao()) {
+            throw new IllegalStateException("Regras de precificação alteradas por outra requisição.");
+        }
 
-        } else if (total.compareTo(VALOR_MIN_DESCONTO_10) > 0) {
-            return total.multiply(BigDecimal.ONE.subtract(DESCONTO_VALOR_10_PERCENT));
+        RegrasPrecificacao compiladas = RegrasPrecificacao.compilar(novas, atuais.versao() + 1);
+        if (!regras.compareAndSet(atuais, compiladas)) {
+            throw new IllegalStateException("Regras de precificação alteradas por outra requisição.");
         }
 
-        return total;
+        if (cotacaoCache != null) {
+            cotacaoCache.invalidarTodos();
+        }
+        return compiladas.definicao();
     }
 
-    private BigDecimal calcularFrete(List<ItemCompra> itens, TipoCliente tipoCliente, Regiao regiao) {
+    /**
+     * Mesmo cálculo de {@link #calcularCustoTotal}, entregando cada parte ao consumidor assim que
+     * é calculada: um subtotal por categoria, o detalhamento do frete e, por último, o total.
+     */
+    public void cotarEmEtapas(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente,
+                              Consumer<EtapaCotacaoDTO> etapas) {
 
-        BigDecimal subTotalFrete = BigDecimal.ZERO;
-        BigDecimal totalPeso = BigDecimal.ZERO;
-        BigDecimal faixaSelecionada = BigDecimal.ZERO;
+        validarCotacao(carrinho, regiao, tipoCliente);
 
-        for (ItemCompra itemCompra : itens) {
-            Produto produto = itemCompra.getProduto();
-            BigDecimal pesoTributavel = produto.calcularPesoTributavel();
+        if (carrinho.getItens().isEmpty()) {
+            BigDecimal zero = BigDecimal.ZERO.setScale(2, RoundingMode.HALF_UP);
+            etapas.accept(new TotalCotacaoDTO(zero, zero, zero, zero));
+            return;
+        }
 
-            totalPeso = totalPeso.add(
-                    pesoTributavel.multiply(BigDecimal.valueOf(itemCompra.getQuantidade()))
-            );
+        RegrasPrecificacao vigentes = regras.get();
+        ResumoCarrinho resumo = resumir(carrinho);
+        BigDecimal subTotalItens = BigDecimal.ZERO;
 
-            if (produto.isFragil()) {
-                BigDecimal taxaFragil = TAXA_ITEM_FRAGIL.multiply(BigDecimal.valueOf(itemCompra.getQuantidade()));
-                subTotalFrete = subTotalFrete.add(taxaFragil);
+        for (TipoProduto tipo : TipoProduto.values()) {
+            if (!resumo.contem(tipo)) {
+                continue;
             }
+
+            BigDecimal desconto = vigentes.descontoCategoria(resumo.getQuantidade(tipo));
+            BigDecimal subTotalComDesconto = resumo.getSubTotal(tipo)
+                    .multiply(vigentes.fatorCategoria(resumo.getQuantidade(tipo)));
+            subTotalItens = subTotalItens.add(subTotalComDesconto);
+
+            etapas.accept(new SubTotalCategoriaDTO(tipo, resumo.getQuantidade(tipo), resumo.getSubTotal(tipo),
+                    desconto, subTotalComDesconto));
         }
 
-        boolean isentoTaxaMinima = false;
+        FreteDTO frete = detalharFrete(resumo, tipoCliente, regiao, vigentes, null);
+        etapas.accept(frete);
+
+        BigDecimal totalItens = calcularDescontoTotal(subTotalItens, vigentes, null);
+        BigDecimal custoTotal = totalItens.add(frete.total()).setScale(2, RoundingMode.HALF_UP);
+
+        etapas.accept(new TotalCotacaoDTO(subTotalItens, totalItens, frete.total(), custoTotal));
+    }
+
+    private ResumoCarrinho resumir(CarrinhoDeCompras carrinho) {
+        ResumoCarrinho agregados = resumirAgregados(carrinho);
+        return agregados != null ? agregados : ResumoCarrinho.calcular(carrinho.getItens());
+    }
+
+    /**
+     * Resumo mantido pelo próprio carrinho, ou {@code null} se os agregados não estiverem válidos.
+     * Com {@code compra.cotacao.verificar-agregados}, confere contra o recálculo a partir dos itens
+     * e, se divergirem, conta a divergência e usa o recálculo.
+     */
+    private ResumoCarrinho resumirAgregados(CarrinhoDeCompras carrinho) {
+        ResumoCarrinho agregados = carrinho.resumirAgregados();
+        if (agregados == null || !properties.getCotacao().isVerificarAgregados()) {
+            return agregados;
+        }
 
-        if (totalPeso.compareTo(LIMITE_PESO_FAIXA_A) <= 0) {
-            faixaSelecionada = VALOR_KG_FAIXA_A;
-            isentoTaxaMinima = true;
+        ResumoCarrinho recalculado = ResumoCarrinho.calcular(carrinho.getItens());
+        if (!agregados.equivalente(recalculado)) {
+            metricas.registrarDivergenciaAgregados();
+            return recalculado;
         }
-        else if (totalPeso.compareTo(LIMITE_PESO_FAIXA_B) <= 0) {
-            faixaSelecionada = VALOR_KG_FAIXA_B;
+        return agregados;
+    }
+
+    private void validarCotacao(CarrinhoDeCompras carrinho, Regiao regiao, TipoCliente tipoCliente) {
+        if (carrinho == null || carrinho.getItens() == null) {
+            throw new IllegalArgumentException("Carrinho ou lista de itens não pode ser nulo.");
         }
-        else if (totalPeso.compareTo(LIMITE_PESO_FAIXA_C) <= 0) {
-            faixaSelecionada = VALOR_KG_FAIXA_C;
+        if (regiao == null || tipoCliente == null) {
+            throw new IllegalArgumentException("Região e Tipo de Cliente não podem ser nulos.");
         }
-        else {
-            faixaSelecionada = VALOR_KG_FAIXA_D;
+    }
+
+    BigDecimal calcularSubTotalItens(ResumoCarrinho resumo) {
+        return calcularSubTotalItens(resumo, regras.get(), null);
+    }
+
+    private BigDecimal calcularSubTotalItens(ResumoCarrinho resumo, RegrasPrecificacao regras,
+                                             RastroPrecificacao rastro) {
+        BigDecimal totalFinal = BigDecimal.ZERO;
+
+        for (TipoProduto tipo : TipoProduto.values()) {
+            if (!resumo.contem(tipo)) {
+                continue;
+            }
+
+            BigDecimal subTotalCategoria = resumo.getSubTotal(tipo);
+            BigDecimal fator = regras.fatorCategoria(resumo.getQuantidade(tipo));
+            if (rastro != null) {
+                rastro.registrar(RastroPrecificacao.Regra.DESCONTO_CATEGORIA, tipo.ordinal(), resumo.getQuantidade(tipo));
+            }
+
+            totalFinal = totalFinal.add(subTotalCategoria.multiply(fator));
         }
+        return totalFinal;
+    }
+
+    BigDecimal calcularDescontoTotal(BigDecimal total) {
+        return calcularDescontoTotal(total, regras.get(), null);
+    }
+
+    private BigDecimal calcularDescontoTotal(BigDecimal total, RegrasPrecificacao regras, RastroPrecificacao rastro) {
+        int indice = regras.indiceDescontoValor(total);
+        registrar(rastro, RastroPrecificacao.Regra.DESCONTO_VALOR, indice + 1);
 
-        if (!isentoTaxaMinima) {
-            subTotalFrete = subTotalFrete.add(TAXA_MINIMA_FRETE);
+        return indice < 0 ? total : total.multiply(regras.fatorValor(indice));
+    }
+
+    private static void registrar(RastroPrecificacao rastro, RastroPrecificacao.Regra regra, int alvo) {
+        if (rastro != null) {
+            rastro.registrar(regra, alvo, 0);
         }
+    }
 
-        BigDecimal valorPeso = totalPeso.multiply(faixaSelecionada);
+    BigDecimal calcularFrete(ResumoCarrinho resumo, TipoCliente tipoCliente, Regiao regiao) {
+        return detalharFrete(resumo, tipoCliente, regiao, regras.get(), null).total();
+    }
 
-        BigDecimal totalFrete = subTotalFrete.add(valorPeso);
+    private FreteDTO detalharFrete(ResumoCarrinho resumo, TipoCliente tipoCliente, Regiao regiao,
+                                   RegrasPrecificacao regras, RastroPrecificacao rastro) {
 
-        BigDecimal totalFreteFatorRegiao = totalFrete.multiply(FATOR_REGIAO_MAP.get(regiao));
+        BigDecimal taxaItensFrageis = regras.taxaItemFragil().multiply(BigDecimal.valueOf(resumo.getUnidadesFrageis()));
+        BigDecimal totalPeso = resumo.getPesoTributavelTotal();
 
-        BigDecimal totalFreteClienteNivel = totalFreteFatorRegiao;
+        int faixa = regras.indiceFaixa(totalPeso);
+        BigDecimal faixaSelecionada = regras.valorKg(faixa);
+        BigDecimal taxaMinima = regras.taxaMinima(faixa);
 
-        if (tipoCliente == TipoCliente.OURO) {
-            totalFreteClienteNivel = BigDecimal.ZERO;
-        } else if (tipoCliente == TipoCliente.PRATA) {
-            totalFreteClienteNivel = totalFreteFatorRegiao.multiply(DESCONTO_CLIENTE_PRATA);
+        if (rastro != null) {
+            rastro.registrar(RastroPrecificacao.Regra.FAIXA_FRETE, faixa, 0);
+            rastro.registrar(RastroPrecificacao.Regra.TAXA_MINIMA, faixa, 0);
+            rastro.registrar(RastroPrecificacao.Regra.TAXA_FRAGIL, 0, resumo.getUnidadesFrageis());
+            rastro.registrar(RastroPrecificacao.Regra.FATOR_REGIAO, regiao.ordinal(), 0);
+            rastro.registrar(RastroPrecificacao.Regra.BENEFICIO_CLIENTE, tipoCliente.ordinal(), 0);
         }
 
-        return totalFreteClienteNivel;
+        BigDecimal subTotalFrete = taxaItensFrageis.add(taxaMinima);
+
+        BigDecimal valorPeso = totalPeso.multiply(faixaSelecionada);
+
+        BigDecimal totalFrete = subTotalFrete.add(valorPeso);
+
+        BigDecimal fatorFrete = regras.fatorFrete(regiao, tipoCliente);
+        BigDecimal totalFreteClienteNivel = fatorFrete.signum() == 0 ? BigDecimal.ZERO
+                : totalFrete.multiply(fatorFrete);
+
+        return new FreteDTO(totalPeso, regras.nomeFaixa(faixa), faixaSelecionada, taxaMinima, taxaItensFrageis,
+                regras.fatorRegiao(regiao), totalFreteClienteNivel);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import ecommerce.config.CompraProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cotações já calculadas, indexadas por {@link ChaveCotacao}. O tamanho é limitado pela soma
+ * de itens dos carrinhos guardados, o que limita a memória ocupada pelas chaves.
+ */
+@Component
+public class CotacaoCache
+{
+
+	private final Cache<ChaveCotacao, BigDecimal> cache;
+
+	@Autowired
+	public CotacaoCache(CompraProperties properties, MeterRegistry meterRegistry)
+	{
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(properties.getCotacao().getCache().getMaxItens())
+				.weigher((ChaveCotacao chave, BigDecimal total) -> Math.max(1, chave.quantidadeItens()))
+				.expireAfterWrite(properties.getCotacao().getCache().getTtl())
+				.recordStats()
+				.build();
+
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "cotacoes");
+	}
+
+	BigDecimal buscar(ChaveCotacao chave)
+	{
+		return cache.getIfPresent(chave);
+	}
+
+	void guardar(ChaveCotacao chave, BigDecimal custoTotal)
+	{
+		cache.put(chave, custoTotal);
+	}
+
+	public void invalidarTodos()
+	{
+		cache.invalidateAll();
+	}
+}
@@ -0,0 +1,261 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CarrinhoCotacaoDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoLoteDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+@Service
+public class CotacaoLoteService
+{
+
+	private final CompraService compraService;
+	private final CarrinhoDeComprasService carrinhoService;
+	private final ProdutoService produtoService;
+	private final Executor executor;
+	private final CompraProperties properties;
+
+	@Autowired
+	public CotacaoLoteService(CompraService compraService, CarrinhoDeComprasService carrinhoService,
+			ProdutoService produtoService, @Qualifier("cotacaoLoteExecutor") Executor executor, CompraProperties properties)
+	{
+		this.compraService = compraService;
+		this.carrinhoService = carrinhoService;
+		this.produtoService = produtoService;
+		this.executor = executor;
+		this.properties = properties;
+	}
+
+	public void validarLote(CotacaoLoteDTO lote)
+	{
+		int total = lote == null ? 0 : tamanho(lote.carrinhosIds()) + tamanho(lote.carrinhos());
+
+		if (total == 0)
+		{
+			throw new IllegalArgumentException("Lote de cotação não pode ser vazio.");
+		}
+		if (total > properties.getCotacaoLote().getMaxCarrinhos())
+		{
+			throw new IllegalArgumentException(
+					"Lote de cotação excede o limite de " + properties.getCotacaoLote().getMaxCarrinhos() + " carrinhos.");
+		}
+	}
+
+	/**
+	 * Cota todos os carrinhos do lote em paralelo e entrega cada resultado ao consumidor
+	 * assim que fica pronto, na thread chamadora. A ordem de entrega não é a do lote.
+	 * <p>
+	 * No máximo {@code maxEmAndamento} cotações ficam submetidas ao pool sem terem sido entregues:
+	 * a próxima só é submetida quando um resultado sai, de modo que um cliente lento segura o lote
+	 * em vez de acumular resultados na memória.
+	 */
+	public void cotarLote(CotacaoLoteDTO lote, Consumer<CotacaoDTO> consumidor)
+	{
+		validarLote(lote);
+
+		List<Tarefa> tarefas = new ArrayList<>();
+		tarefas.addAll(prepararCarrinhosPersistidos(lote.carrinhosIds()));
+		tarefas.addAll(prepararCarrinhosEnviados(lote.carrinhos()));
+
+		int maxEmAndamento = Math.max(1, Math.min(properties.getCotacaoLote().getMaxEmAndamento(), tarefas.size()));
+		BlockingQueue<CotacaoDTO> resultados = new ArrayBlockingQueue<>(maxEmAndamento);
+		AtomicBoolean cancelado = new AtomicBoolean();
+
+		try
+		{
+			int submetidas = 0;
+			while (submetidas < maxEmAndamento)
+			{
+				submeter(tarefas.get(submetidas++), resultados, cancelado);
+			}
+			for (int entregues = 0; entregues < tarefas.size(); entregues++)
+			{
+				CotacaoDTO cotacao = resultados.take();
+				if (submetidas < tarefas.size())
+				{
+					submeter(tarefas.get(submetidas++), resultados, cancelado);
+				}
+				consumidor.accept(cotacao);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Cotação em lote interrompida.");
+		}
+		finally
+		{
+			cancelado.set(true);
+		}
+	}
+
+	/**
+	 * O resultado entra na fila mesmo que a cotação termine com um {@link Error}; sem ele, o
+	 * lote esperaria para sempre.
+	 */
+	private void submeter(Tarefa tarefa, BlockingQueue<CotacaoDTO> resultados, AtomicBoolean cancelado)
+	{
+		executor.execute(() -> {
+			CotacaoDTO cotacao = null;
+			try
+			{
+				if (!cancelado.get())
+				{
+					cotacao = cotar(tarefa);
+				}
+			}
+			finally
+			{
+				resultados.add(cotacao != null ? cotacao
+						: new CotacaoDTO(false, tarefa.carrinhoId(), tarefa.indice(), null, "Erro ao calcular cotação."));
+			}
+		});
+	}
+
+	private List<Tarefa> prepararCarrinhosPersistidos(List<Long> carrinhosIds)
+	{
+		if (carrinhosIds == null || carrinhosIds.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		Map<Long, CarrinhoDeCompras> carrinhos = carrinhoService.buscarPorIds(carrinhosIds).stream()
+				.collect(Collectors.toMap(CarrinhoDeCompras::getId, Function.identity()));
+
+		List<Tarefa> tarefas = new ArrayList<>(carrinhosIds.size());
+		for (Long carrinhoId : carrinhosIds)
+		{
+			CarrinhoDeCompras carrinho = carrinhos.get(carrinhoId);
+			Cliente cliente = carrinho == null ? null : carrinho.getCliente();
+
+			if (cliente == null)
+			{
+				tarefas.add(Tarefa.falha(carrinhoId, null, "Carrinho não encontrado."));
+			}
+			else
+			{
+				tarefas.add(new Tarefa(carrinhoId, null, carrinho, cliente.getRegiao(), cliente.getTipo(), null));
+			}
+		}
+		return tarefas;
+	}
+
+	private List<Tarefa> prepararCarrinhosEnviados(List<CarrinhoCotacaoDTO> carrinhos)
+	{
+		if (carrinhos == null || carrinhos.isEmpty())
+		{
+			return Collections.emptyList();
+		}
+
+		List<Long> produtosIds = carrinhos.stream()
+				.filter(c -> c != null && c.itens() != null)
+				.flatMap(c -> c.itens().stream())
+				.filter(Objects::nonNull)
+				.map(ItemCarrinhoDTO::produtoId)
+				.filter(Objects::nonNull)
+				.distinct()
+				.collect(Collectors.toList());
+
+		Map<Long, Produto> produtos = produtoService.buscarPorIds(produtosIds).stream()
+				.collect(Collectors.toMap(Produto::getId, Function.identity()));
+
+		List<Tarefa> tarefas = new ArrayList<>(carrinhos.size());
+		for (int indice = 0; indice < carrinhos.size(); indice++)
+		{
+			tarefas.add(prepararCarrinhoEnviado(indice, carrinhos.get(indice), produtos));
+		}
+		return tarefas;
+	}
+
+	private Tarefa prepararCarrinhoEnviado(int indice, CarrinhoCotacaoDTO dto, Map<Long, Produto> produtos)
+	{
+		if (dto == null)
+		{
+			return Tarefa.falha(null, indice, "Carrinho ou lista de itens não pode ser nulo.");
+		}
+
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+		if (dto.itens() == null)
+		{
+			carrinho.setItens(null);
+			return new Tarefa(null, indice, carrinho, dto.regiao(), dto.tipoCliente(), null);
+		}
+
+		List<ItemCompra> itens = new ArrayList<>(dto.itens().size());
+		for (ItemCarrinhoDTO item : dto.itens())
+		{
+			Produto produto = item == null ? null : produtos.get(item.produtoId());
+			if (produto == null)
+			{
+				return Tarefa.falha(null, indice, "Produto não encontrado.");
+			}
+			itens.add(new ItemCompra(null, produto, item.quantidade()));
+		}
+		carrinho.setItens(itens);
+
+		return new Tarefa(null, indice, carrinho, dto.regiao(), dto.tipoCliente(), null);
+	}
+
+	private CotacaoDTO cotar(Tarefa tarefa)
+	{
+		if (tarefa.erro() != null)
+		{
+			return new CotacaoDTO(false, tarefa.carrinhoId(), tarefa.indice(), null, tarefa.erro());
+		}
+
+		try
+		{
+			BigDecimal custoTotal = compraService.calcularCustoTotal(tarefa.carrinho(), tarefa.regiao(),
+					tarefa.tipoCliente());
+			return new CotacaoDTO(true, tarefa.carrinhoId(), tarefa.indice(), custoTotal, null);
+		}
+		catch (IllegalArgumentException | IllegalStateException e)
+		{
+			return new CotacaoDTO(false, tarefa.carrinhoId(), tarefa.indice(), null, e.getMessage());
+		}
+		catch (RuntimeException e)
+		{
+			return new CotacaoDTO(false, tarefa.carrinhoId(), tarefa.indice(), null, "Erro ao calcular cotação.");
+		}
+	}
+
+	private static int tamanho(List<?> lista)
+	{
+		return lista == null ? 0 : lista.size();
+	}
+
+	private record Tarefa(Long carrinhoId, Integer indice, CarrinhoDeCompras carrinho, Regiao regiao,
+			TipoCliente tipoCliente, String erro)
+	{
+
+		static Tarefa falha(Long carrinhoId, Integer indice, String erro)
+		{
+			return new Tarefa(carrinhoId, indice, null, null, null, erro);
+		}
+	}
+}
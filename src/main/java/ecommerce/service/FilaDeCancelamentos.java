@@ -0,0 +1,113 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.entity.CancelamentoPendente;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CancelamentoPendenteRepository;
+import jakarta.transaction.Transactional;
+
+/**
+ * Fila persistente de cancelamentos de pagamento. O checkout só grava o pedido de cancelamento
+ * e segue em frente; {@link #processarPendentes()} envia os pendentes ao gateway em lotes e
+ * reagenda os que falham com espera crescente. Um cancelamento só sai da fila depois que o
+ * gateway o aceita, então pode ser enviado mais de uma vez e o gateway deve tratá-lo como idempotente.
+ */
+@Service
+public class FilaDeCancelamentos
+{
+
+	private static final int TAMANHO_MAXIMO_ERRO = 500;
+
+	private final CancelamentoPendenteRepository repository;
+	private final IPagamentoExternal pagamentoExternal;
+	private final CompraProperties.Cancelamentos configuracao;
+
+	@Autowired
+	public FilaDeCancelamentos(CancelamentoPendenteRepository repository, IPagamentoExternal pagamentoExternal,
+			CompraProperties properties)
+	{
+		this.repository = repository;
+		this.pagamentoExternal = pagamentoExternal;
+		this.configuracao = properties.getPagamento().getCancelamentos();
+	}
+
+	/**
+	 * Grava em transação própria: o cancelamento precisa sobreviver ao rollback do checkout que falhou.
+	 */
+	@Transactional(Transactional.TxType.REQUIRES_NEW)
+	public void enfileirar(Long clienteId, Long transacaoId)
+	{
+		repository.save(new CancelamentoPendente(clienteId, transacaoId, Instant.now()));
+	}
+
+	public int processarPendentes()
+	{
+		return processarPendentes(Instant.now());
+	}
+
+	/**
+	 * Envia os cancelamentos vencidos até {@code agora} e devolve quantos o gateway aceitou.
+	 */
+	int processarPendentes(Instant agora)
+	{
+		int concluidos = 0;
+		List<CancelamentoPendente> lote;
+
+		do
+		{
+			lote = repository.findByProximaTentativaLessThanEqualOrderByIdAsc(agora,
+					PageRequest.of(0, configuracao.getLote()));
+			concluidos += enviar(lote, agora);
+		}
+		while (lote.size() == configuracao.getLote());
+
+		return concluidos;
+	}
+
+	private int enviar(List<CancelamentoPendente> lote, Instant agora)
+	{
+		List<CancelamentoPendente> enviados = new ArrayList<>(lote.size());
+		List<CancelamentoPendente> reagendados = new ArrayList<>();
+
+		for (CancelamentoPendente cancelamento : lote)
+		{
+			try
+			{
+				pagamentoExternal.cancelarPagamento(cancelamento.getClienteId(), cancelamento.getTransacaoId());
+				enviados.add(cancelamento);
+			}
+			catch (RuntimeException e)
+			{
+				cancelamento.setTentativas(cancelamento.getTentativas() + 1);
+				cancelamento.setProximaTentativa(agora.plus(atraso(cancelamento.getTentativas())));
+				cancelamento.setUltimoErro(resumir(e));
+				reagendados.add(cancelamento);
+			}
+		}
+
+		repository.deleteAllInBatch(enviados);
+		repository.saveAll(reagendados);
+		return enviados.size();
+	}
+
+	private Duration atraso(int tentativas)
+	{
+		Duration atraso = configuracao.getAtrasoInicial().multipliedBy(1L << Math.min(tentativas - 1, 30));
+		return atraso.compareTo(configuracao.getAtrasoMaximo()) > 0 ? configuracao.getAtrasoMaximo() : atraso;
+	}
+
+	private static String resumir(RuntimeException e)
+	{
+		String mensagem = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+		return mensagem.length() > TAMANHO_MAXIMO_ERRO ? mensagem.substring(0, TAMANHO_MAXIMO_ERRO) : mensagem;
+	}
+}
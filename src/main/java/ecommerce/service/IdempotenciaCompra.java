@@ -0,0 +1,101 @@
+package ecommerce.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CompraDTO;
+
+/**
+ * Checkouts indexados pela chave de idempotência enviada pelo cliente. A primeira requisição
+ * com uma chave executa a compra; as repetições, simultâneas ou posteriores, aguardam e
+ * recebem o mesmo resultado sem consultar estoque ou pagamento de novo. Um checkout que
+ * falha é esquecido, para que a repetição possa tentar outra vez.
+ */
+@Component
+public class IdempotenciaCompra
+{
+
+	private static final int TAMANHO_MAXIMO_CHAVE = 255;
+
+	private final ConcurrentMap<String, Execucao> execucoes;
+
+	@Autowired
+	public IdempotenciaCompra(CompraProperties properties)
+	{
+		this.execucoes = Caffeine.newBuilder()
+				.maximumSize(properties.getCheckout().getIdempotencia().getMaxChaves())
+				.expireAfterWrite(properties.getCheckout().getIdempotencia().getTtl())
+				.<String, Execucao>build()
+				.asMap();
+	}
+
+	/**
+	 * Executa a compra uma única vez por cliente e chave; sem chave, executa sempre.
+	 */
+	public CompraDTO executar(String chave, Long clienteId, Long carrinhoId, Supplier<CompraDTO> compra)
+	{
+		if (chave == null)
+		{
+			return compra.get();
+		}
+		if (chave.isBlank() || chave.length() > TAMANHO_MAXIMO_CHAVE)
+		{
+			throw new IllegalArgumentException("Chave de idempotência inválida.");
+		}
+
+		// A chave vale por cliente: clientes diferentes podem gerar a mesma chave
+		String id = clienteId + ":" + chave;
+		Execucao execucao = new Execucao(carrinhoId, new CompletableFuture<>());
+		Execucao anterior = execucoes.putIfAbsent(id, execucao);
+
+		if (anterior != null)
+		{
+			if (!anterior.carrinhoId().equals(carrinhoId))
+			{
+				throw new IllegalArgumentException("Chave de idempotência já usada em outro carrinho.");
+			}
+			return aguardar(anterior.resultado());
+		}
+
+		try
+		{
+			CompraDTO resultado = compra.get();
+			execucao.resultado().complete(resultado);
+			return resultado;
+		}
+		catch (RuntimeException e)
+		{
+			execucoes.remove(id, execucao);
+			execucao.resultado().completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private static CompraDTO aguardar(CompletableFuture<CompraDTO> resultado)
+	{
+		try
+		{
+			return resultado.join();
+		}
+		catch (CompletionException e)
+		{
+			if (e.getCause() instanceof RuntimeException causa)
+			{
+				throw causa;
+			}
+			throw e;
+		}
+	}
+
+	private record Execucao(Long carrinhoId, CompletableFuture<CompraDTO> resultado)
+	{
+	}
+}
@@ -0,0 +1,146 @@
+package ecommerce.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CarrinhoImportacaoDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+/**
+ * Cria carrinhos em massa. Carrinhos e itens têm ids de sequência em blocos, então os inserts saem
+ * em lotes JDBC ({@code hibernate.jdbc.batch_size}); a cada {@code compra.importacao.itens-por-descarga}
+ * itens a sessão é descarregada e limpa, e a memória não cresce com o tamanho da importação.
+ * A importação é atômica: qualquer carrinho inválido cancela todos.
+ */
+@Service
+public class ImportacaoCarrinhosService
+{
+
+	private final CarrinhoDeComprasRepository carrinhoRepository;
+	private final ClienteService clienteService;
+	private final ProdutoService produtoService;
+	private final EntityManager entityManager;
+	private final CompraProperties properties;
+
+	@Autowired
+	public ImportacaoCarrinhosService(CarrinhoDeComprasRepository carrinhoRepository, ClienteService clienteService,
+			ProdutoService produtoService, EntityManager entityManager, CompraProperties properties)
+	{
+		this.carrinhoRepository = carrinhoRepository;
+		this.clienteService = clienteService;
+		this.produtoService = produtoService;
+		this.entityManager = entityManager;
+		this.properties = properties;
+	}
+
+	/**
+	 * @return ids dos carrinhos criados, na ordem recebida
+	 * @throws IllegalArgumentException se a importação for vazia, exceder o limite de itens ou tiver
+	 *         cliente, produto ou quantidade inválidos
+	 */
+	@Transactional
+	public List<Long> importar(List<CarrinhoImportacaoDTO> carrinhos)
+	{
+		validar(carrinhos);
+
+		Map<Long, Cliente> clientes = new HashMap<>();
+		for (CarrinhoImportacaoDTO carrinho : carrinhos)
+		{
+			clientes.computeIfAbsent(carrinho.clienteId(), clienteService::buscarPorId);
+		}
+		Map<Long, Produto> produtos = buscarProdutos(carrinhos);
+
+		List<Long> carrinhosIds = new ArrayList<>(carrinhos.size());
+		int itensPendentes = 0;
+
+		for (CarrinhoImportacaoDTO dto : carrinhos)
+		{
+			List<ItemCompra> itens = new ArrayList<>(dto.itens().size());
+			for (ItemCarrinhoDTO item : dto.itens())
+			{
+				itens.add(new ItemCompra(null, produtos.get(item.produtoId()), item.quantidade()));
+			}
+
+			CarrinhoDeCompras carrinho = new CarrinhoDeCompras(null, clientes.get(dto.clienteId()), itens,
+					LocalDate.now());
+			carrinho.recalcularAgregados();
+			carrinhosIds.add(carrinhoRepository.save(carrinho).getId());
+
+			itensPendentes += itens.size();
+			if (itensPendentes >= properties.getImportacao().getItensPorDescarga())
+			{
+				entityManager.flush();
+				entityManager.clear();
+				itensPendentes = 0;
+			}
+		}
+		return carrinhosIds;
+	}
+
+	private void validar(List<CarrinhoImportacaoDTO> carrinhos)
+	{
+		if (carrinhos == null || carrinhos.isEmpty())
+		{
+			throw new IllegalArgumentException("Importação de carrinhos não pode ser vazia.");
+		}
+
+		long totalItens = 0;
+		for (CarrinhoImportacaoDTO carrinho : carrinhos)
+		{
+			if (carrinho == null || carrinho.itens() == null || carrinho.itens().stream().anyMatch(Objects::isNull))
+			{
+				throw new IllegalArgumentException("Carrinho ou lista de itens não pode ser nulo.");
+			}
+			if (carrinho.clienteId() == null)
+			{
+				throw new IllegalArgumentException("Cliente não encontrado");
+			}
+			totalItens += carrinho.itens().size();
+		}
+
+		if (totalItens > properties.getImportacao().getMaxItens())
+		{
+			throw new IllegalArgumentException(
+					"Importação excede o limite de " + properties.getImportacao().getMaxItens() + " itens.");
+		}
+	}
+
+	private Map<Long, Produto> buscarProdutos(List<CarrinhoImportacaoDTO> carrinhos)
+	{
+		List<Long> produtosIds = carrinhos.stream()
+				.flatMap(c -> c.itens().stream())
+				.map(ItemCarrinhoDTO::produtoId)
+				.filter(Objects::nonNull)
+				.distinct()
+				.collect(Collectors.toList());
+
+		Map<Long, Produto> produtos = produtoService.buscarPorIds(produtosIds).stream()
+				.collect(Collectors.toMap(Produto::getId, Function.identity()));
+
+		boolean algumAusente = carrinhos.stream()
+				.flatMap(c -> c.itens().stream())
+				.anyMatch(item -> !produtos.containsKey(item.produtoId()));
+		if (algumAusente)
+		{
+			throw new IllegalArgumentException("Produto não encontrado.");
+		}
+		return produtos;
+	}
+}
@@ -0,0 +1,148 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.CarrinhoAlteradoDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ItemCompraRepository;
+import jakarta.transaction.Transactional;
+
+/**
+ * Inclusão, alteração de quantidade e remoção de itens de um carrinho persistido.
+ * <p>
+ * Cada alteração grava apenas a linha do item e a do carrinho (agregados e versão), sem carregar os
+ * demais itens: o custo não depende do tamanho do carrinho. Com {@code versao}, a alteração só
+ * acontece se o carrinho não mudou desde a leitura; a versão também é conferida pelo Hibernate ao
+ * gravar, então alterações concorrentes do mesmo carrinho falham em vez de se sobrescreverem.
+ */
+@Service
+public class ItensCarrinhoService
+{
+
+	private static final String CARRINHO_ALTERADO = "Carrinho alterado por outra requisição.";
+
+	private final CarrinhoDeComprasRepository carrinhoRepository;
+	private final ItemCompraRepository itemRepository;
+	private final ClienteService clienteService;
+	private final ProdutoService produtoService;
+	private final CompraService compraService;
+
+	@Autowired
+	public ItensCarrinhoService(CarrinhoDeComprasRepository carrinhoRepository, ItemCompraRepository itemRepository,
+			ClienteService clienteService, ProdutoService produtoService, CompraService compraService)
+	{
+		this.carrinhoRepository = carrinhoRepository;
+		this.itemRepository = itemRepository;
+		this.clienteService = clienteService;
+		this.produtoService = produtoService;
+		this.compraService = compraService;
+	}
+
+	/**
+	 * @throws IllegalArgumentException se carrinho ou produto não existirem ou a quantidade for inválida
+	 * @throws IllegalStateException se o carrinho não estiver mais na versão informada
+	 */
+	@Transactional
+	public CarrinhoAlteradoDTO adicionarItem(Long carrinhoId, Long clienteId, Long versao, ItemCarrinhoDTO dto)
+	{
+		if (dto == null || dto.produtoId() == null)
+		{
+			throw new IllegalArgumentException("Produto não encontrado.");
+		}
+
+		Cliente cliente = clienteService.buscarPorId(clienteId);
+		CarrinhoDeCompras carrinho = buscarNaVersao(carrinhoId, cliente, versao);
+		Produto produto = produtoService.buscarPorId(dto.produtoId());
+
+		ItemCompra item = new ItemCompra(null, produto, dto.quantidade());
+		carrinho.adicionarItem(item);
+		itemRepository.save(item);
+
+		return concluir(carrinho, cliente, item.getId());
+	}
+
+	/**
+	 * @throws IllegalArgumentException se carrinho ou item não existirem ou a quantidade for inválida
+	 * @throws IllegalStateException se o carrinho não estiver mais na versão informada
+	 */
+	@Transactional
+	public CarrinhoAlteradoDTO alterarQuantidade(Long carrinhoId, Long clienteId, Long versao, Long itemId,
+			Long quantidade)
+	{
+		Cliente cliente = clienteService.buscarPorId(clienteId);
+		CarrinhoDeCompras carrinho = buscarNaVersao(carrinhoId, cliente, versao);
+		ItemCompra item = buscarItem(carrinho, itemId);
+
+		carrinho.alterarQuantidade(item, quantidade);
+
+		return concluir(carrinho, cliente, item.getId());
+	}
+
+	/**
+	 * @throws IllegalArgumentException se carrinho ou item não existirem
+	 * @throws IllegalStateException se o carrinho não estiver mais na versão informada
+	 */
+	@Transactional
+	public CarrinhoAlteradoDTO removerItem(Long carrinhoId, Long clienteId, Long versao, Long itemId)
+	{
+		Cliente cliente = clienteService.buscarPorId(clienteId);
+		CarrinhoDeCompras carrinho = buscarNaVersao(carrinhoId, cliente, versao);
+		ItemCompra item = buscarItem(carrinho, itemId);
+
+		// Remover pela lista carregaria todos os itens do carrinho só para excluir uma linha
+		carrinho.descontarItemExcluido(item);
+		itemRepository.delete(item);
+
+		return concluir(carrinho, cliente, null);
+	}
+
+	private CarrinhoDeCompras buscarNaVersao(Long carrinhoId, Cliente cliente, Long versao)
+	{
+		CarrinhoDeCompras carrinho = carrinhoRepository.findByIdAndCliente(carrinhoId, cliente)
+				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
+
+		if (versao != null && !Objects.equals(versao, carrinho.getVersao()))
+		{
+			throw new IllegalStateException(CARRINHO_ALTERADO);
+		}
+		return carrinho;
+	}
+
+	private ItemCompra buscarItem(CarrinhoDeCompras carrinho, Long itemId)
+	{
+		if (itemId == null)
+		{
+			throw new IllegalArgumentException("Item não encontrado no carrinho.");
+		}
+		return itemRepository.findByIdAndCarrinho(itemId, carrinho)
+				.orElseThrow(() -> new IllegalArgumentException("Item não encontrado no carrinho."));
+	}
+
+	/**
+	 * Grava as alterações conferindo a versão do carrinho e cota o carrinho pelos agregados.
+	 */
+	private CarrinhoAlteradoDTO concluir(CarrinhoDeCompras carrinho, Cliente cliente, Long itemId)
+	{
+		try
+		{
+			carrinhoRepository.flush();
+		}
+		catch (OptimisticLockingFailureException e)
+		{
+			throw new IllegalStateException(CARRINHO_ALTERADO);
+		}
+
+		BigDecimal custoTotal = compraService.calcularCustoTotal(carrinho, cliente.getRegiao(), cliente.getTipo());
+		return new CarrinhoAlteradoDTO(true, carrinho.getId(), carrinho.getVersao(), itemId, custoTotal, null);
+	}
+}
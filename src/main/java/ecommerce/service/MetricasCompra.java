@@ -0,0 +1,94 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Métricas do checkout: tempo de cada etapa de finalizarCompra, tamanho e valor dos carrinhos
+ * cotados e falhas devolvidas pelo controller. Timers e distribuições publicam histograma de
+ * percentis, agregável entre instâncias.
+ */
+@Component
+public class MetricasCompra
+{
+
+	public static final String ETAPA_CLIENTE = "cliente";
+	public static final String ETAPA_CARRINHO = "carrinho";
+	public static final String ETAPA_ESTOQUE = "estoque";
+	public static final String ETAPA_PRECIFICACAO = "precificacao";
+	public static final String ETAPA_PAGAMENTO = "pagamento";
+	public static final String ETAPA_BAIXA = "baixa";
+
+	private final MeterRegistry registry;
+	private final DistributionSummary itensPorCarrinho;
+	private final DistributionSummary totalPorCarrinho;
+
+	@Autowired
+	public MetricasCompra(MeterRegistry registry)
+	{
+		this.registry = registry;
+		this.itensPorCarrinho = DistributionSummary.builder("compra.carrinho.itens")
+				.description("Itens por carrinho cotado")
+				.baseUnit("itens")
+				.publishPercentileHistogram()
+				.register(registry);
+		this.totalPorCarrinho = DistributionSummary.builder("compra.carrinho.total")
+				.description("Custo total dos carrinhos cotados")
+				.baseUnit("reais")
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	/**
+	 * Executa a etapa do checkout registrando a duração, inclusive quando ela falha.
+	 */
+	public <T> T medirEtapa(String etapa, Supplier<T> execucao)
+	{
+		return Timer.builder("compra.checkout.etapa")
+				.description("Duração das etapas de finalizarCompra")
+				.tag("etapa", etapa)
+				.publishPercentileHistogram()
+				.register(registry)
+				.record(execucao);
+	}
+
+	public void registrarCotacao(int itens, BigDecimal custoTotal)
+	{
+		itensPorCarrinho.record(itens);
+		totalPorCarrinho.record(custoTotal.doubleValue());
+	}
+
+	/**
+	 * Conta uma falha devolvida ao cliente, identificada pela classe da exceção. A mensagem não vira
+	 * tag: algumas trazem ids ou limites, e cada texto distinto seria uma nova série.
+	 */
+	public void registrarFalha(String operacao, int status, Exception e)
+	{
+		Counter.builder("compra.falhas")
+				.description("Falhas devolvidas pelo CompraController")
+				.tag("operacao", operacao)
+				.tag("status", String.valueOf(status))
+				.tag("excecao", e.getClass().getSimpleName())
+				.register(registry)
+				.increment();
+	}
+
+	/**
+	 * Conta um carrinho cujos agregados incrementais não batiam com o recálculo a partir dos itens.
+	 */
+	public void registrarDivergenciaAgregados()
+	{
+		Counter.builder("compra.carrinho.agregados.divergentes")
+				.description("Carrinhos com agregados divergentes dos itens")
+				.register(registry)
+				.increment();
+	}
+}
@@ -0,0 +1,238 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import ecommerce.dto.DescontoQuantidadeDTO;
+import ecommerce.dto.DescontoValorDTO;
+import ecommerce.dto.FaixaPesoDTO;
+import ecommerce.dto.RegrasPrecificacaoDTO;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Motor de precificação em ponto fixo: aplica as mesmas {@link RegrasPrecificacao} do cálculo
+ * com BigDecimal sobre valores {@code long} escalados (centavos, décimos de milésimo de kg).
+ * Preço e peso de cada produto já vêm escalados de {@link Produto}, calculados uma vez por
+ * produto; por cotação restam só os acumuladores por categoria e o {@link BigDecimal} do resultado.
+ * <p>
+ * Todas as operações são exatas, assim como no cálculo com {@link BigDecimal}; o único
+ * arredondamento é o HALF_UP final para centavos, de modo que o resultado é idêntico.
+ * Quando algum valor não cabe na escala (ex.: preço com três casas decimais) ou há
+ * estouro de {@code long}, retorna {@code null} e o chamador usa o cálculo com BigDecimal.
+ */
+final class PrecificacaoPontoFixo {
+
+    /** Escala dos valores monetários, fatores percentuais e tarifas (centésimos). */
+    private static final int ESCALA_MOEDA = 2;
+
+    /** Escala do peso tributável (mesma de {@link Produto#calcularPesoTributavelDecigramas()}). */
+    private static final int ESCALA_PESO = 4;
+
+    /** Escala do total antes do arredondamento final: itens (6) e frete (10) somados em 10. */
+    private static final int ESCALA_TOTAL = 10;
+
+    /** Escala do fator de frete, produto dos fatores da região e do cliente. */
+    private static final int ESCALA_FATOR_FRETE = ESCALA_MOEDA * 2;
+
+    private static final long DIVISOR_ARREDONDAMENTO = 100_000_000L;
+
+    private static final int QUANTIDADE_TIPOS = TipoProduto.values().length;
+
+    private static final long FATOR_SEM_DESCONTO = escalar(BigDecimal.ONE, ESCALA_MOEDA);
+
+    private final int[] quantidadesMinimas;
+    /** Fator de cada desconto por categoria em {@code [i + 1]}; {@code [0]} sem desconto. */
+    private final long[] fatoresCategoria;
+
+    private final long[] valoresMinimos;
+    /** Fator de cada desconto por valor em {@code [i + 1]}; {@code [0]} sem desconto. */
+    private final long[] fatoresValor;
+
+    private final long[] pesosMaximos;
+    private final long[] valoresKg;
+    private final long[] taxasMinimas;
+    private final long taxaItemFragil;
+
+    /** Fator da região vezes o do cliente, na escala {@link #ESCALA_FATOR_FRETE}. */
+    private final long[][] fatoresFrete = new long[Regiao.values().length][TipoCliente.values().length];
+
+    private PrecificacaoPontoFixo(RegrasPrecificacaoDTO regras) {
+        List<DescontoQuantidadeDTO> categoria = regras.descontosCategoria();
+        quantidadesMinimas = new int[categoria.size()];
+        fatoresCategoria = new long[categoria.size() + 1];
+        fatoresCategoria[0] = FATOR_SEM_DESCONTO;
+        for (int i = 0; i < categoria.size(); i++) {
+            quantidadesMinimas[i] = categoria.get(i).quantidadeMinima();
+            fatoresCategoria[i + 1] = escalar(BigDecimal.ONE.subtract(categoria.get(i).percentual()), ESCALA_MOEDA);
+        }
+
+        List<DescontoValorDTO> valor = regras.descontosValor();
+        valoresMinimos = new long[valor.size()];
+        fatoresValor = new long[valor.size() + 1];
+        fatoresValor[0] = FATOR_SEM_DESCONTO;
+        for (int i = 0; i < valor.size(); i++) {
+            valoresMinimos[i] = escalar(valor.get(i).valorMinimo(), ESCALA_MOEDA * 2);
+            fatoresValor[i + 1] = escalar(BigDecimal.ONE.subtract(valor.get(i).percentual()), ESCALA_MOEDA);
+        }
+
+        List<FaixaPesoDTO> faixas = regras.faixasPeso();
+        pesosMaximos = new long[faixas.size() - 1];
+        valoresKg = new long[faixas.size()];
+        taxasMinimas = new long[faixas.size()];
+        for (int i = 0; i < faixas.size(); i++) {
+            if (i < pesosMaximos.length) {
+                pesosMaximos[i] = escalar(faixas.get(i).pesoMaximo(), ESCALA_PESO);
+            }
+            valoresKg[i] = escalar(faixas.get(i).valorKg(), ESCALA_MOEDA);
+            taxasMinimas[i] = escalar(faixas.get(i).taxaMinima(), ESCALA_MOEDA);
+        }
+        taxaItemFragil = escalar(regras.taxaItemFragil(), ESCALA_MOEDA);
+
+        for (Regiao regiao : Regiao.values()) {
+            for (TipoCliente tipo : TipoCliente.values()) {
+                BigDecimal fator = regras.fatoresRegiao().get(regiao).multiply(regras.fatoresCliente().get(tipo));
+                fatoresFrete[regiao.ordinal()][tipo.ordinal()] = escalar(fator, ESCALA_FATOR_FRETE);
+            }
+        }
+    }
+
+    /**
+     * Converte regras já validadas e ordenadas por {@link RegrasPrecificacao#compilar}.
+     *
+     * @return o motor, ou {@code null} se algum valor das regras tiver mais casas decimais que
+     *         a escala correspondente, caso em que as cotações usam BigDecimal
+     */
+    static PrecificacaoPontoFixo compilar(RegrasPrecificacaoDTO regras) {
+        try {
+            return new PrecificacaoPontoFixo(regras);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Calcula o custo total com as regras de {@link CompraService#calcularCustoTotal}.
+     *
+     * @return o total com duas casas decimais, ou {@code null} se algum valor não for
+     *         representável em ponto fixo
+     */
+    BigDecimal calcularCustoTotal(List<ItemCompra> itens, Regiao regiao, TipoCliente tipoCliente) {
+        try {
+            return BigDecimal.valueOf(calcularCentavos(itens, regiao, tipoCliente), ESCALA_MOEDA);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private long calcularCentavos(List<ItemCompra> itens, Regiao regiao, TipoCliente tipoCliente) {
+        long[] quantidadePorTipo = new long[QUANTIDADE_TIPOS];
+        long[] subTotalPorTipo = new long[QUANTIDADE_TIPOS];
+        long pesoTotal = 0;
+        long unidadesFrageis = 0;
+        long fatorFrete = fatoresFrete[regiao.ordinal()][tipoCliente.ordinal()];
+
+        for (ItemCompra item : itens) {
+            Produto produto = item.getProduto();
+            int tipo = produto.getTipo().ordinal();
+
+            if (item.getQuantidade() == null || item.getQuantidade() <= 0) {
+                throw new IllegalArgumentException("Quantidade do item não pode ser zero ou negativa.");
+            }
+            if (produto.getPreco() == null || produto.getPreco().signum() < 0) {
+                throw new IllegalArgumentException("Preço do item não pode ser negativo.");
+            }
+
+            long quantidade = item.getQuantidade();
+            quantidadePorTipo[tipo] = Math.addExact(quantidadePorTipo[tipo], quantidade);
+            subTotalPorTipo[tipo] = Math.addExact(subTotalPorTipo[tipo],
+                    Math.multiplyExact(produto.getPrecoCentavos(), quantidade));
+
+            // Com frete isento, peso e itens frágeis não influem no total
+            if (fatorFrete == 0) {
+                continue;
+            }
+
+            pesoTotal = Math.addExact(pesoTotal,
+                    Math.multiplyExact(produto.calcularPesoTributavelDecigramas(), quantidade));
+
+            if (produto.isFragil()) {
+                unidadesFrageis = Math.addExact(unidadesFrageis, quantidade);
+            }
+        }
+
+        // Escala 4: centavos x fator percentual
+        long subTotalItens = 0;
+        for (int tipo = 0; tipo < QUANTIDADE_TIPOS; tipo++) {
+            subTotalItens = Math.addExact(subTotalItens,
+                    Math.multiplyExact(subTotalPorTipo[tipo], fatorTipo(quantidadePorTipo[tipo])));
+        }
+
+        // Escala 6
+        long totalItens = Math.multiplyExact(subTotalItens, fatoresValor[quantidadeMenores(valoresMinimos, subTotalItens)]);
+
+        long frete = fatorFrete == 0 ? 0 : calcularFrete(pesoTotal, unidadesFrageis, fatorFrete);
+        long total = Math.addExact(Math.multiplyExact(totalItens, 10_000L), frete);
+
+        return arredondarMeioParaCima(total, DIVISOR_ARREDONDAMENTO);
+    }
+
+    /**
+     * Frete na escala {@link #ESCALA_TOTAL}.
+     */
+    private long calcularFrete(long pesoTotal, long unidadesFrageis, long fatorFrete) {
+        int faixa = quantidadeMenores(pesosMaximos, pesoTotal);
+
+        // Escala 2
+        long subTotalFrete = Math.addExact(Math.multiplyExact(taxaItemFragil, unidadesFrageis), taxasMinimas[faixa]);
+
+        // Escala 6: peso (4) x valor por kg (2)
+        long totalFrete = Math.addExact(Math.multiplyExact(subTotalFrete, 10_000L),
+                Math.multiplyExact(pesoTotal, valoresKg[faixa]));
+        // Escala 10: frete (6) x fator de região e cliente (4)
+        return Math.multiplyExact(totalFrete, fatorFrete);
+    }
+
+    private long fatorTipo(long totalQuantidade) {
+        return fatoresCategoria[RegrasPrecificacao.maiorAte(quantidadesMinimas, totalQuantidade) + 1];
+    }
+
+    /**
+     * Quantidade de limiares menores que o valor: o índice da faixa em que o valor cai.
+     */
+    private static int quantidadeMenores(long[] limiares, long valor) {
+        int baixo = 0;
+        int alto = limiares.length - 1;
+
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (limiares[meio] < valor) {
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return baixo;
+    }
+
+    private static long arredondarMeioParaCima(long valor, long divisor) {
+        long quociente = valor / divisor;
+        long resto = Math.abs(valor % divisor);
+
+        if (resto >= divisor - resto) {
+            quociente += Long.signum(valor);
+        }
+        return quociente;
+    }
+
+    /**
+     * Converte para inteiro na escala informada; lança {@link ArithmeticException}
+     * se o valor tiver mais casas decimais ou não couber em {@code long}.
+     */
+    static long escalar(BigDecimal valor, int escala) {
+        return valor.movePointRight(escala).longValueExact();
+    }
+}
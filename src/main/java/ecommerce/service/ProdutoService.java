@@ -0,0 +1,105 @@
+package ecommerce.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.entity.Produto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ProdutoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.transaction.Transactional;
+
+/**
+ * Acesso ao catálogo com cache de leitura limitado por tamanho (W-TinyLFU) e por tempo de vida.
+ * Alterações de produto devem passar por {@link #salvar(Produto)}, que também invalida os agregados
+ * dos carrinhos que contêm o produto, ou chamar {@link #invalidar(Long)}.
+ */
+@Service
+public class ProdutoService
+{
+
+	private final ProdutoRepository repository;
+	private final CarrinhoDeComprasRepository carrinhoRepository;
+	private final Cache<Long, Produto> cache;
+
+	@Autowired
+	public ProdutoService(ProdutoRepository repository, CarrinhoDeComprasRepository carrinhoRepository,
+			CompraProperties properties, MeterRegistry meterRegistry)
+	{
+		this.repository = repository;
+		this.carrinhoRepository = carrinhoRepository;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(properties.getCatalogo().getMaxEntradas())
+				.expireAfterWrite(properties.getCatalogo().getTtl())
+				.recordStats()
+				.build();
+
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "produtos");
+	}
+
+	public Produto buscarPorId(Long produtoId)
+	{
+		Produto produto = cache.get(produtoId, id -> repository.findById(id).orElse(null));
+		if (produto == null)
+		{
+			throw new IllegalArgumentException("Produto não encontrado.");
+		}
+		return produto;
+	}
+
+	/**
+	 * Busca os produtos no cache e carrega os ausentes em uma única consulta.
+	 * Ids inexistentes são ignorados.
+	 */
+	public List<Produto> buscarPorIds(Collection<Long> produtosIds)
+	{
+		Map<Long, Produto> produtos = cache.getAll(produtosIds, this::carregar);
+		return List.copyOf(produtos.values());
+	}
+
+	@Transactional
+	public Produto salvar(Produto produto)
+	{
+		Produto salvo = repository.save(produto);
+		if (produto.getId() != null)
+		{
+			carrinhoRepository.invalidarAgregadosComProduto(salvo.getId());
+		}
+		cache.invalidate(salvo.getId());
+		return salvo;
+	}
+
+	public void invalidar(Long produtoId)
+	{
+		cache.invalidate(produtoId);
+	}
+
+	public void invalidarTodos()
+	{
+		cache.invalidateAll();
+	}
+
+	public CacheStats estatisticas()
+	{
+		return cache.stats();
+	}
+
+	private Map<Long, Produto> carregar(Set<? extends Long> produtosIds)
+	{
+		return repository.findAllById(List.copyOf(produtosIds)).stream()
+				.collect(Collectors.toMap(Produto::getId, Function.identity()));
+	}
+}
@@ -0,0 +1,110 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import ecommerce.dto.RegraAplicadaDTO;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+
+/**
+ * Buffer circular, um por thread, das regras de precificação aplicadas. Cada registro grava só
+ * inteiros em arrays pré-alocados, sem criar objetos; a tradução para {@link RegraAplicadaDTO}
+ * acontece apenas quando a explicação é pedida. Quando mais de {@link #CAPACIDADE} regras são
+ * registradas desde a marca, as mais antigas são sobrescritas.
+ */
+final class RastroPrecificacao {
+
+    static final int CAPACIDADE = 256;
+
+    private static final ThreadLocal<RastroPrecificacao> POR_THREAD = ThreadLocal.withInitial(RastroPrecificacao::new);
+
+    enum Regra {
+        /** alvo: ordinal do {@link TipoProduto}; valor: quantidade da categoria. */
+        DESCONTO_CATEGORIA,
+        /** alvo: 0 sem desconto, ou o índice do desconto por valor aplicado mais 1. */
+        DESCONTO_VALOR,
+        /** alvo: índice da faixa de peso, a partir de 0 (A). */
+        FAIXA_FRETE,
+        /** alvo: índice da faixa de peso, que define a taxa mínima. */
+        TAXA_MINIMA,
+        /** valor: unidades frágeis. */
+        TAXA_FRAGIL,
+        /** alvo: ordinal da {@link Regiao}. */
+        FATOR_REGIAO,
+        /** alvo: ordinal do {@link TipoCliente}; o valor traduzido é o fator do frete. */
+        BENEFICIO_CLIENTE
+    }
+
+    private static final Regra[] REGRAS = Regra.values();
+
+    private final byte[] regras = new byte[CAPACIDADE];
+    private final int[] alvos = new int[CAPACIDADE];
+    private final long[] valores = new long[CAPACIDADE];
+    private long posicao;
+
+    private RastroPrecificacao() {
+    }
+
+    static RastroPrecificacao daThread() {
+        return POR_THREAD.get();
+    }
+
+    long marcar() {
+        return posicao;
+    }
+
+    void registrar(Regra regra, int alvo, long valor) {
+        int indice = (int) (posicao & (CAPACIDADE - 1));
+        regras[indice] = (byte) regra.ordinal();
+        alvos[indice] = alvo;
+        valores[indice] = valor;
+        posicao++;
+    }
+
+    /**
+     * Regras registradas desde a marca, na ordem em que foram aplicadas, com os valores das
+     * regras de precificação usadas no cálculo.
+     */
+    List<RegraAplicadaDTO> desde(long marca, RegrasPrecificacao regrasPrecificacao) {
+        long inicio = Math.max(marca, posicao - CAPACIDADE);
+        List<RegraAplicadaDTO> aplicadas = new ArrayList<>((int) (posicao - inicio));
+
+        for (long i = inicio; i < posicao; i++) {
+            int indice = (int) (i & (CAPACIDADE - 1));
+            aplicadas.add(traduzir(REGRAS[regras[indice]], alvos[indice], valores[indice], regrasPrecificacao));
+        }
+        return aplicadas;
+    }
+
+    private static RegraAplicadaDTO traduzir(Regra regra, int alvo, long valor, RegrasPrecificacao regras) {
+        return switch (regra) {
+            case DESCONTO_CATEGORIA -> new RegraAplicadaDTO(regra.name(), TipoProduto.values()[alvo].name(),
+                    valor + " unidades", regras.descontoCategoria(valor));
+            case DESCONTO_VALOR -> alvo == 0
+                    ? new RegraAplicadaDTO(regra.name(), null, "sem desconto", BigDecimal.ZERO)
+                    : new RegraAplicadaDTO(regra.name(), null,
+                            "acima de " + regras.descontoValor(alvo - 1).valorMinimo(),
+                            regras.descontoValor(alvo - 1).percentual());
+            case FAIXA_FRETE -> new RegraAplicadaDTO(regra.name(), regras.nomeFaixa(alvo), "valor por kg",
+                    regras.valorKg(alvo));
+            case TAXA_MINIMA -> regras.taxaMinima(alvo).signum() > 0
+                    ? new RegraAplicadaDTO(regra.name(), null, "cobrada", regras.taxaMinima(alvo))
+                    : new RegraAplicadaDTO(regra.name(), null, "isenta na faixa " + regras.nomeFaixa(alvo),
+                            BigDecimal.ZERO);
+            case TAXA_FRAGIL -> new RegraAplicadaDTO(regra.name(), null, valor + " unidades frágeis",
+                    regras.taxaItemFragil().multiply(BigDecimal.valueOf(valor)));
+            case FATOR_REGIAO -> new RegraAplicadaDTO(regra.name(), Regiao.values()[alvo].name(), "fator do frete",
+                    regras.fatorRegiao(Regiao.values()[alvo]));
+            case BENEFICIO_CLIENTE -> {
+                TipoCliente tipo = TipoCliente.values()[alvo];
+                BigDecimal fator = regras.fatorCliente(tipo);
+                String decisao = fator.signum() == 0 ? "frete grátis"
+                        : fator.compareTo(BigDecimal.ONE) == 0 ? "sem benefício" : "desconto no frete";
+                yield new RegraAplicadaDTO(regra.name(), tipo.name(), decisao, fator);
+            }
+        };
+    }
+}
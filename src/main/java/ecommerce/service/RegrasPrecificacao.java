@@ -0,0 +1,313 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import ecommerce.dto.DescontoQuantidadeDTO;
+import ecommerce.dto.DescontoValorDTO;
+import ecommerce.dto.FaixaPesoDTO;
+import ecommerce.dto.RegrasPrecificacaoDTO;
+import ecommerce.entity.Regiao;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Regras de precificação compiladas a partir de uma {@link RegrasPrecificacaoDTO}: limiares em
+ * arrays ordenados, consultados por busca binária, e fatores indexados pelo ordinal da região e
+ * do tipo de cliente. Imutável; cada cotação lê a instância vigente uma única vez, de modo que
+ * a troca de regras não afeta cotações em andamento.
+ */
+final class RegrasPrecificacao {
+
+    private static final int MAX_FAIXAS_PESO = 26;
+
+    private final long versao;
+    private final RegrasPrecificacaoDTO definicao;
+
+    private final int[] quantidadesMinimas;
+    private final BigDecimal[] descontosCategoria;
+    private final BigDecimal[] fatoresCategoria;
+
+    private final BigDecimal[] valoresMinimos;
+    private final BigDecimal[] fatoresValor;
+
+    /** Limite superior de cada faixa, exceto a última, que não tem limite. */
+    private final BigDecimal[] pesosMaximos;
+    private final String[] nomesFaixas;
+    private final BigDecimal[] valoresKg;
+    private final BigDecimal[] taxasMinimas;
+
+    private final BigDecimal taxaItemFragil;
+    private final BigDecimal[] fatoresRegiao;
+    private final BigDecimal[] fatoresCliente;
+    /** Fator da região vezes o do cliente, por {@code [regiao][tipoCliente]}. */
+    private final BigDecimal[][] fatoresFrete;
+
+    /** Mesmas regras em ponto fixo, ou {@code null} se algum valor não for representável. */
+    private final PrecificacaoPontoFixo pontoFixo;
+
+    private RegrasPrecificacao(long versao, RegrasPrecificacaoDTO definicao) {
+        this.versao = versao;
+        this.definicao = definicao;
+
+        List<DescontoQuantidadeDTO> categoria = definicao.descontosCategoria();
+        quantidadesMinimas = new int[categoria.size()];
+        descontosCategoria = new BigDecimal[categoria.size()];
+        fatoresCategoria = new BigDecimal[categoria.size()];
+        for (int i = 0; i < categoria.size(); i++) {
+            quantidadesMinimas[i] = categoria.get(i).quantidadeMinima();
+            descontosCategoria[i] = categoria.get(i).percentual();
+            fatoresCategoria[i] = BigDecimal.ONE.subtract(categoria.get(i).percentual());
+        }
+
+        List<DescontoValorDTO> valor = definicao.descontosValor();
+        valoresMinimos = new BigDecimal[valor.size()];
+        fatoresValor = new BigDecimal[valor.size()];
+        for (int i = 0; i < valor.size(); i++) {
+            valoresMinimos[i] = valor.get(i).valorMinimo();
+            fatoresValor[i] = BigDecimal.ONE.subtract(valor.get(i).percentual());
+        }
+
+        List<FaixaPesoDTO> faixas = definicao.faixasPeso();
+        pesosMaximos = new BigDecimal[faixas.size() - 1];
+        nomesFaixas = new String[faixas.size()];
+        valoresKg = new BigDecimal[faixas.size()];
+        taxasMinimas = new BigDecimal[faixas.size()];
+        for (int i = 0; i < faixas.size(); i++) {
+            if (i < pesosMaximos.length) {
+                pesosMaximos[i] = faixas.get(i).pesoMaximo();
+            }
+            nomesFaixas[i] = String.valueOf((char) ('A' + i));
+            valoresKg[i] = faixas.get(i).valorKg();
+            taxasMinimas[i] = faixas.get(i).taxaMinima();
+        }
+
+        taxaItemFragil = definicao.taxaItemFragil();
+
+        fatoresRegiao = new BigDecimal[Regiao.values().length];
+        for (Regiao regiao : Regiao.values()) {
+            fatoresRegiao[regiao.ordinal()] = definicao.fatoresRegiao().get(regiao);
+        }
+        fatoresCliente = new BigDecimal[TipoCliente.values().length];
+        for (TipoCliente tipo : TipoCliente.values()) {
+            fatoresCliente[tipo.ordinal()] = definicao.fatoresCliente().get(tipo);
+        }
+        fatoresFrete = new BigDecimal[fatoresRegiao.length][fatoresCliente.length];
+        for (int regiao = 0; regiao < fatoresRegiao.length; regiao++) {
+            for (int tipo = 0; tipo < fatoresCliente.length; tipo++) {
+                fatoresFrete[regiao][tipo] = fatoresRegiao[regiao].multiply(fatoresCliente[tipo]);
+            }
+        }
+
+        pontoFixo = PrecificacaoPontoFixo.compilar(definicao);
+    }
+
+    /**
+     * Valida e compila a tabela. Os limiares podem vir em qualquer ordem; repetidos, valores
+     * negativos, percentuais acima de 100% ou fatores ausentes são recusados.
+     *
+     * @throws IllegalArgumentException se a tabela for inválida
+     */
+    static RegrasPrecificacao compilar(RegrasPrecificacaoDTO regras, long versao) {
+        if (regras == null || regras.descontosCategoria() == null || regras.descontosValor() == null
+                || regras.faixasPeso() == null || regras.fatoresRegiao() == null || regras.fatoresCliente() == null) {
+            throw new IllegalArgumentException("Regras de precificação incompletas.");
+        }
+
+        List<DescontoQuantidadeDTO> categoria = new ArrayList<>(regras.descontosCategoria());
+        for (DescontoQuantidadeDTO desconto : categoria) {
+            exigir(desconto != null && desconto.quantidadeMinima() != null && desconto.quantidadeMinima() > 0,
+                    "Quantidade mínima do desconto por categoria deve ser positiva.");
+            exigirPercentual(desconto.percentual());
+        }
+        categoria.sort(Comparator.comparing(DescontoQuantidadeDTO::quantidadeMinima));
+        for (int i = 1; i < categoria.size(); i++) {
+            exigir(!categoria.get(i).quantidadeMinima().equals(categoria.get(i - 1).quantidadeMinima()),
+                    "Quantidade mínima repetida nos descontos por categoria.");
+        }
+
+        List<DescontoValorDTO> valor = new ArrayList<>(regras.descontosValor());
+        for (DescontoValorDTO desconto : valor) {
+            exigir(desconto != null, "Desconto por valor não pode ser nulo.");
+            exigirNaoNegativo(desconto.valorMinimo(), "Valor mínimo do desconto por valor");
+            exigirPercentual(desconto.percentual());
+        }
+        valor.sort(Comparator.comparing(DescontoValorDTO::valorMinimo));
+        for (int i = 1; i < valor.size(); i++) {
+            exigir(valor.get(i).valorMinimo().compareTo(valor.get(i - 1).valorMinimo()) != 0,
+                    "Valor mínimo repetido nos descontos por valor.");
+        }
+
+        List<FaixaPesoDTO> faixas = new ArrayList<>(regras.faixasPeso());
+        exigir(!faixas.isEmpty() && faixas.size() <= MAX_FAIXAS_PESO,
+                "Frete deve ter entre 1 e " + MAX_FAIXAS_PESO + " faixas de peso.");
+        for (FaixaPesoDTO faixa : faixas) {
+            exigir(faixa != null, "Faixa de peso não pode ser nula.");
+            if (faixa.pesoMaximo() != null) {
+                exigirNaoNegativo(faixa.pesoMaximo(), "Peso máximo da faixa");
+            }
+            exigirNaoNegativo(faixa.valorKg(), "Valor por kg da faixa");
+            exigirNaoNegativo(faixa.taxaMinima(), "Taxa mínima da faixa");
+        }
+        faixas.sort(Comparator.comparing(FaixaPesoDTO::pesoMaximo, Comparator.nullsLast(Comparator.naturalOrder())));
+        exigir(faixas.get(faixas.size() - 1).pesoMaximo() == null
+                        && faixas.stream().filter(f -> f.pesoMaximo() == null).count() == 1,
+                "Exatamente uma faixa de peso, a última, deve ficar sem peso máximo.");
+        for (int i = 1; i < faixas.size() - 1; i++) {
+            exigir(faixas.get(i).pesoMaximo().compareTo(faixas.get(i - 1).pesoMaximo()) != 0,
+                    "Peso máximo repetido nas faixas de frete.");
+        }
+
+        exigirNaoNegativo(regras.taxaItemFragil(), "Taxa por item frágil");
+
+        Map<Regiao, BigDecimal> fatoresRegiao = new EnumMap<>(Regiao.class);
+        for (Regiao regiao : Regiao.values()) {
+            BigDecimal fator = regras.fatoresRegiao().get(regiao);
+            exigirNaoNegativo(fator, "Fator da região " + regiao);
+            fatoresRegiao.put(regiao, fator);
+        }
+        Map<TipoCliente, BigDecimal> fatoresCliente = new EnumMap<>(TipoCliente.class);
+        for (TipoCliente tipo : TipoCliente.values()) {
+            BigDecimal fator = regras.fatoresCliente().get(tipo);
+            exigirNaoNegativo(fator, "Fator do cliente " + tipo);
+            fatoresCliente.put(tipo, fator);
+        }
+
+        return new RegrasPrecificacao(versao, new RegrasPrecificacaoDTO(versao, List.copyOf(categoria),
+                List.copyOf(valor), List.copyOf(faixas), regras.taxaItemFragil(),
+                Collections.unmodifiableMap(fatoresRegiao), Collections.unmodifiableMap(fatoresCliente)));
+    }
+
+    private static void exigir(boolean condicao, String mensagem) {
+        if (!condicao) {
+            throw new IllegalArgumentException(mensagem);
+        }
+    }
+
+    private static void exigirNaoNegativo(BigDecimal valor, String nome) {
+        exigir(valor != null && valor.signum() >= 0, nome + " não pode ser nulo nem negativo.");
+    }
+
+    private static void exigirPercentual(BigDecimal percentual) {
+        exigir(percentual != null && percentual.signum() >= 0 && percentual.compareTo(BigDecimal.ONE) <= 0,
+                "Percentual de desconto deve estar entre 0 e 1.");
+    }
+
+    long versao() {
+        return versao;
+    }
+
+    /**
+     * Tabela normalizada (limiares ordenados) com a versão.
+     */
+    RegrasPrecificacaoDTO definicao() {
+        return definicao;
+    }
+
+    PrecificacaoPontoFixo pontoFixo() {
+        return pontoFixo;
+    }
+
+    BigDecimal descontoCategoria(long quantidade) {
+        int indice = maiorAte(quantidadesMinimas, quantidade);
+        return indice < 0 ? BigDecimal.ZERO : descontosCategoria[indice];
+    }
+
+    /**
+     * Multiplicador do subtotal da categoria: 1 menos o desconto, ou {@link BigDecimal#ONE}.
+     */
+    BigDecimal fatorCategoria(long quantidade) {
+        int indice = maiorAte(quantidadesMinimas, quantidade);
+        return indice < 0 ? BigDecimal.ONE : fatoresCategoria[indice];
+    }
+
+    /**
+     * Índice do maior desconto por valor cujo mínimo é ultrapassado pelo total, ou -1.
+     */
+    int indiceDescontoValor(BigDecimal total) {
+        return quantidadeMenores(valoresMinimos, total) - 1;
+    }
+
+    DescontoValorDTO descontoValor(int indice) {
+        return definicao.descontosValor().get(indice);
+    }
+
+    BigDecimal fatorValor(int indice) {
+        return fatoresValor[indice];
+    }
+
+    /**
+     * Índice da primeira faixa cujo peso máximo comporta o peso informado.
+     */
+    int indiceFaixa(BigDecimal peso) {
+        return quantidadeMenores(pesosMaximos, peso);
+    }
+
+    String nomeFaixa(int indice) {
+        return nomesFaixas[indice];
+    }
+
+    BigDecimal valorKg(int indice) {
+        return valoresKg[indice];
+    }
+
+    BigDecimal taxaMinima(int indice) {
+        return taxasMinimas[indice];
+    }
+
+    BigDecimal taxaItemFragil() {
+        return taxaItemFragil;
+    }
+
+    BigDecimal fatorRegiao(Regiao regiao) {
+        return fatoresRegiao[regiao.ordinal()];
+    }
+
+    BigDecimal fatorCliente(TipoCliente tipoCliente) {
+        return fatoresCliente[tipoCliente.ordinal()];
+    }
+
+    /**
+     * Multiplicador único do frete para a região e o tipo de cliente; zero quando o frete é isento.
+     */
+    BigDecimal fatorFrete(Regiao regiao, TipoCliente tipoCliente) {
+        return fatoresFrete[regiao.ordinal()][tipoCliente.ordinal()];
+    }
+
+    /**
+     * Índice do maior limiar menor ou igual ao valor, ou -1.
+     */
+    static int maiorAte(int[] limiares, long valor) {
+        int baixo = 0;
+        int alto = limiares.length - 1;
+
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (limiares[meio] <= valor) {
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return baixo - 1;
+    }
+
+    private static int quantidadeMenores(BigDecimal[] limiares, BigDecimal valor) {
+        int baixo = 0;
+        int alto = limiares.length - 1;
+
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (limiares[meio].compareTo(valor) < 0) {
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return baixo;
+    }
+}
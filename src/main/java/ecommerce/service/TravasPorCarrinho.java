@@ -0,0 +1,29 @@
+package ecommerce.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Conjunto fixo de travas indexadas pelo id do carrinho. Compras do mesmo carrinho disputam
+ * sempre a mesma trava; carrinhos diferentes só competem quando caem na mesma listra, e a
+ * memória não cresce com o número de carrinhos.
+ */
+final class TravasPorCarrinho {
+
+    private final ReentrantLock[] travas;
+    private final int deslocamento;
+
+    TravasPorCarrinho(int listras) {
+        int potencia = Integer.highestOneBit(Math.max(1, listras - 1)) << 1;
+        this.travas = new ReentrantLock[potencia];
+        for (int i = 0; i < potencia; i++) {
+            travas[i] = new ReentrantLock();
+        }
+        this.deslocamento = 64 - Integer.numberOfTrailingZeros(potencia);
+    }
+
+    ReentrantLock para(Long carrinhoId) {
+        // Hash de Fibonacci: ids sequenciais se espalham pelas listras
+        long espalhado = carrinhoId * 0x9E3779B97F4A7C15L;
+        return travas[(int) (espalhado >>> deslocamento)];
+    }
+}
@@ -0,0 +1,137 @@
+package ecommerce.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoLoteDTO;
+import ecommerce.entity.*;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CompraService;
+import ecommerce.service.CotacaoLoteService;
+import ecommerce.service.MetricasCompra;
+import ecommerce.service.ProdutoService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompraControllerCotacaoLoteTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private CompraService compraService;
+	private CarrinhoDeComprasService carrinhoService;
+	private CompraProperties properties;
+	private SimpleMeterRegistry registry;
+	private ExecutorService executor;
+	private CompraController controller;
+
+	@BeforeEach
+	void setUp() {
+		compraService = mock(CompraService.class);
+		carrinhoService = mock(CarrinhoDeComprasService.class);
+		properties = new CompraProperties();
+		registry = new SimpleMeterRegistry();
+		executor = Executors.newFixedThreadPool(4);
+
+		CotacaoLoteService cotacaoLoteService = new CotacaoLoteService(compraService, carrinhoService,
+				mock(ProdutoService.class), executor, properties);
+		controller = new CompraController(compraService, cotacaoLoteService, null,
+				new MetricasCompra(registry), objectMapper);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	@DisplayName("Lote com carrinhos encontrados e ausentes deve responder uma linha NDJSON por carrinho")
+	void cotarLote_carrinhosEncontradosEAusentes_umaLinhaPorCarrinho() throws IOException {
+		Cliente cliente = new Cliente(1L, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE);
+		Produto produto = new Produto(5L, "Livro", "Descrição", new BigDecimal("30.00"), BigDecimal.ONE,
+				BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, false, TipoProduto.LIVRO);
+		List<CarrinhoDeCompras> encontrados = new ArrayList<>();
+		for (long id = 1; id <= 20; id += 2) {
+			encontrados.add(new CarrinhoDeCompras(id, cliente, List.of(new ItemCompra(id, produto, 1L)),
+					LocalDate.now()));
+		}
+		List<Long> ids = new ArrayList<>();
+		for (long id = 1; id <= 20; id++) {
+			ids.add(id);
+		}
+		when(carrinhoService.buscarPorIds(ids)).thenReturn(encontrados);
+		when(compraService.calcularCustoTotal(any(), any(), any()))
+				.thenAnswer(chamada -> BigDecimal.valueOf(((CarrinhoDeCompras) chamada.getArgument(0)).getId()));
+
+		ResponseEntity<StreamingResponseBody> resposta = controller.cotarLote(new CotacaoLoteDTO(ids, null));
+		List<CotacaoDTO> linhas = ler(resposta);
+
+		assertThat(resposta.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(resposta.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+		assertThat(linhas).hasSize(20).extracting(CotacaoDTO::carrinhoId).containsExactlyInAnyOrderElementsOf(ids);
+		for (CotacaoDTO linha : linhas) {
+			if (linha.carrinhoId() % 2 == 1) {
+				assertThat(linha.sucesso()).isTrue();
+				assertThat(linha.custoTotal()).isEqualByComparingTo(BigDecimal.valueOf(linha.carrinhoId()));
+			} else {
+				assertThat(linha).extracting(CotacaoDTO::sucesso, CotacaoDTO::mensagem)
+						.containsExactly(false, "Carrinho não encontrado.");
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Lote acima do limite deve responder 400 com uma única linha de erro")
+	void cotarLote_acimaDoLimite_responde400() throws IOException {
+		properties.getCotacaoLote().setMaxCarrinhos(2);
+
+		ResponseEntity<StreamingResponseBody> resposta = controller.cotarLote(
+				new CotacaoLoteDTO(List.of(1L, 2L, 3L), null));
+
+		assertThat(resposta.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(ler(resposta))
+				.extracting(CotacaoDTO::sucesso, CotacaoDTO::mensagem)
+				.containsExactly(tuple(false, "Lote de cotação excede o limite de 2 carrinhos."));
+		// A mensagem traz o limite configurado: só a classe da exceção vira tag
+		Counter falhas = registry.get("compra.falhas").tags("operacao", "cotacao-lote", "status", "400",
+				"excecao", "IllegalArgumentException").counter();
+		assertThat(falhas.count()).isEqualTo(1);
+		assertThat(falhas.getId().getTags()).extracting(Tag::getKey)
+				.containsExactlyInAnyOrder("operacao", "status", "excecao");
+	}
+
+	private List<CotacaoDTO> ler(ResponseEntity<StreamingResponseBody> resposta) throws IOException {
+		ByteArrayOutputStream saida = new ByteArrayOutputStream();
+		resposta.getBody().writeTo(saida);
+
+		List<CotacaoDTO> linhas = new ArrayList<>();
+		for (String linha : saida.toString(StandardCharsets.UTF_8).split("\n")) {
+			linhas.add(objectMapper.readValue(linha, CotacaoDTO.class));
+		}
+		return linhas;
+	}
+}
@@ -0,0 +1,141 @@
+package ecommerce.external;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class AgrupadorDeChamadasTest {
+
+    private static final long PRAZO_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private AgrupadorDeChamadas<Integer, Integer> agrupador;
+
+    @AfterEach
+    void tearDown() {
+        if (agrupador != null) {
+            agrupador.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Error ao processar o lote deve falhar as chamadas do lote sem derrubar o despachante")
+    void executar_errorNoLote_falhaChamadasESegueDespachando() {
+        agrupador = new AgrupadorDeChamadas<>("teste", pedidos -> {
+            if (pedidos.contains(1)) {
+                throw new StackOverflowError();
+            }
+            return pedidos;
+        }, 1, 0, PRAZO_NANOS);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            assertThatThrownBy(() -> agrupador.executar(1))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasCauseInstanceOf(StackOverflowError.class);
+            assertThat(agrupador.executar(2)).isEqualTo(2);
+        });
+    }
+
+    @Test
+    @DisplayName("Lote com menos resultados do que pedidos deve falhar as chamadas sem resultado")
+    void executar_resultadosAMenos_falhaChamadasSemResultado() throws Exception {
+        CountDownLatch enfileiradas = new CountDownLatch(1);
+        agrupador = new AgrupadorDeChamadas<>("teste", pedidos -> pedidos.subList(0, 1), 2,
+                TimeUnit.SECONDS.toNanos(1), PRAZO_NANOS);
+
+        CompletableFuture<Integer> primeira = CompletableFuture.supplyAsync(() -> {
+            enfileiradas.countDown();
+            return agrupador.executar(1);
+        });
+        enfileiradas.await();
+        CompletableFuture<Integer> segunda = CompletableFuture.supplyAsync(() -> agrupador.executar(2));
+
+        List<Object> resultados = new ArrayList<>();
+        for (CompletableFuture<Integer> chamada : List.of(primeira, segunda)) {
+            resultados.add(chamada.handle((valor, erro) -> erro == null ? valor : erro.getCause().getMessage())
+                    .get(2, TimeUnit.SECONDS));
+        }
+        assertThat(resultados).containsExactlyInAnyOrder(1, "Lote sem resultado para a chamada.");
+    }
+
+    @Test
+    @DisplayName("Chamada que esgota o prazo antes do envio deve falhar e ficar fora do lote")
+    void executar_prazoEsgotado_falhaESaiDoLote() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        List<Integer> enviados = new CopyOnWriteArrayList<>();
+        agrupador = new AgrupadorDeChamadas<>("teste", bloquearAte(liberar, enviados), 1, 0,
+                TimeUnit.MILLISECONDS.toNanos(200));
+
+        CompletableFuture<Integer> emAndamento = CompletableFuture.supplyAsync(() -> agrupador.executar(1));
+        aguardarEnvio(enviados, 1);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> assertThatThrownBy(() -> agrupador.executar(2))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Tempo esgotado aguardando o lote de chamadas."));
+
+        liberar.countDown();
+        emAndamento.handle((valor, erro) -> null).get(2, TimeUnit.SECONDS);
+        assertThat(agrupador.executar(3)).isNull();
+        assertThat(enviados).containsExactly(1, 3);
+    }
+
+    @Test
+    @DisplayName("Fechar deve falhar as chamadas na fila, concluir o lote enviado e recusar novas chamadas")
+    void close_chamadasNaFila_falhamENovasSaoRecusadas() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        List<Integer> enviados = new CopyOnWriteArrayList<>();
+        agrupador = new AgrupadorDeChamadas<>("teste", bloquearAte(liberar, enviados), 1, 0, PRAZO_NANOS);
+
+        CompletableFuture<Integer> enviada = CompletableFuture.supplyAsync(() -> agrupador.executar(1));
+        aguardarEnvio(enviados, 1);
+        CompletableFuture<Integer> naFila = CompletableFuture.supplyAsync(() -> agrupador.executar(2));
+        Thread.sleep(50);
+
+        agrupador.close();
+
+        assertThatThrownBy(() -> naFila.get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Agrupador de chamadas encerrado.");
+        assertThatThrownBy(() -> agrupador.executar(3))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Agrupador de chamadas encerrado.");
+
+        liberar.countDown();
+        assertThat(enviada.get(2, TimeUnit.SECONDS)).isNull();
+        assertThat(enviados).containsExactly(1);
+    }
+
+    private static Function<List<Integer>, List<Integer>> bloquearAte(CountDownLatch liberar, List<Integer> enviados) {
+        return pedidos -> {
+            enviados.addAll(pedidos);
+            try {
+                liberar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            List<Integer> resultados = new ArrayList<>();
+            pedidos.forEach(pedido -> resultados.add(null));
+            return resultados;
+        };
+    }
+
+    private static void aguardarEnvio(List<Integer> enviados, int quantidade) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (enviados.size() < quantidade && System.nanoTime() < limite) {
+            Thread.sleep(5);
+        }
+        assertThat(enviados).hasSize(quantidade);
+    }
+}
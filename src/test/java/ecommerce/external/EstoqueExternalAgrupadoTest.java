@@ -0,0 +1,213 @@
+package ecommerce.external;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PedidoEstoqueDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.fake.EstoqueSimulado;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EstoqueExternalAgrupadoTest {
+
+    private static final int PEDIDOS = 200;
+
+    private EstoqueSimulado estoque;
+    private AtomicInteger chamadasBaixa;
+    private AtomicInteger chamadasDisponibilidade;
+    private AtomicInteger chamadasReserva;
+    private AtomicInteger chamadasConfirmacao;
+    private EstoqueExternalAgrupado agrupado;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        estoque = new EstoqueSimulado(1_000);
+        chamadasBaixa = new AtomicInteger();
+        chamadasDisponibilidade = new AtomicInteger();
+        chamadasReserva = new AtomicInteger();
+        chamadasConfirmacao = new AtomicInteger();
+
+        IEstoqueExternal contador = new IEstoqueExternal() {
+            @Override
+            public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                chamadasBaixa.incrementAndGet();
+                return estoque.darBaixa(produtosIds, produtosQuantidades);
+            }
+
+            @Override
+            public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                chamadasDisponibilidade.incrementAndGet();
+                return estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+            }
+
+            @Override
+            public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades) {
+                chamadasReserva.incrementAndGet();
+                return estoque.reservar(produtosIds, produtosQuantidades);
+            }
+
+            @Override
+            public List<ReservaEstoqueDTO> reservarEmLote(List<PedidoEstoqueDTO> pedidos) {
+                chamadasReserva.incrementAndGet();
+                return estoque.reservarEmLote(pedidos);
+            }
+
+            @Override
+            public EstoqueBaixaDTO confirmarReserva(Long reservaId, List<Long> produtosIds,
+                    List<Long> produtosQuantidades) {
+                chamadasConfirmacao.incrementAndGet();
+                return estoque.confirmarReserva(reservaId, produtosIds, produtosQuantidades);
+            }
+
+            @Override
+            public List<EstoqueBaixaDTO> confirmarReservasEmLote(List<PedidoEstoqueDTO> pedidos) {
+                chamadasConfirmacao.incrementAndGet();
+                return estoque.confirmarReservasEmLote(pedidos);
+            }
+
+            @Override
+            public void liberarReserva(Long reservaId) {
+                estoque.liberarReserva(reservaId);
+            }
+        };
+
+        agrupado = new EstoqueExternalAgrupado(contador, 64, Duration.ofMillis(20), Duration.ofSeconds(5));
+        executor = Executors.newFixedThreadPool(PEDIDOS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        agrupado.close();
+    }
+
+    @Test
+    @DisplayName("Baixas concorrentes devem ser agrupadas em menos chamadas ao estoque")
+    void darBaixa_pedidosConcorrentes_agrupaChamadas() throws Exception {
+        List<EstoqueBaixaDTO> resultados = executarConcorrentes(
+                () -> agrupado.darBaixa(List.of(1L, 2L), List.of(1L, 2L)));
+
+        assertThat(resultados).allMatch(EstoqueBaixaDTO::sucesso);
+        assertThat(chamadasBaixa.get()).isLessThan(PEDIDOS);
+        assertThat(estoque.consultarEstoque(1L)).isEqualTo(1_000 - PEDIDOS);
+        assertThat(estoque.consultarEstoque(2L)).isEqualTo(1_000 - 2 * PEDIDOS);
+    }
+
+    @Test
+    @DisplayName("Com estoque insuficiente para o lote, apenas os pedidos que cabem devem ter sucesso")
+    void darBaixa_estoqueLimitado_sucessoParaOsQueCabem() throws Exception {
+        estoque.definirEstoque(1L, 50);
+
+        List<EstoqueBaixaDTO> resultados = executarConcorrentes(
+                () -> agrupado.darBaixa(List.of(1L), List.of(1L)));
+
+        assertThat(resultados).filteredOn(EstoqueBaixaDTO::sucesso).hasSize(50);
+        assertThat(estoque.consultarEstoque(1L)).isZero();
+    }
+
+    @Test
+    @DisplayName("Disponibilidade deve ser avaliada por pedido mesmo quando o lote excede o estoque")
+    void verificarDisponibilidade_loteExcedeEstoque_resultadoPorPedido() throws Exception {
+        estoque.definirEstoque(2L, 5);
+        AtomicInteger sequencia = new AtomicInteger();
+
+        List<DisponibilidadeDTO> resultados = executarConcorrentes(() -> {
+            // Um em cada dez pedidos pede mais do que há em estoque
+            long quantidade = sequencia.incrementAndGet() % 10 == 0 ? 6L : 1L;
+            return agrupado.verificarDisponibilidade(List.of(1L, 2L), List.of(1L, quantidade));
+        });
+
+        assertThat(resultados).filteredOn(d -> !d.disponivel()).hasSize(PEDIDOS / 10)
+                .allSatisfy(d -> assertThat(d.idsProdutosIndisponiveis()).containsExactly(2L));
+        assertThat(resultados).filteredOn(DisponibilidadeDTO::disponivel)
+                .allSatisfy(d -> assertThat(d.idsProdutosIndisponiveis()).isEmpty());
+        assertThat(estoque.consultarEstoque(2L)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Pedido isolado deve ser repassado sem alteração")
+    void verificarDisponibilidade_pedidoIsolado_repassaResultado() {
+        estoque.definirEstoque(3L, 1);
+
+        DisponibilidadeDTO disponibilidade = agrupado.verificarDisponibilidade(List.of(3L), List.of(2L));
+
+        assertThat(disponibilidade.disponivel()).isFalse();
+        assertThat(disponibilidade.idsProdutosIndisponiveis()).containsExactly(3L);
+        assertThat(chamadasDisponibilidade.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Reservas e confirmações concorrentes devem ser agrupadas, com uma reserva por pedido")
+    void reservarEConfirmar_pedidosConcorrentes_agrupaChamadas() throws Exception {
+        List<ReservaEstoqueDTO> reservas = executarConcorrentes(
+                () -> agrupado.reservar(List.of(1L, 2L), List.of(1L, 2L)));
+
+        assertThat(reservas).allMatch(ReservaEstoqueDTO::reservado);
+        assertThat(reservas).extracting(ReservaEstoqueDTO::reservaId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(chamadasReserva.get()).isLessThan(PEDIDOS);
+        assertThat(estoque.consultarEstoque(2L)).isEqualTo(1_000 - 2 * PEDIDOS);
+
+        AtomicInteger proxima = new AtomicInteger();
+        List<EstoqueBaixaDTO> confirmacoes = executarConcorrentes(() -> agrupado.confirmarReserva(
+                reservas.get(proxima.getAndIncrement()).reservaId(), List.of(1L, 2L), List.of(1L, 2L)));
+
+        assertThat(confirmacoes).allMatch(EstoqueBaixaDTO::sucesso);
+        assertThat(chamadasConfirmacao.get()).isLessThan(PEDIDOS);
+        assertThat(estoque.reservasPendentes()).isZero();
+        // Reserva confirmada não debita de novo
+        assertThat(estoque.consultarEstoque(2L)).isEqualTo(1_000 - 2 * PEDIDOS);
+    }
+
+    @Test
+    @DisplayName("Com estoque insuficiente, apenas as reservas que cabem devem ser feitas, cada uma liberável sozinha")
+    void reservar_estoqueLimitado_reservaPorPedido() throws Exception {
+        estoque.definirEstoque(1L, 50);
+
+        List<ReservaEstoqueDTO> reservas = executarConcorrentes(() -> agrupado.reservar(List.of(1L), List.of(1L)));
+
+        assertThat(reservas).filteredOn(ReservaEstoqueDTO::reservado).hasSize(50);
+        assertThat(reservas).filteredOn(r -> !r.reservado())
+                .allSatisfy(r -> assertThat(r.idsProdutosIndisponiveis()).containsExactly(1L));
+        assertThat(estoque.consultarEstoque(1L)).isZero();
+
+        agrupado.liberarReserva(reservas.stream().filter(ReservaEstoqueDTO::reservado).findFirst()
+                .orElseThrow().reservaId());
+
+        assertThat(estoque.consultarEstoque(1L)).isEqualTo(1);
+        assertThat(estoque.reservasPendentes()).isEqualTo(49);
+    }
+
+    private <T> List<T> executarConcorrentes(Callable<T> pedido) throws Exception {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<T>> futuros = new ArrayList<>();
+
+        for (int i = 0; i < PEDIDOS; i++) {
+            futuros.add(executor.submit(() -> {
+                largada.await();
+                return pedido.call();
+            }));
+        }
+        largada.countDown();
+
+        List<T> resultados = new ArrayList<>();
+        for (Future<T> futuro : futuros) {
+            resultados.add(futuro.get());
+        }
+        return resultados;
+    }
+}
@@ -0,0 +1,207 @@
+package ecommerce.external;
+
+import ecommerce.config.CompraProperties.DistribuicaoLatencia;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.external.fake.PagamentoSimulado;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PagamentoExternalResilienteTest {
+
+    @Test
+    @DisplayName("Autorização que estoura o prazo deve falhar e ser cancelada quando chegar")
+    void autorizarPagamento_prazoEsgotado_cancelaAutorizacaoTardia() throws InterruptedException {
+        PagamentoSimulado gateway = new PagamentoSimulado(DistribuicaoLatencia.FIXA, Duration.ofMillis(200), 0);
+        try (PagamentoExternalResiliente pagamento = resiliente(gateway, Duration.ofMillis(50), 10, Duration.ZERO)) {
+
+            assertThatThrownBy(() -> pagamento.autorizarPagamento(1L, 100.0))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Tempo esgotado na autorização do pagamento.");
+
+            aguardarAte(() -> gateway.isCancelado(1L));
+            assertThat(gateway.autorizacoesAtivas()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("Chamadas acima do limite de concorrência devem ser recusadas sem chegar ao gateway")
+    void autorizarPagamento_limiteConcorrencia_recusaExcedente() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger chamadas = new AtomicInteger();
+        IPagamentoExternal gateway = new GatewayFixo(() -> {
+            chamadas.incrementAndGet();
+            aguardar(liberar);
+            return new PagamentoDTO(true, 1L);
+        });
+
+        try (PagamentoExternalResiliente pagamento = resiliente(gateway, Duration.ofSeconds(5), 2, Duration.ZERO)) {
+            CompletableFuture<PagamentoDTO> primeira = CompletableFuture.supplyAsync(() -> pagamento.autorizarPagamento(1L, 1.0));
+            CompletableFuture<PagamentoDTO> segunda = CompletableFuture.supplyAsync(() -> pagamento.autorizarPagamento(2L, 1.0));
+            aguardarAte(() -> chamadas.get() == 2);
+
+            assertThatThrownBy(() -> pagamento.autorizarPagamento(3L, 1.0))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Serviço de pagamento sobrecarregado.");
+
+            liberar.countDown();
+            assertThat(primeira.get(5, TimeUnit.SECONDS).autorizado()).isTrue();
+            assertThat(segunda.get(5, TimeUnit.SECONDS).autorizado()).isTrue();
+            assertThat(chamadas.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("Com o gateway travado, as tentativas em andamento devem ficar no limite mesmo após o prazo")
+    void autorizarPagamento_gatewayTravado_limitaTentativasEmAndamento() throws InterruptedException {
+        CountDownLatch liberar = new CountDownLatch(1);
+        AtomicInteger emAndamento = new AtomicInteger();
+        AtomicInteger pico = new AtomicInteger();
+        IPagamentoExternal gateway = new GatewayFixo(() -> {
+            pico.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+            try {
+                aguardar(liberar);
+                return new PagamentoDTO(true, 1L);
+            } finally {
+                emAndamento.decrementAndGet();
+            }
+        });
+
+        // Circuito que não abre e segunda tentativa habilitada: só o limite de concorrência segura as chamadas
+        try (PagamentoExternalResiliente pagamento = new PagamentoExternalResiliente(gateway, Duration.ofMillis(30), 3,
+                1_000, Duration.ofSeconds(10), Duration.ofMillis(10))) {
+            int sobrecarregadas = 0;
+            for (int i = 0; i < 20; i++) {
+                try {
+                    pagamento.autorizarPagamento(1L, 1.0);
+                } catch (IllegalStateException e) {
+                    if ("Serviço de pagamento sobrecarregado.".equals(e.getMessage())) {
+                        sobrecarregadas++;
+                    }
+                }
+            }
+
+            assertThat(pico.get()).isEqualTo(3);
+            assertThat(emAndamento.get()).isEqualTo(3);
+            assertThat(sobrecarregadas).isGreaterThanOrEqualTo(17);
+
+            liberar.countDown();
+            aguardarAte(() -> emAndamento.get() == 0);
+            assertThat(pagamento.autorizarPagamento(1L, 1.0).autorizado()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Falhas seguidas devem abrir o circuito e uma chamada de teste bem-sucedida deve fechá-lo")
+    void autorizarPagamento_falhasSeguidas_abreCircuito() throws InterruptedException {
+        AtomicInteger chamadas = new AtomicInteger();
+        AtomicInteger falhasRestantes = new AtomicInteger(3);
+        IPagamentoExternal gateway = new GatewayFixo(() -> {
+            chamadas.incrementAndGet();
+            if (falhasRestantes.getAndDecrement() > 0) {
+                throw new IllegalStateException("Gateway fora do ar.");
+            }
+            return new PagamentoDTO(true, 1L);
+        });
+
+        try (PagamentoExternalResiliente pagamento = new PagamentoExternalResiliente(gateway, Duration.ofSeconds(1), 10,
+                3, Duration.ofMillis(100), Duration.ZERO)) {
+            for (int i = 0; i < 3; i++) {
+                assertThatThrownBy(() -> pagamento.autorizarPagamento(1L, 1.0)).hasMessage("Gateway fora do ar.");
+            }
+
+            assertThat(pagamento.isCircuitoAberto()).isTrue();
+            assertThatThrownBy(() -> pagamento.autorizarPagamento(1L, 1.0))
+                    .hasMessage("Serviço de pagamento indisponível.");
+            assertThat(chamadas.get()).isEqualTo(3);
+
+            Thread.sleep(150);
+            assertThat(pagamento.autorizarPagamento(1L, 1.0).autorizado()).isTrue();
+            assertThat(pagamento.isCircuitoAberto()).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Segunda tentativa deve responder quando a primeira demora, e a perdedora deve ser cancelada")
+    void autorizarPagamento_tentativaExtra_usaMaisRapidaECancelaOutra() throws InterruptedException {
+        AtomicInteger chamadas = new AtomicInteger();
+        PagamentoSimulado simulado = new PagamentoSimulado(DistribuicaoLatencia.FIXA, Duration.ZERO, 0);
+        IPagamentoExternal gateway = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                if (chamadas.incrementAndGet() == 1) {
+                    dormir(300);
+                }
+                return simulado.autorizarPagamento(clienteId, custoTotal);
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                simulado.cancelarPagamento(clienteId, pagamentoTransacaoId);
+            }
+        };
+
+        try (PagamentoExternalResiliente pagamento = resiliente(gateway, Duration.ofSeconds(2), 10, Duration.ofMillis(20))) {
+            long inicio = System.nanoTime();
+            PagamentoDTO autorizado = pagamento.autorizarPagamento(1L, 1.0);
+
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio)).isLessThan(250);
+            assertThat(chamadas.get()).isEqualTo(2);
+
+            aguardarAte(() -> simulado.autorizacoesAtivas() == 1 && simulado.isCancelado(2L));
+            assertThat(simulado.isCancelado(autorizado.transacaoId())).isFalse();
+        }
+    }
+
+    private static PagamentoExternalResiliente resiliente(IPagamentoExternal gateway, Duration prazo, int maxConcorrentes,
+                                                          Duration atrasoTentativaExtra) {
+        return new PagamentoExternalResiliente(gateway, prazo, maxConcorrentes, 5, Duration.ofSeconds(10),
+                atrasoTentativaExtra);
+    }
+
+    private static void aguardarAte(BooleanSupplier condicao) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicao.getAsBoolean() && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        assertThat(condicao.getAsBoolean()).isTrue();
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void dormir(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record GatewayFixo(Supplier<PagamentoDTO> autorizacao) implements IPagamentoExternal {
+
+        @Override
+        public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+            return autorizacao.get();
+        }
+
+        @Override
+        public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+        }
+    }
+}
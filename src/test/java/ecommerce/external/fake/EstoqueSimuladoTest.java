@@ -0,0 +1,181 @@
+package ecommerce.external.fake;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class EstoqueSimuladoTest {
+
+    @Test
+    @DisplayName("Baixa com um produto sem saldo não deve debitar nenhum dos demais")
+    void darBaixa_produtoSemSaldo_naoDebitaNada() {
+        EstoqueSimulado estoque = new EstoqueSimulado(10);
+        estoque.definirEstoque(3L, 1);
+
+        assertThat(estoque.darBaixa(List.of(1L, 2L, 3L), List.of(5L, 5L, 2L)).sucesso()).isFalse();
+
+        assertThat(estoque.consultarEstoque(1L)).isEqualTo(10);
+        assertThat(estoque.consultarEstoque(2L)).isEqualTo(10);
+        assertThat(estoque.consultarEstoque(3L)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Produtos repetidos devem ter as quantidades somadas")
+    void darBaixa_produtoRepetido_somaQuantidades() {
+        EstoqueSimulado estoque = new EstoqueSimulado(10);
+
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(List.of(1L, 1L), List.of(6L, 6L));
+
+        assertThat(disponibilidade.disponivel()).isFalse();
+        assertThat(disponibilidade.idsProdutosIndisponiveis()).containsExactly(1L);
+        assertThat(estoque.darBaixa(List.of(1L, 1L), List.of(4L, 6L)).sucesso()).isTrue();
+        assertThat(estoque.consultarEstoque(1L)).isZero();
+    }
+
+    @Test
+    @DisplayName("Listas de tamanhos diferentes ou quantidade negativa devem ser rejeitadas")
+    void darBaixa_entradasInvalidas_lancaExcecao() {
+        EstoqueSimulado estoque = new EstoqueSimulado(10);
+
+        assertThrows(IllegalArgumentException.class, () -> estoque.darBaixa(List.of(1L, 2L), List.of(1L)));
+        assertThrows(IllegalArgumentException.class, () -> estoque.darBaixa(List.of(1L), List.of(-1L)));
+    }
+
+    @Test
+    @DisplayName("Baixas concorrentes de vários produtos devem conservar o saldo e nunca ficar negativas")
+    void darBaixa_concorrente_conservaSaldo() throws Exception {
+        int produtos = 8;
+        int threads = 16;
+        int pedidosPorThread = 5_000;
+        EstoqueSimulado estoque = new EstoqueSimulado(20_000);
+        AtomicLongArray debitado = new AtomicLongArray(produtos);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> futuros = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            futuros.add(executor.submit(() -> {
+                largada.await();
+                for (int i = 0; i < pedidosPorThread; i++) {
+                    // Poucos produtos e ordem aleatória: muitos pedidos disputam os mesmos contadores
+                    List<Long> ids = List.of((long) random.nextInt(produtos), (long) random.nextInt(produtos),
+                            (long) random.nextInt(produtos));
+                    List<Long> quantidades = List.of(random.nextLong(1, 4), random.nextLong(1, 4),
+                            random.nextLong(1, 4));
+
+                    if (estoque.darBaixa(ids, quantidades).sucesso()) {
+                        for (int j = 0; j < ids.size(); j++) {
+                            debitado.addAndGet(ids.get(j).intValue(), quantidades.get(j));
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> futuro : futuros) {
+            futuro.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        for (int p = 0; p < produtos; p++) {
+            assertThat(estoque.consultarEstoque((long) p)).isGreaterThanOrEqualTo(0)
+                    .isEqualTo(20_000 - debitado.get(p));
+        }
+    }
+
+    @Test
+    @DisplayName("Baixa recusada por um produto não deve fazer recusar uma baixa concorrente que cabe no estoque")
+    void darBaixa_concorrenteComPedidoRecusado_naoRecusaOQueCabe() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int rodada = 0; rodada < 2_000; rodada++) {
+                EstoqueSimulado estoque = new EstoqueSimulado(0);
+                estoque.definirEstoque(1L, 1);
+                CountDownLatch largada = new CountDownLatch(1);
+
+                // A precisa do produto 2, que não tem saldo; B só do produto 1
+                Future<Boolean> a = executor.submit(() -> {
+                    largada.await();
+                    return estoque.darBaixa(List.of(1L, 2L), List.of(1L, 1L)).sucesso();
+                });
+                Future<Boolean> b = executor.submit(() -> {
+                    largada.await();
+                    return estoque.darBaixa(List.of(1L), List.of(1L)).sucesso();
+                });
+                largada.countDown();
+
+                assertThat(a.get(5, TimeUnit.SECONDS)).isFalse();
+                assertThat(b.get(5, TimeUnit.SECONDS)).isTrue();
+                assertThat(estoque.consultarEstoque(1L)).isZero();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Reserva deve segurar os itens até a confirmação")
+    void reservar_confirmar_mantemBaixa() {
+        EstoqueSimulado estoque = new EstoqueSimulado(10);
+
+        ReservaEstoqueDTO reserva = estoque.reservar(List.of(1L), List.of(4L));
+
+        assertThat(reserva.reservado()).isTrue();
+        assertThat(estoque.consultarEstoque(1L)).isEqualTo(6);
+        assertThat(estoque.reservar(List.of(1L), List.of(7L)).idsProdutosIndisponiveis()).containsExactly(1L);
+        assertThat(estoque.confirmarReserva(reserva.reservaId(), List.of(1L), List.of(4L)).sucesso()).isTrue();
+        assertThat(estoque.consultarEstoque(1L)).isEqualTo(6);
+        assertThat(estoque.reservasPendentes()).isZero();
+        estoque.close();
+    }
+
+    @Test
+    @DisplayName("Reserva liberada deve devolver os itens e não pode ser liberada duas vezes")
+    void liberarReserva_devolveItens() {
+        EstoqueSimulado estoque = new EstoqueSimulado(10);
+
+        ReservaEstoqueDTO reserva = estoque.reservar(List.of(1L, 2L), List.of(4L, 10L));
+        estoque.liberarReserva(reserva.reservaId());
+        estoque.liberarReserva(reserva.reservaId());
+
+        assertThat(estoque.consultarEstoque(1L)).isEqualTo(10);
+        assertThat(estoque.consultarEstoque(2L)).isEqualTo(10);
+        estoque.close();
+    }
+
+    @Test
+    @DisplayName("Reserva vencida deve voltar ao estoque e a confirmação tardia deve refazer a baixa")
+    void reservar_prazoVencido_expira() throws InterruptedException {
+        EstoqueSimulado estoque = new EstoqueSimulado(10, Duration.ofMillis(50), Duration.ofMillis(10));
+
+        ReservaEstoqueDTO reserva = estoque.reservar(List.of(1L), List.of(4L));
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (estoque.reservasPendentes() > 0 && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+
+        assertThat(estoque.reservasPendentes()).isZero();
+        assertThat(estoque.consultarEstoque(1L)).isEqualTo(10);
+        assertThat(estoque.confirmarReserva(reserva.reservaId(), List.of(1L), List.of(4L)).sucesso()).isTrue();
+        assertThat(estoque.consultarEstoque(1L)).isEqualTo(6);
+        estoque.close();
+    }
+}
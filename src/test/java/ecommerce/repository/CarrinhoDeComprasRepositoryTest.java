@@ -0,0 +1,194 @@
+package ecommerce.repository;
+
+import ecommerce.entity.*;
+import ecommerce.service.CarrinhoDeComprasService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class CarrinhoDeComprasRepositoryTest {
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private CarrinhoDeComprasRepository repository;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		statistics = entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@Test
+	@DisplayName("Carrinho com 50 itens deve ser carregado com itens e produtos em uma única consulta")
+	void findWithItensByIdAndCliente_50Itens_umaConsulta() {
+		Cliente cliente = entityManager.persist(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+		CarrinhoDeCompras carrinho = persistirCarrinho(cliente, 50);
+
+		long consultas = contarConsultasAoPercorrer(carrinho.getId(), cliente);
+
+		assertThat(consultas).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Número de consultas não deve depender da quantidade de itens")
+	void findWithItensByIdAndCliente_consultasConstantes() {
+		Cliente cliente = entityManager.persist(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+		CarrinhoDeCompras pequeno = persistirCarrinho(cliente, 2);
+		CarrinhoDeCompras grande = persistirCarrinho(cliente, 50);
+
+		assertThat(contarConsultasAoPercorrer(grande.getId(), cliente))
+				.isEqualTo(contarConsultasAoPercorrer(pequeno.getId(), cliente));
+	}
+
+	@Test
+	@DisplayName("Carrinho finalizado deve ser gravado na hora e não poder ser finalizado de novo")
+	void finalizar_gravaNaHora_segundaFinalizacaoFalha() {
+		Cliente cliente = entityManager.persist(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+		CarrinhoDeCompras carrinho = persistirCarrinho(cliente, 1);
+		entityManager.flush();
+		Long versao = carrinho.getVersao();
+		CarrinhoDeComprasService service = new CarrinhoDeComprasService(repository);
+
+		service.finalizar(carrinho, versao);
+		entityManager.clear();
+
+		CarrinhoDeCompras recarregado = repository.findById(carrinho.getId()).orElseThrow();
+		assertThat(recarregado.isFinalizado()).isTrue();
+		assertThat(recarregado.getVersao()).isEqualTo(versao + 1);
+		assertThatThrownBy(() -> service.finalizar(recarregado, null))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Carrinho já finalizado.");
+	}
+
+	@Test
+	@DisplayName("Carrinho alterado no banco depois da leitura não deve ser finalizado")
+	void finalizar_versaoDesatualizada_lancaExcecao() {
+		Cliente cliente = entityManager.persist(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+		CarrinhoDeCompras carrinho = persistirCarrinho(cliente, 1);
+		entityManager.flush();
+		CarrinhoDeComprasService service = new CarrinhoDeComprasService(repository);
+
+		// Outra transação avança a versão da linha depois que o carrinho foi lido
+		repository.invalidarAgregadosComProduto(carrinho.getItens().get(0).getProduto().getId());
+
+		assertThatThrownBy(() -> service.finalizar(carrinho, null))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Carrinho alterado por outra compra.");
+	}
+
+	@Test
+	@DisplayName("Agregados do carrinho devem ser gravados e recarregados sem duplicar itens")
+	void agregados_persistidos_recarregados() {
+		Cliente cliente = entityManager.persist(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+		CarrinhoDeCompras carrinho = persistirCarrinho(cliente, 10);
+		carrinho.recalcularAgregados();
+		ResumoCarrinho esperado = ResumoCarrinho.calcular(carrinho.getItens());
+
+		long consultas = contarConsultasAoPercorrer(carrinho.getId(), cliente);
+
+		CarrinhoDeCompras recarregado = repository.findWithItensByIdAndCliente(carrinho.getId(), cliente).orElseThrow();
+		assertThat(consultas).isEqualTo(1);
+		assertThat(recarregado.getItens()).hasSize(10);
+		assertThat(recarregado.isAgregadosValidos()).isTrue();
+		assertThat(recarregado.resumirAgregados().equivalente(esperado)).isTrue();
+	}
+
+	@Test
+	@DisplayName("Agregados devem vir na linha do carrinho e continuar disponíveis fora da sessão")
+	void agregados_carrinhoDesanexado_disponiveis() {
+		Cliente cliente = entityManager.persist(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+		CarrinhoDeCompras carrinho = persistirCarrinho(cliente, 4);
+		carrinho.recalcularAgregados();
+		ResumoCarrinho esperado = ResumoCarrinho.calcular(carrinho.getItens());
+		entityManager.flush();
+		entityManager.clear();
+
+		CarrinhoDeCompras recarregado = repository.findWithItensByIdAndCliente(carrinho.getId(), cliente).orElseThrow();
+		entityManager.clear();
+
+		assertThat(recarregado.resumirAgregados().equivalente(esperado)).isTrue();
+	}
+
+	@Test
+	@DisplayName("Peso tributável total deve ser recarregado com todas as casas decimais")
+	void agregados_pesoComMuitasCasas_recarregadoSemArredondar() {
+		Cliente cliente = entityManager.persist(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+		Produto produto = entityManager.persist(new Produto(null, "Produto", "Descrição", new BigDecimal("10.00"),
+				BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, false, TipoProduto.LIVRO));
+		// Só em memória: a coluna do produto guardaria 2 casas
+		produto.setPesoFisico(new BigDecimal("1.234567"));
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(null, cliente,
+				new ArrayList<>(List.of(new ItemCompra(null, produto, 3L))), LocalDate.now());
+		carrinho.recalcularAgregados();
+		entityManager.persist(carrinho);
+		entityManager.flush();
+		entityManager.clear();
+
+		CarrinhoDeCompras recarregado = repository.findById(carrinho.getId()).orElseThrow();
+
+		assertThat(recarregado.resumirAgregados().getPesoTributavelTotal()).isEqualTo(new BigDecimal("3.703701"));
+	}
+
+	@Test
+	@DisplayName("Alteração de produto deve invalidar os agregados apenas dos carrinhos que o contêm")
+	void invalidarAgregadosComProduto_apenasCarrinhosComOProduto() {
+		Cliente cliente = entityManager.persist(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.PRATA));
+		CarrinhoDeCompras comProduto = persistirCarrinho(cliente, 2);
+		CarrinhoDeCompras semProduto = persistirCarrinho(cliente, 2);
+		comProduto.recalcularAgregados();
+		semProduto.recalcularAgregados();
+		entityManager.flush();
+
+		int alterados = repository.invalidarAgregadosComProduto(comProduto.getItens().get(0).getProduto().getId());
+
+		entityManager.clear();
+		assertThat(alterados).isEqualTo(1);
+		assertThat(repository.findById(comProduto.getId()).orElseThrow().isAgregadosValidos()).isFalse();
+		assertThat(repository.findById(semProduto.getId()).orElseThrow().isAgregadosValidos()).isTrue();
+	}
+
+	private long contarConsultasAoPercorrer(Long carrinhoId, Cliente cliente) {
+		entityManager.flush();
+		entityManager.clear();
+		statistics.clear();
+
+		CarrinhoDeCompras carrinho = repository.findWithItensByIdAndCliente(carrinhoId, cliente).orElseThrow();
+		BigDecimal soma = BigDecimal.ZERO;
+		for (ItemCompra item : carrinho.getItens()) {
+			soma = soma.add(item.getProduto().getPreco());
+		}
+		assertThat(carrinho.getCliente().getTipo()).isEqualTo(TipoCliente.PRATA);
+		assertThat(soma).isPositive();
+
+		return statistics.getPrepareStatementCount();
+	}
+
+	private CarrinhoDeCompras persistirCarrinho(Cliente cliente, int quantidadeItens) {
+		List<ItemCompra> itens = new ArrayList<>();
+		for (int i = 0; i < quantidadeItens; i++) {
+			Produto produto = entityManager.persist(new Produto(null, "Produto " + i, "Descrição",
+					new BigDecimal("10.00"), new BigDecimal("1.00"), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE,
+					i % 2 == 0, TipoProduto.values()[i % TipoProduto.values().length]));
+			itens.add(new ItemCompra(null, produto, 1L));
+		}
+		return entityManager.persist(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now()));
+	}
+}
@@ -0,0 +1,148 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.entity.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CarrinhoAgregadosTest {
+
+    private CompraProperties properties;
+    private SimpleMeterRegistry registry;
+    private CompraService compraService;
+    private CompraService recalculo;
+
+    @BeforeEach
+    void setUp() {
+        properties = new CompraProperties();
+        registry = new SimpleMeterRegistry();
+        compraService = new CompraService(null, null, null, null, properties, null, Runnable::run, null,
+                new MetricasCompra(registry));
+        recalculo = new CompraService(null, null, null, null);
+    }
+
+    @Test
+    @DisplayName("Agregados incrementais devem cotar o mesmo que o recálculo a partir dos itens")
+    void calcularCustoTotal_alteracoesAleatorias_mesmoTotalDoRecalculo() {
+        SplittableRandom random = new SplittableRandom(7);
+        Produto[] produtos = new Produto[12];
+        for (int i = 0; i < produtos.length; i++) {
+            produtos[i] = criarProduto((long) i, BigDecimal.valueOf(random.nextLong(1, 50_000), 2),
+                    BigDecimal.valueOf(random.nextLong(0, 30_000), 3), i % 3 == 0,
+                    TipoProduto.values()[i % TipoProduto.values().length]);
+        }
+
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        for (int passo = 0; passo < 500; passo++) {
+            List<ItemCompra> itens = carrinho.getItens();
+            int operacao = itens.isEmpty() ? 0 : random.nextInt(3);
+            if (operacao == 0) {
+                carrinho.adicionarItem(new ItemCompra(null, produtos[random.nextInt(produtos.length)],
+                        random.nextLong(1, 10)));
+            } else if (operacao == 1) {
+                assertThat(carrinho.removerItem(itens.get(random.nextInt(itens.size())))).isTrue();
+            } else {
+                carrinho.alterarQuantidade(itens.get(random.nextInt(itens.size())), random.nextLong(1, 10));
+            }
+
+            assertThat(carrinho.isAgregadosValidos()).isTrue();
+            if (!itens.isEmpty()) {
+                for (Regiao regiao : Regiao.values()) {
+                    for (TipoCliente tipo : TipoCliente.values()) {
+                        assertThat(compraService.calcularCustoTotal(carrinho, regiao, tipo))
+                                .isEqualTo(recalculo.calcularCustoTotal(copiar(carrinho), regiao, tipo));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Alterar o item pelos setters deve descartar os agregados; inclusão direta na lista só a verificação detecta")
+    void calcularCustoTotal_itemAlteradoPorFora_descartaOuDetecta() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        ItemCompra item = new ItemCompra(null, criarProduto(1L, new BigDecimal("100.00"), BigDecimal.ONE, false,
+                TipoProduto.LIVRO), 1L);
+        carrinho.adicionarItem(item);
+
+        item.setQuantidade(3L);
+        assertThat(carrinho.isAgregadosValidos()).isFalse();
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("285.00");
+
+        carrinho.recalcularAgregados();
+        carrinho.getItens().add(new ItemCompra(null, item.getProduto(), 1L));
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("285.00");
+
+        properties.getCotacao().setVerificarAgregados(true);
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo(recalculo.calcularCustoTotal(copiar(carrinho), Regiao.SUDESTE, TipoCliente.OURO));
+        assertThat(registry.counter("compra.carrinho.agregados.divergentes").count()).isEqualTo(1);
+
+        carrinho.setItens(new ArrayList<>(carrinho.getItens()));
+        assertThat(carrinho.isAgregadosValidos()).isFalse();
+        assertThat(carrinho.resumirAgregados()).isNull();
+    }
+
+    @Test
+    @DisplayName("Quantidade por categoria acima do limite de int deve ser mantida nos agregados")
+    void resumirAgregados_quantidadeAcimaDeInt_semTruncar() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        Produto produto = criarProduto(1L, new BigDecimal("0.01"), BigDecimal.ONE, false, TipoProduto.LIVRO);
+        carrinho.adicionarItem(new ItemCompra(null, produto, 3_000_000_000L));
+        carrinho.adicionarItem(new ItemCompra(null, produto, 1L));
+
+        ResumoCarrinho agregados = carrinho.resumirAgregados();
+
+        assertThat(agregados.getQuantidade(TipoProduto.LIVRO)).isEqualTo(3_000_000_001L);
+        assertThat(agregados.equivalente(ResumoCarrinho.calcular(carrinho.getItens()))).isTrue();
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo(recalculo.calcularCustoTotal(copiar(carrinho), Regiao.SUDESTE, TipoCliente.OURO));
+    }
+
+    @Test
+    @DisplayName("Quantidade inválida não deve alterar itens nem agregados")
+    void alterarQuantidade_quantidadeInvalida_lancaExcecao() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        ItemCompra item = new ItemCompra(null, criarProduto(1L, new BigDecimal("10.00"), BigDecimal.ONE, false,
+                TipoProduto.ROUPA), 2L);
+        carrinho.adicionarItem(item);
+
+        assertThatThrownBy(() -> carrinho.alterarQuantidade(item, 0L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Quantidade do item não pode ser zero ou negativa.");
+        assertThatThrownBy(() -> carrinho.adicionarItem(new ItemCompra(null, item.getProduto(), -1L)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(item.getQuantidade()).isEqualTo(2L);
+        assertThat(carrinho.resumirAgregados().getQuantidade(TipoProduto.ROUPA)).isEqualTo(2);
+    }
+
+    private static CarrinhoDeCompras copiar(CarrinhoDeCompras carrinho) {
+        List<ItemCompra> itens = new ArrayList<>();
+        for (ItemCompra item : carrinho.getItens()) {
+            itens.add(new ItemCompra(null, item.getProduto(), item.getQuantidade()));
+        }
+        CarrinhoDeCompras copia = new CarrinhoDeCompras();
+        copia.setItens(itens);
+        return copia;
+    }
+
+    private static Produto criarProduto(long id, BigDecimal preco, BigDecimal peso, boolean fragil, TipoProduto tipo) {
+        Produto p = new Produto(id, "Produto " + id, "Descrição", preco, peso,
+                BigDecimal.TEN, BigDecimal.TEN, BigDecimal.TEN, fragil, tipo);
+        p.setVersao(0L);
+        return p;
+    }
+}
@@ -0,0 +1,357 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.entity.*;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CompraServiceFinalizarCompraTest {
+
+	private static final Long CLIENTE_ID = 1L;
+	private static final Long CARRINHO_ID = 10L;
+
+	private CarrinhoDeComprasRepository carrinhoRepository;
+	private CarrinhoDeComprasService carrinhoService;
+	private ClienteService clienteService;
+	private IEstoqueExternal estoqueExternal;
+	private IPagamentoExternal pagamentoExternal;
+	private ExecutorService executor;
+	private CompraService compraService;
+	private CarrinhoDeCompras carrinho;
+
+	@BeforeEach
+	void setUp() {
+		carrinhoRepository = mock(CarrinhoDeComprasRepository.class);
+		carrinhoService = new CarrinhoDeComprasService(carrinhoRepository);
+		clienteService = mock(ClienteService.class);
+		// Métodos de reserva padrão delegam a verificarDisponibilidade e darBaixa
+		estoqueExternal = mock(IEstoqueExternal.class, CALLS_REAL_METHODS);
+		pagamentoExternal = mock(IPagamentoExternal.class);
+		executor = Executors.newFixedThreadPool(2);
+
+		compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+				new CompraProperties(), null, executor);
+
+		Cliente cliente = new Cliente(CLIENTE_ID, "Cliente", Regiao.SUDESTE, TipoCliente.OURO);
+		Produto produto = new Produto(5L, "Livro", "Descrição", new BigDecimal("100.00"), BigDecimal.ONE,
+				BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, false, TipoProduto.LIVRO);
+		carrinho = new CarrinhoDeCompras(CARRINHO_ID, cliente,
+				List.of(new ItemCompra(1L, produto, 2L)), LocalDate.now());
+
+		when(clienteService.buscarPorId(CLIENTE_ID)).thenReturn(cliente);
+		when(carrinhoRepository.findWithItensByIdAndCliente(CARRINHO_ID, cliente)).thenReturn(Optional.of(carrinho));
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	@DisplayName("Checkout com estoque, pagamento e baixa aprovados deve finalizar a compra")
+	void finalizarCompra_sucesso() {
+		when(estoqueExternal.verificarDisponibilidade(List.of(5L), List.of(2L)))
+				.thenReturn(new DisponibilidadeDTO(true, List.of()));
+		when(pagamentoExternal.autorizarPagamento(CLIENTE_ID, 200.0)).thenReturn(new PagamentoDTO(true, 99L));
+		when(estoqueExternal.darBaixa(List.of(5L), List.of(2L))).thenReturn(new EstoqueBaixaDTO(true));
+
+		CompraDTO compra = compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID);
+
+		assertThat(compra.sucesso()).isTrue();
+		assertThat(compra.transacaoPagamentoId()).isEqualTo(99L);
+	}
+
+	@Test
+	@DisplayName("Itens indisponíveis devem interromper o checkout antes do pagamento")
+	void finalizarCompra_semEstoque_naoAutorizaPagamento() {
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+				.thenReturn(new DisponibilidadeDTO(false, List.of(5L)));
+
+		assertThatThrownBy(() -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Itens fora de estoque.");
+		verifyNoInteractions(pagamentoExternal);
+	}
+
+	@Test
+	@DisplayName("Falha na baixa de estoque deve cancelar o pagamento autorizado")
+	void finalizarCompra_falhaNaBaixa_cancelaPagamento() {
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+				.thenReturn(new DisponibilidadeDTO(true, List.of()));
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		when(estoqueExternal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+
+		assertThatThrownBy(() -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Erro ao dar baixa no estoque.");
+		verify(pagamentoExternal).cancelarPagamento(CLIENTE_ID, 99L);
+	}
+
+	@Test
+	@DisplayName("Pagamento recusado deve liberar a reserva sem dar baixa")
+	void finalizarCompra_pagamentoRecusado_liberaReserva() {
+		doReturn(new ReservaEstoqueDTO(true, 7L, List.of())).when(estoqueExternal).reservar(anyList(), anyList());
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(false, null));
+
+		assertThatThrownBy(() -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Pagamento não autorizado.");
+		verify(estoqueExternal).liberarReserva(7L);
+		verify(estoqueExternal, never()).confirmarReserva(any(), anyList(), anyList());
+		verify(pagamentoExternal, never()).cancelarPagamento(any(), any());
+	}
+
+	@Test
+	@DisplayName("Pagamento autorizado deve confirmar a reserva feita no início do checkout")
+	void finalizarCompra_reservaConfirmada() {
+		doReturn(new ReservaEstoqueDTO(true, 7L, List.of())).when(estoqueExternal).reservar(anyList(), anyList());
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		doReturn(new EstoqueBaixaDTO(true)).when(estoqueExternal).confirmarReserva(7L, List.of(5L), List.of(2L));
+
+		assertThat(compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID).sucesso()).isTrue();
+		verify(estoqueExternal, never()).verificarDisponibilidade(anyList(), anyList());
+		verify(estoqueExternal, never()).darBaixa(anyList(), anyList());
+		verify(estoqueExternal, never()).liberarReserva(any());
+	}
+
+	@Test
+	@DisplayName("Exceção ao confirmar a reserva deve cancelar o pagamento e liberar a reserva")
+	void finalizarCompra_excecaoNaConfirmacao_cancelaPagamentoELiberaReserva() {
+		doReturn(new ReservaEstoqueDTO(true, 7L, List.of())).when(estoqueExternal).reservar(anyList(), anyList());
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		doThrow(new IllegalStateException("Estoque indisponível.")).when(estoqueExternal)
+				.confirmarReserva(any(), anyList(), anyList());
+
+		assertThatThrownBy(() -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Estoque indisponível.");
+		verify(pagamentoExternal).cancelarPagamento(CLIENTE_ID, 99L);
+		verify(estoqueExternal).liberarReserva(7L);
+	}
+
+	@Test
+	@DisplayName("Falha no commit depois da baixa deve cancelar o pagamento autorizado")
+	void finalizarCompra_falhaNoCommit_cancelaPagamento() {
+		compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+				new CompraProperties(), null, executor, null, new MetricasCompra(new SimpleMeterRegistry()),
+				new TransactionTemplate(new TransacaoQueFalhaNoCommit()));
+		doReturn(new ReservaEstoqueDTO(true, 7L, List.of())).when(estoqueExternal).reservar(anyList(), anyList());
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		doReturn(new EstoqueBaixaDTO(true)).when(estoqueExternal).confirmarReserva(any(), anyList(), anyList());
+
+		assertThatThrownBy(() -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID))
+				.isInstanceOf(TransactionSystemException.class);
+		verify(pagamentoExternal).cancelarPagamento(CLIENTE_ID, 99L);
+		verify(estoqueExternal).liberarReserva(7L);
+	}
+
+	@Test
+	@DisplayName("Com fila de cancelamentos, falha na baixa deve enfileirar o cancelamento sem chamar o gateway")
+	void finalizarCompra_falhaNaBaixa_enfileiraCancelamento() {
+		FilaDeCancelamentos fila = mock(FilaDeCancelamentos.class);
+		compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+				new CompraProperties(), null, executor, fila);
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+				.thenReturn(new DisponibilidadeDTO(true, List.of()));
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		when(estoqueExternal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+
+		assertThatThrownBy(() -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID))
+				.hasMessage("Erro ao dar baixa no estoque.");
+		verify(fila).enfileirar(CLIENTE_ID, 99L);
+		verify(pagamentoExternal, never()).cancelarPagamento(any(), any());
+	}
+
+	@Test
+	@DisplayName("Compras simultâneas do mesmo carrinho devem cobrar uma única vez")
+	void finalizarCompra_mesmoCarrinhoSimultaneo_cobraUmaVez() throws Exception {
+		AtomicInteger emAndamento = new AtomicInteger();
+		AtomicInteger maximo = new AtomicInteger();
+		doAnswer(invocacao -> {
+			maximo.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+			Thread.sleep(50);
+			emAndamento.decrementAndGet();
+			return new ReservaEstoqueDTO(true, 7L, List.of());
+		}).when(estoqueExternal).reservar(anyList(), anyList());
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		doReturn(new EstoqueBaixaDTO(true)).when(estoqueExternal).confirmarReserva(any(), anyList(), anyList());
+
+		int sucessos = 0;
+		List<String> falhas = new ArrayList<>();
+		ExecutorService requisicoes = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<CompraDTO>> compras = new ArrayList<>();
+			Callable<CompraDTO> compra = () -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID);
+			for (int i = 0; i < 4; i++) {
+				compras.add(requisicoes.submit(compra));
+			}
+			for (Future<CompraDTO> futura : compras) {
+				try {
+					assertThat(futura.get(5, TimeUnit.SECONDS).sucesso()).isTrue();
+					sucessos++;
+				} catch (ExecutionException e) {
+					falhas.add(e.getCause().getMessage());
+				}
+			}
+		} finally {
+			requisicoes.shutdownNow();
+		}
+
+		assertThat(sucessos).isEqualTo(1);
+		assertThat(falhas).hasSize(3).containsOnly("Carrinho já finalizado.");
+		assertThat(maximo.get()).isEqualTo(1);
+		verify(pagamentoExternal, times(1)).autorizarPagamento(anyLong(), anyDouble());
+		assertThat(carrinho.isFinalizado()).isTrue();
+	}
+
+	@Test
+	@DisplayName("Trava do carrinho só deve ser liberada depois do commit da compra")
+	void finalizarCompra_travaMantidaAteOCommit() throws Exception {
+		PlatformTransactionManager transacoes = mock(PlatformTransactionManager.class);
+		when(transacoes.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+		compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+				new CompraProperties(), null, executor, null, new MetricasCompra(new SimpleMeterRegistry()),
+				new TransactionTemplate(transacoes));
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+				.thenReturn(new DisponibilidadeDTO(true, List.of()));
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		when(estoqueExternal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+
+		List<CompletableFuture<CompraDTO>> concorrentes = new ArrayList<>();
+		doAnswer(invocacao -> {
+			CompletableFuture<CompraDTO> concorrente = CompletableFuture.supplyAsync(
+					() -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID));
+			concorrentes.add(concorrente);
+			Thread.sleep(100);
+			// Durante o commit a outra compra do carrinho continua esperando a trava
+			assertThat(concorrente).isNotDone();
+			return null;
+		}).doNothing().when(transacoes).commit(any());
+
+		assertThat(compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID).sucesso()).isTrue();
+
+		assertThat(concorrentes).hasSize(1);
+		assertThatThrownBy(() -> concorrentes.get(0).get(5, TimeUnit.SECONDS))
+				.hasCauseInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Carrinho já finalizado.");
+		verify(pagamentoExternal, times(1)).autorizarPagamento(anyLong(), anyDouble());
+	}
+
+	@Test
+	@DisplayName("Carrinho que não está mais na versão lida pelo cliente deve falhar antes de consultar estoque e pagamento")
+	void finalizarCompra_versaoAlterada_naoConsultaEstoqueNemPagamento() {
+		carrinho.setVersao(3L);
+
+		assertThatThrownBy(() -> compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID, 2L))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Carrinho alterado por outra compra.");
+		verifyNoInteractions(estoqueExternal, pagamentoExternal);
+		assertThat(carrinho.isFinalizado()).isFalse();
+	}
+
+	@Test
+	@DisplayName("Checkout deve registrar a duração de cada etapa e o tamanho e valor do carrinho")
+	void finalizarCompra_registraMetricas() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+				new CompraProperties(), null, executor, null, new MetricasCompra(registry));
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+				.thenReturn(new DisponibilidadeDTO(true, List.of()));
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		when(estoqueExternal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+
+		compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID);
+
+		for (String etapa : List.of(MetricasCompra.ETAPA_CLIENTE, MetricasCompra.ETAPA_CARRINHO,
+				MetricasCompra.ETAPA_ESTOQUE, MetricasCompra.ETAPA_PRECIFICACAO, MetricasCompra.ETAPA_PAGAMENTO,
+				MetricasCompra.ETAPA_BAIXA)) {
+			assertThat(registry.get("compra.checkout.etapa").tag("etapa", etapa).timer().count()).isEqualTo(1);
+		}
+		assertThat(registry.get("compra.carrinho.itens").summary().totalAmount()).isEqualTo(1);
+		assertThat(registry.get("compra.carrinho.total").summary().totalAmount()).isEqualTo(200.0);
+	}
+
+	@Test
+	@DisplayName("Checkout deve cobrar pelos itens quando os agregados gravados estão desatualizados")
+	void finalizarCompra_agregadosDesatualizados_cobraPelosItens() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+				new CompraProperties(), null, executor, null, new MetricasCompra(registry));
+		ItemCompra item = carrinho.getItens().get(0);
+		CarrinhoDeCompras desatualizado = new CarrinhoDeCompras(CARRINHO_ID, carrinho.getCliente(),
+				new ArrayList<>(List.of(item)), LocalDate.now());
+		desatualizado.recalcularAgregados();
+		// Incluído direto na lista: os agregados continuam válidos, com 2 unidades
+		desatualizado.getItens().add(new ItemCompra(2L, item.getProduto(), 1L));
+		when(carrinhoRepository.findWithItensByIdAndCliente(CARRINHO_ID, carrinho.getCliente()))
+				.thenReturn(Optional.of(desatualizado));
+		when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+				.thenReturn(new DisponibilidadeDTO(true, List.of()));
+		when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		when(estoqueExternal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+
+		assertThat(compraService.finalizarCompra(CARRINHO_ID, CLIENTE_ID).sucesso()).isTrue();
+
+		// 3 livros de 100,00 com 5% de desconto por categoria
+		verify(pagamentoExternal).autorizarPagamento(CLIENTE_ID, 285.0);
+		assertThat(registry.counter("compra.carrinho.agregados.divergentes").count()).isEqualTo(1);
+	}
+
+	private static class TransacaoQueFalhaNoCommit extends AbstractPlatformTransactionManager {
+
+		@Override
+		protected Object doGetTransaction() {
+			return new Object();
+		}
+
+		@Override
+		protected void doBegin(Object transacao, TransactionDefinition definicao) {
+		}
+
+		@Override
+		protected void doCommit(DefaultTransactionStatus status) {
+			throw new TransactionSystemException("Falha no commit.");
+		}
+
+		@Override
+		protected void doRollback(DefaultTransactionStatus status) {
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package ecommerce.service;
 
+import ecommerce.dto.EtapaCotacaoDTO;
+import ecommerce.dto.FreteDTO;
+import ecommerce.dto.TotalCotacaoDTO;
 import ecommerce.entity.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -9,6 +12,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
@@ -48,6 +52,29 @@ public class CompraServiceTest {
 				.isEqualByComparingTo(totalEsperado);
 	}
 
+	@ParameterizedTest(name = "[{index}] {4}")
+	@MethodSource("cenariosDeCalculo")
+	@DisplayName("Cotação em etapas deve terminar com o mesmo total de calcularCustoTotal")
+	void cotarEmEtapas_cenariosCompletos(
+			List<ItemCompra> itens,
+			Regiao regiao,
+			TipoCliente tipoCliente,
+			String totalEsperado,
+			String nomeCenario) {
+
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+		carrinho.setItens(itens);
+		List<EtapaCotacaoDTO> etapas = new ArrayList<>();
+
+		compraService.cotarEmEtapas(carrinho, regiao, tipoCliente, etapas::add);
+
+		assertThat(etapas).last().isInstanceOf(TotalCotacaoDTO.class);
+		assertThat(((TotalCotacaoDTO) etapas.get(etapas.size() - 1)).custoTotal())
+				.as("Cenário: " + nomeCenario)
+				.isEqualByComparingTo(totalEsperado);
+		assertThat(etapas).filteredOn(FreteDTO.class::isInstance).hasSize(1);
+	}
+
 	static Stream<Arguments> cenariosDeCalculo() {
 		return Stream.of(
 				arguments(
@@ -0,0 +1,127 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.config.ThreadsVirtuais;
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.*;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Teste de carga do checkout em threads virtuais: com chamadas externas lentas, o número de
+ * checkouts simultâneos deve ultrapassar o limite padrão de 200 threads do Tomcat.
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+public class CompraServiceThreadsVirtuaisCargaTest {
+
+	private static final int CHECKOUTS = 2_000;
+	private static final int LIMITE_THREADS_TOMCAT = 200;
+	private static final long LATENCIA_EXTERNA_MS = 100;
+
+	private final AtomicInteger chamadasEmAndamento = new AtomicInteger();
+	private final AtomicInteger picoChamadasSimultaneas = new AtomicInteger();
+
+	@Test
+	@DisplayName("Checkouts simultâneos em threads virtuais devem ultrapassar o limite do pool do Tomcat")
+	void finalizarCompra_threadsVirtuais_escalaAlemDoPool() throws Exception {
+		Cliente cliente = new Cliente(1L, "Cliente", Regiao.SUL, TipoCliente.BRONZE);
+		Produto produto = new Produto(5L, "Livro", "Descrição", new BigDecimal("30.00"), BigDecimal.ONE,
+				BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, false, TipoProduto.LIVRO);
+
+		ClienteService clienteService = mock(ClienteService.class);
+		CarrinhoDeComprasService carrinhoService = mock(CarrinhoDeComprasService.class);
+		when(clienteService.buscarPorId(anyLong())).thenReturn(cliente);
+		// Um carrinho por requisição: compras do mesmo carrinho são serializadas pela trava do carrinho
+		when(carrinhoService.buscarComItensPorCarrinhoIdEClienteId(anyLong(), any()))
+				.thenAnswer(chamada -> new CarrinhoDeCompras(chamada.getArgument(0), cliente,
+						List.of(new ItemCompra(1L, produto, 1L)), LocalDate.now()));
+
+		ExecutorService requisicoes = ThreadsVirtuais.novoExecutor();
+		ExecutorService checkoutExecutor = ThreadsVirtuais.novoExecutor();
+		try {
+			CompraService compraService = new CompraService(carrinhoService, clienteService, new EstoqueLento(),
+					new PagamentoLento(), new CompraProperties(), null, checkoutExecutor);
+
+			long inicio = System.nanoTime();
+			List<Future<CompraDTO>> compras = new ArrayList<>(CHECKOUTS);
+			for (long carrinhoId = 1; carrinhoId <= CHECKOUTS; carrinhoId++) {
+				long id = carrinhoId;
+				compras.add(requisicoes.submit(() -> compraService.finalizarCompra(id, 1L)));
+			}
+			for (Future<CompraDTO> compra : compras) {
+				assertThat(compra.get().sucesso()).isTrue();
+			}
+			long duracaoMs = (System.nanoTime() - inicio) / 1_000_000;
+
+			// Com 200 threads de plataforma seriam necessárias ao menos 10 rodadas de 3 chamadas de 100 ms
+			long duracaoMinimaComPool = (CHECKOUTS / LIMITE_THREADS_TOMCAT) * 3 * LATENCIA_EXTERNA_MS;
+
+			assertThat(picoChamadasSimultaneas.get()).isGreaterThan(LIMITE_THREADS_TOMCAT);
+			assertThat(duracaoMs).isLessThan(duracaoMinimaComPool);
+		} finally {
+			requisicoes.shutdownNow();
+			checkoutExecutor.shutdownNow();
+		}
+	}
+
+	private void chamadaExterna() {
+		int emAndamento = chamadasEmAndamento.incrementAndGet();
+		picoChamadasSimultaneas.accumulateAndGet(emAndamento, Math::max);
+		try {
+			Thread.sleep(LATENCIA_EXTERNA_MS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			chamadasEmAndamento.decrementAndGet();
+		}
+	}
+
+	private class EstoqueLento implements IEstoqueExternal {
+
+		@Override
+		public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+			chamadaExterna();
+			return new EstoqueBaixaDTO(true);
+		}
+
+		@Override
+		public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+			chamadaExterna();
+			return new DisponibilidadeDTO(true, List.of());
+		}
+	}
+
+	private class PagamentoLento implements IPagamentoExternal {
+
+		@Override
+		public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+			chamadaExterna();
+			return new PagamentoDTO(true, 1L);
+		}
+
+		@Override
+		public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+		}
+	}
+}
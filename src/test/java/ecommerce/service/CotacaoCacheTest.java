@@ -0,0 +1,106 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.DescontoQuantidadeDTO;
+import ecommerce.dto.RegrasPrecificacaoDTO;
+import ecommerce.entity.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CotacaoCacheTest {
+
+    private CompraService compraService;
+
+    @BeforeEach
+    void setUp() {
+        CompraProperties properties = new CompraProperties();
+        compraService = new CompraService(null, null, null, null, properties,
+                new CotacaoCache(properties, new SimpleMeterRegistry()), Runnable::run);
+    }
+
+    @Test
+    @DisplayName("Carrinho sem alterações deve reutilizar a cotação memorizada")
+    void calcularCustoTotal_mesmoConteudo_reutilizaCotacao() {
+        Produto produto = criarProduto(1L, "100.00");
+        CarrinhoDeCompras primeiro = criarCarrinho(produto, 3L);
+        CarrinhoDeCompras segundo = criarCarrinho(produto, 3L);
+
+        BigDecimal total = compraService.calcularCustoTotal(primeiro, Regiao.SUL, TipoCliente.BRONZE);
+
+        assertThat(compraService.calcularCustoTotal(segundo, Regiao.SUL, TipoCliente.BRONZE)).isSameAs(total);
+        assertThat(compraService.calcularCustoTotal(segundo, Regiao.NORTE, TipoCliente.BRONZE)).isNotSameAs(total);
+    }
+
+    @Test
+    @DisplayName("Alteração de preço ou versão do produto deve gerar nova cotação")
+    void calcularCustoTotal_produtoAlterado_recalcula() {
+        Produto produto = criarProduto(1L, "100.00");
+        CarrinhoDeCompras carrinho = criarCarrinho(produto, 1L);
+
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("100.00");
+
+        produto.setPreco(new BigDecimal("80.00"));
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("80.00");
+
+        Produto recarregado = criarProduto(1L, "90.00");
+        recarregado.setVersao(1L);
+        assertThat(compraService.calcularCustoTotal(criarCarrinho(recarregado, 1L), Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("90.00");
+    }
+
+    @Test
+    @DisplayName("Produtos de mesmo id e versão com alterações não salvas não devem compartilhar cotação")
+    void calcularCustoTotal_alteracoesNaoSalvas_naoCompartilhaCotacao() {
+        Produto salvo = criarProduto(1L, "100.00");
+        Produto editado = criarProduto(1L, "100.00");
+        editado.setPreco(new BigDecimal("70.00"));
+        Produto outroEditado = criarProduto(1L, "100.00");
+        outroEditado.setPreco(new BigDecimal("60.00"));
+
+        assertThat(compraService.calcularCustoTotal(criarCarrinho(editado, 1L), Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("70.00");
+        assertThat(compraService.calcularCustoTotal(criarCarrinho(outroEditado, 1L), Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("60.00");
+        assertThat(compraService.calcularCustoTotal(criarCarrinho(salvo, 1L), Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    @DisplayName("Troca das regras de precificação deve gerar nova cotação")
+    void calcularCustoTotal_regrasTrocadas_recalcula() {
+        CarrinhoDeCompras carrinho = criarCarrinho(criarProduto(1L, "100.00"), 3L);
+
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("285.00");
+
+        RegrasPrecificacaoDTO atuais = compraService.regrasPrecificacao();
+        compraService.substituirRegrasPrecificacao(new RegrasPrecificacaoDTO(atuais.versao(),
+                List.of(new DescontoQuantidadeDTO(3, new BigDecimal("0.50"))), atuais.descontosValor(),
+                atuais.faixasPeso(), atuais.taxaItemFragil(), atuais.fatoresRegiao(), atuais.fatoresCliente()));
+
+        assertThat(compraService.calcularCustoTotal(carrinho, Regiao.SUDESTE, TipoCliente.OURO))
+                .isEqualByComparingTo("150.00");
+    }
+
+    private static CarrinhoDeCompras criarCarrinho(Produto produto, long quantidade) {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(List.of(new ItemCompra(null, produto, quantidade)));
+        return carrinho;
+    }
+
+    private static Produto criarProduto(long id, String preco) {
+        Produto p = new Produto(id, "Livro", "Descrição", new BigDecimal(preco), new BigDecimal("1.0"),
+                BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, false, TipoProduto.LIVRO);
+        p.setVersao(0L);
+        return p;
+    }
+}
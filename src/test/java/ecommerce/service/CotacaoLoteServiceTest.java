@@ -0,0 +1,200 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CarrinhoCotacaoDTO;
+import ecommerce.dto.CotacaoDTO;
+import ecommerce.dto.CotacaoLoteDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CotacaoLoteServiceTest {
+
+	private CompraService compraService;
+	private CarrinhoDeComprasService carrinhoService;
+	private ProdutoService produtoService;
+	private CompraProperties properties;
+	private ExecutorService executor;
+	private CotacaoLoteService service;
+	private Cliente cliente;
+	private Produto produto;
+
+	@BeforeEach
+	void setUp() {
+		compraService = mock(CompraService.class);
+		carrinhoService = mock(CarrinhoDeComprasService.class);
+		produtoService = mock(ProdutoService.class);
+		properties = new CompraProperties();
+		executor = Executors.newFixedThreadPool(4);
+		service = new CotacaoLoteService(compraService, carrinhoService, produtoService, executor, properties);
+
+		cliente = new Cliente(1L, "Cliente", Regiao.SUDESTE, TipoCliente.BRONZE);
+		produto = new Produto(5L, "Livro", "Descrição", new BigDecimal("30.00"), BigDecimal.ONE,
+				BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, false, TipoProduto.LIVRO);
+
+		// Carrinho persistido custa o próprio id; carrinho enviado no corpo, 7.00
+		when(compraService.calcularCustoTotal(any(), any(), any())).thenAnswer(chamada -> {
+			CarrinhoDeCompras carrinho = chamada.getArgument(0);
+			return carrinho.getId() == null ? new BigDecimal("7.00") : BigDecimal.valueOf(carrinho.getId());
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	@DisplayName("Carrinhos encontrados e ausentes devem render um resultado cada, identificado por id ou posição")
+	void cotarLote_carrinhosEncontradosEAusentes_umResultadoPorCarrinho() {
+		when(carrinhoService.buscarPorIds(List.of(1L, 2L, 3L))).thenReturn(List.of(carrinho(1L), carrinho(3L)));
+		when(produtoService.buscarPorIds(List.of(5L, 99L))).thenReturn(List.of(produto));
+
+		List<CotacaoDTO> cotacoes = cotar(new CotacaoLoteDTO(List.of(1L, 2L, 3L), List.of(
+				new CarrinhoCotacaoDTO(Regiao.SUL, TipoCliente.OURO, List.of(new ItemCarrinhoDTO(5L, 2L))),
+				new CarrinhoCotacaoDTO(Regiao.SUL, TipoCliente.OURO, List.of(new ItemCarrinhoDTO(99L, 1L))))));
+
+		assertThat(cotacoes)
+				.extracting(CotacaoDTO::sucesso, CotacaoDTO::carrinhoId, CotacaoDTO::indice, CotacaoDTO::custoTotal,
+						CotacaoDTO::mensagem)
+				.containsExactlyInAnyOrder(
+						tuple(true, 1L, null, BigDecimal.ONE, null),
+						tuple(false, 2L, null, null, "Carrinho não encontrado."),
+						tuple(true, 3L, null, BigDecimal.valueOf(3), null),
+						tuple(true, null, 0, new BigDecimal("7.00"), null),
+						tuple(false, null, 1, null, "Produto não encontrado."));
+	}
+
+	@Test
+	@DisplayName("Cotação pronta deve ser entregue antes de uma mais lenta que veio antes no lote")
+	void cotarLote_cotacaoLenta_entregaAsProntasPrimeiro() {
+		CountDownLatch segundaEntregue = new CountDownLatch(1);
+		when(carrinhoService.buscarPorIds(List.of(1L, 2L))).thenReturn(List.of(carrinho(1L), carrinho(2L)));
+		doAnswer(chamada -> {
+			CarrinhoDeCompras carrinho = chamada.getArgument(0);
+			if (carrinho.getId() == 1L && !segundaEntregue.await(5, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Segunda cotação não foi entregue.");
+			}
+			return BigDecimal.valueOf(carrinho.getId());
+		}).when(compraService).calcularCustoTotal(any(), any(), any());
+
+		List<CotacaoDTO> cotacoes = new ArrayList<>();
+		service.cotarLote(new CotacaoLoteDTO(List.of(1L, 2L), null), cotacao -> {
+			cotacoes.add(cotacao);
+			if (cotacao.carrinhoId() == 2L) {
+				segundaEntregue.countDown();
+			}
+		});
+
+		assertThat(cotacoes).extracting(CotacaoDTO::carrinhoId).containsExactly(2L, 1L);
+		assertThat(cotacoes).allMatch(CotacaoDTO::sucesso);
+	}
+
+	@Test
+	@DisplayName("Error ao cotar um carrinho deve virar falha desse carrinho, sem travar o lote")
+	void cotarLote_errorNaCotacao_entregaFalhaSemTravar() {
+		when(carrinhoService.buscarPorIds(List.of(1L, 2L, 3L)))
+				.thenReturn(List.of(carrinho(1L), carrinho(2L), carrinho(3L)));
+		doAnswer(chamada -> {
+			CarrinhoDeCompras carrinho = chamada.getArgument(0);
+			if (carrinho.getId() == 2L) {
+				throw new StackOverflowError();
+			}
+			return BigDecimal.valueOf(carrinho.getId());
+		}).when(compraService).calcularCustoTotal(any(), any(), any());
+
+		List<CotacaoDTO> cotacoes = assertTimeoutPreemptively(Duration.ofSeconds(5),
+				() -> cotar(new CotacaoLoteDTO(List.of(1L, 2L, 3L), null)));
+
+		assertThat(cotacoes)
+				.extracting(CotacaoDTO::carrinhoId, CotacaoDTO::sucesso, CotacaoDTO::mensagem)
+				.containsExactlyInAnyOrder(
+						tuple(1L, true, null),
+						tuple(2L, false, "Erro ao calcular cotação."),
+						tuple(3L, true, null));
+	}
+
+	@Test
+	@DisplayName("Com o cliente lento, as cotações iniciadas e não entregues devem ficar no limite")
+	void cotarLote_consumidorLento_limitaCotacoesEmAndamento() {
+		properties.getCotacaoLote().setMaxEmAndamento(3);
+		List<Long> ids = LongStream.rangeClosed(1, 50).boxed().collect(Collectors.toList());
+		when(carrinhoService.buscarPorIds(ids))
+				.thenReturn(ids.stream().map(this::carrinho).collect(Collectors.toList()));
+
+		AtomicInteger iniciadas = new AtomicInteger();
+		doAnswer(chamada -> {
+			iniciadas.incrementAndGet();
+			return BigDecimal.ONE;
+		}).when(compraService).calcularCustoTotal(any(), any(), any());
+
+		AtomicInteger entregues = new AtomicInteger();
+		AtomicInteger pico = new AtomicInteger();
+		service.cotarLote(new CotacaoLoteDTO(ids, null), cotacao -> {
+			dormir(2);
+			pico.accumulateAndGet(iniciadas.get() - entregues.getAndIncrement(), Math::max);
+		});
+
+		// As 3 em andamento mais a submetida ao retirar o resultado que está sendo entregue
+		assertThat(pico.get()).isLessThanOrEqualTo(4);
+		assertThat(entregues.get()).isEqualTo(50);
+	}
+
+	@Test
+	@DisplayName("Lote vazio ou acima do limite de carrinhos deve ser rejeitado")
+	void validarLote_vazioOuAcimaDoLimite_lancaExcecao() {
+		properties.getCotacaoLote().setMaxCarrinhos(2);
+
+		assertThatThrownBy(() -> service.validarLote(new CotacaoLoteDTO(List.of(1L, 2L),
+				List.of(new CarrinhoCotacaoDTO(Regiao.SUL, TipoCliente.OURO, List.of())))))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Lote de cotação excede o limite de 2 carrinhos.");
+		assertThatThrownBy(() -> service.validarLote(new CotacaoLoteDTO(Collections.emptyList(), null)))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Lote de cotação não pode ser vazio.");
+	}
+
+	private List<CotacaoDTO> cotar(CotacaoLoteDTO lote) {
+		List<CotacaoDTO> cotacoes = new ArrayList<>();
+		service.cotarLote(lote, cotacoes::add);
+		return cotacoes;
+	}
+
+	private CarrinhoDeCompras carrinho(Long id) {
+		return new CarrinhoDeCompras(id, cliente, List.of(new ItemCompra(id, produto, 1L)), LocalDate.now());
+	}
+
+	private static void dormir(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
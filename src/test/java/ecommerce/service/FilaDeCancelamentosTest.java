@@ -0,0 +1,126 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.entity.*;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CancelamentoPendenteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@Import(FilaDeCancelamentos.class)
+@EnableConfigurationProperties(CompraProperties.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class FilaDeCancelamentosTest {
+
+	@Autowired
+	private FilaDeCancelamentos fila;
+
+	@Autowired
+	private CancelamentoPendenteRepository repository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private IPagamentoExternal pagamentoExternal;
+
+	@BeforeEach
+	void setUp() {
+		repository.deleteAll();
+	}
+
+	@Test
+	@DisplayName("Cancelamentos aceitos pelo gateway devem sair da fila")
+	void processarPendentes_gatewayAceita_esvaziaFila() {
+		for (long transacao = 1; transacao <= 250; transacao++) {
+			fila.enfileirar(1L, transacao);
+		}
+
+		assertThat(fila.processarPendentes(Instant.now().plusSeconds(1))).isEqualTo(250);
+
+		assertThat(repository.count()).isZero();
+		verify(pagamentoExternal, times(250)).cancelarPagamento(eq(1L), anyLong());
+	}
+
+	@Test
+	@DisplayName("Cancelamento que falha deve permanecer na fila e ser repetido com espera crescente")
+	void processarPendentes_gatewayFalha_reagenda() {
+		doThrow(new IllegalStateException("Gateway fora do ar.")).doNothing()
+				.when(pagamentoExternal).cancelarPagamento(1L, 10L);
+		fila.enfileirar(1L, 10L);
+		fila.enfileirar(2L, 20L);
+		Instant agora = Instant.now().plusSeconds(1);
+
+		assertThat(fila.processarPendentes(agora)).isEqualTo(1);
+
+		List<CancelamentoPendente> pendentes = repository.findAll();
+		assertThat(pendentes).singleElement().satisfies(pendente -> {
+			assertThat(pendente.getTransacaoId()).isEqualTo(10L);
+			assertThat(pendente.getTentativas()).isEqualTo(1);
+			assertThat(pendente.getUltimoErro()).isEqualTo("Gateway fora do ar.");
+		});
+
+		assertThat(fila.processarPendentes(agora)).isZero();
+		assertThat(fila.processarPendentes(agora.plus(Duration.ofSeconds(2)))).isEqualTo(1);
+		assertThat(repository.count()).isZero();
+	}
+
+	@Test
+	@DisplayName("Exceção ao confirmar a reserva deve deixar o cancelamento na fila mesmo com o checkout desfeito")
+	void finalizarCompra_excecaoNaConfirmacao_enfileiraCancelamento() {
+		Cliente cliente = new Cliente(1L, "Cliente", Regiao.SUL, TipoCliente.BRONZE);
+		Produto produto = new Produto(5L, "Livro", "Descrição", new BigDecimal("30.00"), BigDecimal.ONE,
+				BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, false, TipoProduto.LIVRO);
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(10L, cliente, List.of(new ItemCompra(1L, produto, 1L)),
+				LocalDate.now());
+		ClienteService clienteService = mock(ClienteService.class);
+		CarrinhoDeComprasService carrinhoService = mock(CarrinhoDeComprasService.class);
+		IEstoqueExternal estoqueExternal = mock(IEstoqueExternal.class);
+		when(clienteService.buscarPorId(1L)).thenReturn(cliente);
+		when(carrinhoService.buscarComItensPorCarrinhoIdEClienteId(10L, cliente)).thenReturn(carrinho);
+		when(estoqueExternal.reservar(anyList(), anyList())).thenReturn(new ReservaEstoqueDTO(true, 7L, List.of()));
+		when(pagamentoExternal.autorizarPagamento(eq(1L), anyDouble())).thenReturn(new PagamentoDTO(true, 99L));
+		when(estoqueExternal.confirmarReserva(any(), anyList(), anyList()))
+				.thenThrow(new IllegalStateException("Estoque indisponível."));
+		CompraService compraService = new CompraService(carrinhoService, clienteService, estoqueExternal,
+				pagamentoExternal, new CompraProperties(), null, Runnable::run, fila,
+				new MetricasCompra(new SimpleMeterRegistry()), new TransactionTemplate(transactionManager));
+
+		assertThatThrownBy(() -> compraService.finalizarCompra(10L, 1L))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Estoque indisponível.");
+
+		assertThat(repository.findAll()).singleElement()
+				.satisfies(pendente -> assertThat(pendente.getTransacaoId()).isEqualTo(99L));
+		verify(pagamentoExternal, never()).cancelarPagamento(any(), any());
+		verify(estoqueExternal).liberarReserva(7L);
+	}
+}
@@ -0,0 +1,107 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CompraDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdempotenciaCompraTest {
+
+    private IdempotenciaCompra idempotencia;
+    private AtomicInteger execucoes;
+
+    @BeforeEach
+    void setUp() {
+        idempotencia = new IdempotenciaCompra(new CompraProperties());
+        execucoes = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Requisições simultâneas com a mesma chave devem executar a compra uma única vez")
+    void executar_repeticoesSimultaneas_executaUmaVez() throws Exception {
+        CountDownLatch primeiraEmAndamento = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<CompraDTO>> resultados = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 8; i++) {
+                resultados.add(executor.submit(() -> idempotencia.executar("chave", 1L, 10L, () -> {
+                    primeiraEmAndamento.countDown();
+                    aguardar(liberar);
+                    return new CompraDTO(true, (long) execucoes.incrementAndGet(), "Compra finalizada com sucesso.");
+                })));
+            }
+            primeiraEmAndamento.await(5, TimeUnit.SECONDS);
+            liberar.countDown();
+
+            for (Future<CompraDTO> resultado : resultados) {
+                assertThat(resultado.get(5, TimeUnit.SECONDS).transacaoPagamentoId()).isEqualTo(1L);
+            }
+            assertThat(execucoes.get()).isEqualTo(1);
+            assertThat(idempotencia.executar("chave", 1L, 10L, this::comprar).transacaoPagamentoId()).isEqualTo(1L);
+            assertThat(execucoes.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Checkout que falhou deve ser executado de novo na repetição")
+    void executar_falha_permiteNovaTentativa() {
+        assertThatThrownBy(() -> idempotencia.executar("chave", 1L, 10L, () -> {
+            throw new IllegalStateException("Itens fora de estoque.");
+        })).hasMessage("Itens fora de estoque.");
+
+        assertThat(idempotencia.executar("chave", 1L, 10L, this::comprar).sucesso()).isTrue();
+        assertThat(execucoes.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Mesma chave deve valer por cliente e não pode ser reaproveitada em outro carrinho")
+    void executar_chaveReaproveitada() {
+        idempotencia.executar("chave", 1L, 10L, this::comprar);
+        idempotencia.executar("chave", 2L, 20L, this::comprar);
+
+        assertThat(execucoes.get()).isEqualTo(2);
+        assertThatThrownBy(() -> idempotencia.executar("chave", 1L, 11L, this::comprar))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Chave de idempotência já usada em outro carrinho.");
+    }
+
+    @Test
+    @DisplayName("Sem chave, toda requisição deve executar a compra")
+    void executar_semChave_executaSempre() {
+        idempotencia.executar(null, 1L, 10L, this::comprar);
+        idempotencia.executar(null, 1L, 10L, this::comprar);
+
+        assertThat(execucoes.get()).isEqualTo(2);
+        assertThatThrownBy(() -> idempotencia.executar(" ", 1L, 10L, this::comprar))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CompraDTO comprar() {
+        return new CompraDTO(true, (long) execucoes.incrementAndGet(), "Compra finalizada com sucesso.");
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CarrinhoImportacaoDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.*;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ItemCompraRepository;
+import ecommerce.repository.ProdutoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ ImportacaoCarrinhosService.class, ClienteService.class, ProdutoService.class,
+		ImportacaoCarrinhosServiceTest.Configuracao.class })
+@EnableConfigurationProperties(CompraProperties.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ImportacaoCarrinhosServiceTest {
+
+	@TestConfiguration
+	static class Configuracao {
+
+		@Bean
+		SimpleMeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+
+	@Autowired
+	private ImportacaoCarrinhosService service;
+
+	@Autowired
+	private CarrinhoDeComprasRepository carrinhoRepository;
+
+	@Autowired
+	private ItemCompraRepository itemRepository;
+
+	@Autowired
+	private ClienteRepository clienteRepository;
+
+	@Autowired
+	private ProdutoRepository produtoRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+	private Cliente cliente;
+	private List<Produto> produtos;
+
+	@BeforeEach
+	void setUp() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		cliente = clienteRepository.save(new Cliente(null, "Cliente", Regiao.SUL, TipoCliente.BRONZE));
+		produtos = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			produtos.add(produtoRepository.save(new Produto(null, "Produto " + i, "Descrição",
+					new BigDecimal("20.00"), new BigDecimal("0.5"), BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE,
+					i % 2 == 0, TipoProduto.values()[i])));
+		}
+	}
+
+	@Test
+	@DisplayName("Carrinho com 2 mil itens deve ser gravado em lotes, não com um insert por item")
+	void importar_carrinhoGrande_insertsEmLotes() {
+		statistics.clear();
+
+		List<Long> ids = service.importar(List.of(carrinho(2_000)));
+
+		assertThat(statistics.getEntityInsertCount()).isEqualTo(2_001);
+		assertThat(statistics.getPrepareStatementCount()).isLessThan(200);
+
+		CarrinhoDeCompras importado = carrinhoRepository.findWithItensByIdAndCliente(ids.get(0), cliente)
+				.orElseThrow();
+		assertThat(importado.getItens()).hasSize(2_000);
+		assertThat(importado.isAgregadosValidos()).isTrue();
+		assertThat(importado.resumirAgregados().equivalente(ResumoCarrinho.calcular(importado.getItens()))).isTrue();
+	}
+
+	@Test
+	@DisplayName("Vários carrinhos devem ser criados na ordem enviada")
+	void importar_variosCarrinhos_idsNaOrdem() {
+		List<Long> ids = service.importar(List.of(carrinho(3), carrinho(1), carrinho(700), carrinho(2)));
+
+		assertThat(ids).hasSize(4).isSorted().doesNotHaveDuplicates();
+		assertThat(carrinhoRepository.findWithItensByIdAndCliente(ids.get(2), cliente).orElseThrow().getItens())
+				.hasSize(700);
+	}
+
+	@Test
+	@DisplayName("Produto inexistente ou quantidade inválida devem cancelar a importação inteira")
+	void importar_itemInvalido_naoGravaNada() {
+		long itensAntes = itemRepository.count();
+		CarrinhoImportacaoDTO valido = carrinho(10);
+		CarrinhoImportacaoDTO produtoInexistente = new CarrinhoImportacaoDTO(cliente.getId(),
+				List.of(new ItemCarrinhoDTO(-1L, 1L)));
+		CarrinhoImportacaoDTO quantidadeInvalida = new CarrinhoImportacaoDTO(cliente.getId(),
+				List.of(new ItemCarrinhoDTO(produtos.get(0).getId(), 0L)));
+
+		assertThatThrownBy(() -> service.importar(List.of(valido, produtoInexistente)))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Produto não encontrado.");
+		assertThatThrownBy(() -> service.importar(List.of(valido, quantidadeInvalida)))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Quantidade do item não pode ser zero ou negativa.");
+		assertThatThrownBy(() -> service.importar(List.of()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Importação de carrinhos não pode ser vazia.");
+
+		assertThat(itemRepository.count()).isEqualTo(itensAntes);
+	}
+
+	private CarrinhoImportacaoDTO carrinho(int quantidadeItens) {
+		List<ItemCarrinhoDTO> itens = new ArrayList<>(quantidadeItens);
+		for (int i = 0; i < quantidadeItens; i++) {
+			itens.add(new ItemCarrinhoDTO(produtos.get(i % produtos.size()).getId(), 1L + i % 4));
+		}
+		return new CarrinhoImportacaoDTO(cliente.getId(), itens);
+	}
+}
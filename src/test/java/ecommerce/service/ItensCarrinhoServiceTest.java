@@ -0,0 +1,229 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.CarrinhoAlteradoDTO;
+import ecommerce.dto.ItemCarrinhoDTO;
+import ecommerce.entity.*;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({ ItensCarrinhoService.class, ClienteService.class, ProdutoService.class,
+		ItensCarrinhoServiceTest.Configuracao.class })
+@EnableConfigurationProperties(CompraProperties.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ItensCarrinhoServiceTest {
+
+	@TestConfiguration
+	static class Configuracao {
+
+		@Bean
+		SimpleMeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+
+		@Bean
+		CompraService compraService() {
+			return new CompraService(null, null, null, null);
+		}
+	}
+
+	@Autowired
+	private ItensCarrinhoService service;
+
+	@Autowired
+	private CarrinhoDeComprasRepository carrinhoRepository;
+
+	@Autowired
+	private ClienteRepository clienteRepository;
+
+	@Autowired
+	private ProdutoRepository produtoRepository;
+
+	@SpyBean
+	private ProdutoService produtoService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private CompraService recalculo;
+	private Statistics statistics;
+	private Cliente cliente;
+	private List<Produto> produtos;
+
+	@BeforeEach
+	void setUp() {
+		recalculo = new CompraService(null, null, null, null);
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		cliente = clienteRepository.save(new Cliente(null, "Cliente", Regiao.NORDESTE, TipoCliente.PRATA));
+		produtos = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			produtos.add(produtoRepository.save(new Produto(null, "Produto " + i, "Descrição",
+					new BigDecimal("12.50").add(BigDecimal.valueOf(i)), new BigDecimal("0.8"), BigDecimal.TEN,
+					BigDecimal.TEN, BigDecimal.TEN, i % 2 == 0, TipoProduto.values()[i])));
+		}
+	}
+
+	@Test
+	@DisplayName("Incluir item deve gravar só o item e o carrinho, sem carregar os demais itens")
+	void adicionarItem_carrinhoGrande_gravaApenasODelta() {
+		CarrinhoDeCompras carrinho = persistirCarrinho(200);
+		statistics.clear();
+
+		CarrinhoAlteradoDTO alterado = service.adicionarItem(carrinho.getId(), cliente.getId(), carrinho.getVersao(),
+				new ItemCarrinhoDTO(produtos.get(1).getId(), 3L));
+
+		assertThat(statistics.getCollectionStatistics(CarrinhoDeCompras.class.getName() + ".itens").getLoadCount())
+				.isZero();
+		assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+		assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+		assertThat(alterado.sucesso()).isTrue();
+		assertThat(alterado.itemId()).isNotNull();
+		assertThat(alterado.versao()).isEqualTo(carrinho.getVersao() + 1);
+		assertThat(alterado.custoTotal()).isEqualTo(cotarRecarregado(carrinho.getId()));
+	}
+
+	@Test
+	@DisplayName("Alterar e remover itens devem manter a cotação igual ao recálculo, sem carregar os demais itens")
+	void alterarQuantidadeERemoverItem_cotacaoIgualAoRecalculo() {
+		CarrinhoDeCompras carrinho = persistirCarrinho(20);
+		Long itemId = carrinho.getItens().get(3).getId();
+
+		CarrinhoAlteradoDTO alterado = service.alterarQuantidade(carrinho.getId(), cliente.getId(),
+				carrinho.getVersao(), itemId, 7L);
+		assertThat(alterado.custoTotal()).isEqualTo(cotarRecarregado(carrinho.getId()));
+
+		statistics.clear();
+		CarrinhoAlteradoDTO removido = service.removerItem(carrinho.getId(), cliente.getId(), alterado.versao(),
+				itemId);
+		assertThat(statistics.getCollectionStatistics(CarrinhoDeCompras.class.getName() + ".itens").getLoadCount())
+				.isZero();
+		assertThat(statistics.getEntityDeleteCount()).isEqualTo(1);
+		assertThat(removido.versao()).isGreaterThan(alterado.versao());
+		assertThat(removido.custoTotal()).isEqualTo(cotarRecarregado(carrinho.getId()));
+		assertThat(carrinhoRepository.findWithItensByIdAndCliente(carrinho.getId(), cliente).orElseThrow().getItens())
+				.hasSize(19);
+	}
+
+	@Test
+	@DisplayName("Remover item de carrinho com agregados invalidados deve excluir o item e reconstruir os agregados")
+	void removerItem_agregadosInvalidados_excluiItem() {
+		CarrinhoDeCompras carrinho = persistirCarrinho(3);
+		Long itemId = carrinho.getItens().get(1).getId();
+		Produto produto = produtos.get(0);
+		produto.setPreco(new BigDecimal("30.00"));
+		produtoService.salvar(produto);
+
+		CarrinhoAlteradoDTO removido = service.removerItem(carrinho.getId(), cliente.getId(), null, itemId);
+
+		CarrinhoDeCompras recarregado = carrinhoRepository.findWithItensByIdAndCliente(carrinho.getId(), cliente)
+				.orElseThrow();
+		assertThat(recarregado.getItens()).hasSize(2).extracting(ItemCompra::getId).doesNotContain(itemId);
+		assertThat(recarregado.isAgregadosValidos()).isTrue();
+		assertThat(recarregado.resumirAgregados().equivalente(ResumoCarrinho.calcular(recarregado.getItens())))
+				.isTrue();
+		assertThat(removido.custoTotal()).isEqualTo(cotarRecarregado(carrinho.getId()));
+	}
+
+	@Test
+	@DisplayName("Produto alterado entre a leitura e a gravação do carrinho deve fazer a alteração falhar")
+	void adicionarItem_produtoAlteradoDuranteAAlteracao_lancaExcecao() {
+		CarrinhoDeCompras carrinho = persistirCarrinho(3);
+		Produto alterado = produtos.get(0);
+		Produto incluido = produtos.get(1);
+		// O carrinho já foi lido quando o produto a incluir é buscado
+		doAnswer(chamada -> {
+			alterado.setPreco(new BigDecimal("30.00"));
+			CompletableFuture.runAsync(() -> produtoService.salvar(alterado)).join();
+			return chamada.callRealMethod();
+		}).when(produtoService).buscarPorId(incluido.getId());
+
+		assertThatThrownBy(() -> service.adicionarItem(carrinho.getId(), cliente.getId(), null,
+				new ItemCarrinhoDTO(incluido.getId(), 1L)))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Carrinho alterado por outra requisição.");
+
+		CarrinhoDeCompras recarregado = carrinhoRepository.findWithItensByIdAndCliente(carrinho.getId(), cliente)
+				.orElseThrow();
+		assertThat(recarregado.getItens()).hasSize(3);
+		assertThat(recarregado.isAgregadosValidos()).isFalse();
+	}
+
+	@Test
+	@DisplayName("Alteração com versão desatualizada deve falhar sem alterar o carrinho")
+	void alterarQuantidade_versaoDesatualizada_lancaExcecao() {
+		CarrinhoDeCompras carrinho = persistirCarrinho(2);
+		Long itemId = carrinho.getItens().get(0).getId();
+		service.alterarQuantidade(carrinho.getId(), cliente.getId(), carrinho.getVersao(), itemId, 2L);
+
+		assertThatThrownBy(() -> service.alterarQuantidade(carrinho.getId(), cliente.getId(), carrinho.getVersao(),
+				itemId, 5L))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("Carrinho alterado por outra requisição.");
+
+		CarrinhoDeCompras recarregado = carrinhoRepository.findWithItensByIdAndCliente(carrinho.getId(), cliente)
+				.orElseThrow();
+		assertThat(recarregado.getItens().get(0).getQuantidade()).isEqualTo(2L);
+	}
+
+	@Test
+	@DisplayName("Item de outro carrinho ou quantidade inválida devem ser rejeitados")
+	void alterarQuantidade_itemDeOutroCarrinho_lancaExcecao() {
+		CarrinhoDeCompras carrinho = persistirCarrinho(1);
+		CarrinhoDeCompras outro = persistirCarrinho(1);
+
+		assertThatThrownBy(() -> service.alterarQuantidade(carrinho.getId(), cliente.getId(), null,
+				outro.getItens().get(0).getId(), 2L))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Item não encontrado no carrinho.");
+		assertThatThrownBy(() -> service.adicionarItem(carrinho.getId(), cliente.getId(), null,
+				new ItemCarrinhoDTO(produtos.get(0).getId(), 0L)))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Quantidade do item não pode ser zero ou negativa.");
+	}
+
+	private BigDecimal cotarRecarregado(Long carrinhoId) {
+		CarrinhoDeCompras carrinho = carrinhoRepository.findWithItensByIdAndCliente(carrinhoId, cliente).orElseThrow();
+		List<ItemCompra> itens = new ArrayList<>(carrinho.getItens());
+		CarrinhoDeCompras copia = new CarrinhoDeCompras();
+		copia.setItens(itens);
+		return recalculo.calcularCustoTotal(copia, cliente.getRegiao(), cliente.getTipo());
+	}
+
+	private CarrinhoDeCompras persistirCarrinho(int quantidadeItens) {
+		List<ItemCompra> itens = new ArrayList<>();
+		for (int i = 0; i < quantidadeItens; i++) {
+			itens.add(new ItemCompra(null, produtos.get(i % produtos.size()), 1L + i % 3));
+		}
+		CarrinhoDeCompras carrinho = new CarrinhoDeCompras(null, cliente, itens, LocalDate.now());
+		carrinho.recalcularAgregados();
+		return carrinhoRepository.save(carrinho);
+	}
+}
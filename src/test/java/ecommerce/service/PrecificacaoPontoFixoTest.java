@@ -0,0 +1,140 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.config.CompraProperties.MotorPrecificacao;
+import ecommerce.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PrecificacaoPontoFixoTest {
+
+    private CompraService compraServiceBigDecimal;
+    private CompraService compraServicePontoFixo;
+    private PrecificacaoPontoFixo pontoFixo;
+
+    @BeforeEach
+    void setUp() {
+        compraServiceBigDecimal = new CompraService(null, null, null, null);
+
+        CompraProperties properties = new CompraProperties();
+        properties.getPrecificacao().setMotor(MotorPrecificacao.PONTO_FIXO);
+        compraServicePontoFixo = new CompraService(null, null, null, null, properties);
+        pontoFixo = RegrasPrecificacao.compilar(properties.getPrecificacao().getRegras().paraDTO(), 1).pontoFixo();
+    }
+
+    @Test
+    @DisplayName("Ponto fixo deve produzir o mesmo BigDecimal (valor e escala) para carrinhos aleatórios")
+    void calcularCustoTotal_carrinhosAleatorios_resultadoIdentico() {
+        SplittableRandom random = new SplittableRandom(7);
+
+        for (int i = 0; i < 2_000; i++) {
+            CarrinhoDeCompras carrinho = carrinhoAleatorio(random, random.nextInt(1, 30));
+
+            for (Regiao regiao : Regiao.values()) {
+                for (TipoCliente tipoCliente : TipoCliente.values()) {
+                    BigDecimal esperado = compraServiceBigDecimal.calcularCustoTotal(carrinho, regiao, tipoCliente);
+                    BigDecimal calculado = compraServicePontoFixo.calcularCustoTotal(carrinho, regiao, tipoCliente);
+
+                    assertThat(calculado).isEqualTo(esperado);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Preço com mais de duas casas decimais deve recorrer ao cálculo com BigDecimal")
+    void calcularCustoTotal_precoNaoRepresentavel_usaBigDecimal() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(List.of(criarItem("10.005", 3L, TipoProduto.LIVRO, "7.5", true)));
+
+        assertThat(pontoFixo.calcularCustoTotal(carrinho.getItens(), Regiao.SUL, TipoCliente.BRONZE)).isNull();
+        assertThat(compraServicePontoFixo.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE))
+                .isEqualTo(compraServiceBigDecimal.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE));
+    }
+
+    @Test
+    @DisplayName("Estouro de long deve recorrer ao cálculo com BigDecimal")
+    void calcularCustoTotal_estouro_usaBigDecimal() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(List.of(criarItem("90000000000.00", 2L, TipoProduto.MOVEL, "60.0", false)));
+
+        assertThat(pontoFixo.calcularCustoTotal(carrinho.getItens(), Regiao.NORTE, TipoCliente.PRATA)).isNull();
+        assertThat(compraServicePontoFixo.calcularCustoTotal(carrinho, Regiao.NORTE, TipoCliente.PRATA))
+                .isEqualTo(compraServiceBigDecimal.calcularCustoTotal(carrinho, Regiao.NORTE, TipoCliente.PRATA));
+    }
+
+    @Test
+    @DisplayName("Preço e peso alterados depois de uma cotação devem valer na cotação seguinte")
+    void calcularCustoTotal_produtoAlterado_usaValoresNovos() {
+        ItemCompra item = criarItem("10.00", 2L, TipoProduto.LIVRO, "7.5", false);
+        List<ItemCompra> itens = List.of(item);
+        BigDecimal antes = pontoFixo.calcularCustoTotal(itens, Regiao.SUL, TipoCliente.BRONZE);
+
+        item.getProduto().setPreco(new BigDecimal("25.00"));
+        item.getProduto().setPesoFisico(new BigDecimal("60.0"));
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(itens);
+
+        assertThat(pontoFixo.calcularCustoTotal(itens, Regiao.SUL, TipoCliente.BRONZE))
+                .isNotEqualTo(antes)
+                .isEqualTo(compraServiceBigDecimal.calcularCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE));
+    }
+
+    @Test
+    @DisplayName("Ponto fixo deve manter as validações de quantidade e preço")
+    void calcularCustoTotal_entradasInvalidas_lancaExcecao() {
+        CarrinhoDeCompras quantidadeZero = new CarrinhoDeCompras();
+        quantidadeZero.setItens(List.of(criarItem("10.00", 0L, TipoProduto.LIVRO, "1.0", false)));
+        CarrinhoDeCompras precoNegativo = new CarrinhoDeCompras();
+        precoNegativo.setItens(List.of(criarItem("-10.00", 1L, TipoProduto.LIVRO, "1.0", false)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> compraServicePontoFixo.calcularCustoTotal(quantidadeZero, Regiao.SUL, TipoCliente.BRONZE));
+        assertThrows(IllegalArgumentException.class,
+                () -> compraServicePontoFixo.calcularCustoTotal(precoNegativo, Regiao.SUL, TipoCliente.BRONZE));
+    }
+
+    private static CarrinhoDeCompras carrinhoAleatorio(SplittableRandom random, int quantidadeItens) {
+        TipoProduto[] tipos = TipoProduto.values();
+        List<ItemCompra> itens = new ArrayList<>();
+
+        for (int i = 0; i < quantidadeItens; i++) {
+            Produto p = new Produto();
+            p.setPreco(BigDecimal.valueOf(random.nextLong(0, 150_000), 2));
+            p.setTipo(tipos[random.nextInt(tipos.length)]);
+            p.setFragil(random.nextBoolean());
+            p.setPesoFisico(BigDecimal.valueOf(random.nextLong(0, 3_000), 2));
+            p.setComprimento(BigDecimal.valueOf(random.nextLong(0, 80)));
+            p.setLargura(BigDecimal.valueOf(random.nextLong(0, 80)));
+            p.setAltura(BigDecimal.valueOf(random.nextLong(0, 800), 1));
+
+            itens.add(new ItemCompra(null, p, random.nextLong(1, 6)));
+        }
+
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(itens);
+        return carrinho;
+    }
+
+    private static ItemCompra criarItem(String preco, long qtd, TipoProduto tipo, String pesoKg, boolean fragil) {
+        Produto p = new Produto();
+        p.setPreco(new BigDecimal(preco));
+        p.setTipo(tipo);
+        p.setFragil(fragil);
+        p.setPesoFisico(new BigDecimal(pesoKg));
+        p.setComprimento(BigDecimal.ZERO);
+        p.setLargura(BigDecimal.ZERO);
+        p.setAltura(BigDecimal.ZERO);
+
+        return new ItemCompra(null, p, qtd);
+    }
+}
@@ -0,0 +1,107 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ProdutoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+public class ProdutoServiceCacheTest {
+
+	private ProdutoRepository repository;
+	private CarrinhoDeComprasRepository carrinhoRepository;
+	private SimpleMeterRegistry registry;
+	private ProdutoService service;
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(ProdutoRepository.class);
+		carrinhoRepository = mock(CarrinhoDeComprasRepository.class);
+		registry = new SimpleMeterRegistry();
+		service = new ProdutoService(repository, carrinhoRepository, new CompraProperties(), registry);
+	}
+
+	@Test
+	@DisplayName("Segunda leitura do mesmo produto deve vir do cache, sem consultar o repositório")
+	void buscarPorId_leituraRepetida_consultaRepositorioUmaVez() {
+		Produto produto = produto(1L, "30.00");
+		when(repository.findById(1L)).thenReturn(Optional.of(produto));
+
+		assertThat(service.buscarPorId(1L)).isSameAs(produto);
+		assertThat(service.buscarPorId(1L)).isSameAs(produto);
+
+		verify(repository, times(1)).findById(1L);
+		assertThat(acessos("hit")).isEqualTo(1);
+		assertThat(acessos("miss")).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Leitura após salvar deve recarregar o produto do repositório")
+	void buscarPorId_aposSalvar_recarregaProduto() {
+		Produto antigo = produto(1L, "30.00");
+		Produto alterado = produto(1L, "45.00");
+		when(repository.findById(1L)).thenReturn(Optional.of(antigo), Optional.of(alterado));
+		when(repository.save(alterado)).thenReturn(alterado);
+
+		service.buscarPorId(1L);
+		service.salvar(alterado);
+
+		assertThat(service.buscarPorId(1L).getPreco()).isEqualByComparingTo("45.00");
+		verify(repository, times(2)).findById(1L);
+		verify(carrinhoRepository).invalidarAgregadosComProduto(1L);
+		assertThat(acessos("hit")).isZero();
+		assertThat(acessos("miss")).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Busca em lote deve consultar o repositório só pelos produtos ausentes do cache")
+	void buscarPorIds_parteEmCache_carregaApenasAusentes() {
+		Produto primeiro = produto(1L, "30.00");
+		Produto segundo = produto(2L, "12.00");
+		when(repository.findById(1L)).thenReturn(Optional.of(primeiro));
+		when(repository.findAllById(anyIterable())).thenReturn(List.of(segundo));
+
+		service.buscarPorId(1L);
+
+		assertThat(service.buscarPorIds(List.of(1L, 2L))).containsExactlyInAnyOrder(primeiro, segundo);
+		verify(repository).findAllById(List.of(2L));
+		assertThat(acessos("hit")).isEqualTo(1);
+		assertThat(acessos("miss")).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Produto inexistente não deve ficar no cache")
+	void buscarPorId_produtoInexistente_naoGuardaNoCache() {
+		when(repository.findById(9L)).thenReturn(Optional.empty());
+
+		for (int i = 0; i < 2; i++) {
+			assertThatThrownBy(() -> service.buscarPorId(9L))
+					.isInstanceOf(IllegalArgumentException.class)
+					.hasMessage("Produto não encontrado.");
+		}
+
+		verify(repository, times(2)).findById(9L);
+	}
+
+	private double acessos(String resultado) {
+		return registry.get("cache.gets").tags("cache", "produtos", "result", resultado).functionCounter().count();
+	}
+
+	private static Produto produto(Long id, String preco) {
+		return new Produto(id, "Produto " + id, "Descrição", new BigDecimal(preco), BigDecimal.ONE,
+				BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, false, TipoProduto.LIVRO);
+	}
+}
@@ -0,0 +1,107 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.dto.ExplicacaoCotacaoDTO;
+import ecommerce.dto.RegraAplicadaDTO;
+import ecommerce.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RastroPrecificacaoTest {
+
+    private CompraService compraService;
+
+    @BeforeEach
+    void setUp() {
+        compraService = new CompraService(null, null, null, null);
+    }
+
+    @Test
+    @DisplayName("Explicação deve chegar ao mesmo total da cotação e listar as regras aplicadas em ordem")
+    void explicarCustoTotal_carrinhoMisto_mesmoTotalERegras() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(List.of(
+                criarItem("100.00", 5L, TipoProduto.LIVRO, "2.0", true),
+                criarItem("300.00", 2L, TipoProduto.ELETRONICO, "1.0", false)));
+
+        ExplicacaoCotacaoDTO explicacao = compraService.explicarCustoTotal(carrinho, Regiao.NORDESTE, TipoCliente.PRATA);
+
+        assertThat(explicacao.custoTotal())
+                .isEqualTo(compraService.calcularCustoTotal(carrinho, Regiao.NORDESTE, TipoCliente.PRATA));
+        assertThat(explicacao.regras()).extracting(RegraAplicadaDTO::regra).containsExactly(
+                "DESCONTO_CATEGORIA", "DESCONTO_CATEGORIA", "DESCONTO_VALOR", "FAIXA_FRETE", "TAXA_MINIMA",
+                "TAXA_FRAGIL", "FATOR_REGIAO", "BENEFICIO_CLIENTE");
+        assertThat(explicacao.regras().get(0))
+                .isEqualTo(new RegraAplicadaDTO("DESCONTO_CATEGORIA", "ELETRONICO", "2 unidades", BigDecimal.ZERO));
+        assertThat(explicacao.regras().get(1).valor()).isEqualByComparingTo("0.10");
+        assertThat(explicacao.regras().get(2).valor()).isEqualByComparingTo("0.20");
+        assertThat(explicacao.regras().get(3).alvo()).isEqualTo("C");
+        assertThat(explicacao.regras().get(5).valor()).isEqualByComparingTo("25.00");
+        assertThat(explicacao.regras().get(6).alvo()).isEqualTo("NORDESTE");
+        assertThat(explicacao.regras().get(7).valor()).isEqualByComparingTo("0.50");
+    }
+
+    @Test
+    @DisplayName("Carrinho vazio deve ser explicado com total zero e nenhuma regra")
+    void explicarCustoTotal_carrinhoVazio_semRegras() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(List.of());
+
+        ExplicacaoCotacaoDTO explicacao = compraService.explicarCustoTotal(carrinho, Regiao.SUL, TipoCliente.OURO);
+
+        assertThat(explicacao.custoTotal()).isEqualByComparingTo("0.00");
+        assertThat(explicacao.regras()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Explicação deve manter as validações da cotação")
+    void explicarCustoTotal_entradasInvalidas_lancaExcecao() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(List.of(criarItem("10.00", 0L, TipoProduto.LIVRO, "1.0", false)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> compraService.explicarCustoTotal(carrinho, null, TipoCliente.BRONZE));
+        assertThrows(IllegalArgumentException.class,
+                () -> compraService.explicarCustoTotal(carrinho, Regiao.SUL, TipoCliente.BRONZE));
+    }
+
+    @Test
+    @DisplayName("Buffer deve guardar só as regras mais recentes quando a capacidade é excedida")
+    void desde_capacidadeExcedida_mantemMaisRecentes() {
+        RastroPrecificacao rastro = RastroPrecificacao.daThread();
+        long marca = rastro.marcar();
+
+        for (int i = 0; i < RastroPrecificacao.CAPACIDADE + 10; i++) {
+            rastro.registrar(RastroPrecificacao.Regra.TAXA_FRAGIL, 0, i);
+        }
+
+        RegrasPrecificacao regrasPrecificacao = RegrasPrecificacao.compilar(
+                new CompraProperties().getPrecificacao().getRegras().paraDTO(), 1);
+
+        List<RegraAplicadaDTO> regras = rastro.desde(marca, regrasPrecificacao);
+        assertThat(regras).hasSize(RastroPrecificacao.CAPACIDADE);
+        assertThat(regras.get(0).decisao()).isEqualTo("10 unidades frágeis");
+        assertThat(regras.get(regras.size() - 1).decisao())
+                .isEqualTo((RastroPrecificacao.CAPACIDADE + 9) + " unidades frágeis");
+    }
+
+    private static ItemCompra criarItem(String preco, long qtd, TipoProduto tipo, String pesoKg, boolean fragil) {
+        Produto p = new Produto();
+        p.setPreco(new BigDecimal(preco));
+        p.setTipo(tipo);
+        p.setFragil(fragil);
+        p.setPesoFisico(new BigDecimal(pesoKg));
+        p.setComprimento(BigDecimal.ZERO);
+        p.setLargura(BigDecimal.ZERO);
+        p.setAltura(BigDecimal.ZERO);
+
+        return new ItemCompra(null, p, qtd);
+    }
+}
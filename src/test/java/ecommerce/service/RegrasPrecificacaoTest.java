@@ -0,0 +1,213 @@
+package ecommerce.service;
+
+import ecommerce.config.CompraProperties;
+import ecommerce.config.CompraProperties.MotorPrecificacao;
+import ecommerce.dto.DescontoQuantidadeDTO;
+import ecommerce.dto.DescontoValorDTO;
+import ecommerce.dto.FaixaPesoDTO;
+import ecommerce.dto.RegraAplicadaDTO;
+import ecommerce.dto.RegrasPrecificacaoDTO;
+import ecommerce.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RegrasPrecificacaoTest {
+
+    private CompraService compraServiceBigDecimal;
+    private CompraService compraServicePontoFixo;
+
+    @BeforeEach
+    void setUp() {
+        compraServiceBigDecimal = new CompraService(null, null, null, null);
+
+        CompraProperties properties = new CompraProperties();
+        properties.getPrecificacao().setMotor(MotorPrecificacao.PONTO_FIXO);
+        compraServicePontoFixo = new CompraService(null, null, null, null, properties);
+    }
+
+    @Test
+    @DisplayName("Limiares devem valer nas bordas: quantidade mínima inclusiva, valor mínimo exclusivo, peso máximo inclusivo")
+    void consultas_bordas_respeitamLimiares() {
+        RegrasPrecificacao regras = RegrasPrecificacao.compilar(padrao(), 1);
+
+        assertThat(regras.descontoCategoria(2)).isEqualByComparingTo("0");
+        assertThat(regras.descontoCategoria(3)).isEqualByComparingTo("0.05");
+        assertThat(regras.descontoCategoria(7)).isEqualByComparingTo("0.10");
+        assertThat(regras.descontoCategoria(1_000)).isEqualByComparingTo("0.15");
+
+        assertThat(regras.indiceDescontoValor(new BigDecimal("500.00"))).isEqualTo(-1);
+        assertThat(regras.indiceDescontoValor(new BigDecimal("500.01"))).isZero();
+        assertThat(regras.indiceDescontoValor(new BigDecimal("1000.01"))).isEqualTo(1);
+
+        assertThat(regras.nomeFaixa(regras.indiceFaixa(new BigDecimal("5.00")))).isEqualTo("A");
+        assertThat(regras.nomeFaixa(regras.indiceFaixa(new BigDecimal("5.0001")))).isEqualTo("B");
+        assertThat(regras.nomeFaixa(regras.indiceFaixa(new BigDecimal("50.00")))).isEqualTo("C");
+        assertThat(regras.nomeFaixa(regras.indiceFaixa(new BigDecimal("50.01")))).isEqualTo("D");
+    }
+
+    @Test
+    @DisplayName("Regras fora de ordem devem ser ordenadas e a versão deve avançar a cada troca")
+    void substituirRegras_foraDeOrdem_ordenaEIncrementaVersao() {
+        RegrasPrecificacaoDTO atuais = compraServiceBigDecimal.regrasPrecificacao();
+        List<FaixaPesoDTO> faixas = new ArrayList<>(atuais.faixasPeso());
+        Collections.reverse(faixas);
+
+        RegrasPrecificacaoDTO novas = compraServiceBigDecimal.substituirRegrasPrecificacao(
+                new RegrasPrecificacaoDTO(null, atuais.descontosCategoria(), atuais.descontosValor(), faixas,
+                        atuais.taxaItemFragil(), atuais.fatoresRegiao(), atuais.fatoresCliente()));
+
+        assertThat(novas.versao()).isEqualTo(atuais.versao() + 1);
+        assertThat(novas.faixasPeso()).isEqualTo(atuais.faixasPeso());
+    }
+
+    @Test
+    @DisplayName("Substituição a partir de uma versão antiga deve ser recusada")
+    void substituirRegras_versaoDesatualizada_lancaExcecao() {
+        RegrasPrecificacaoDTO lidas = compraServiceBigDecimal.regrasPrecificacao();
+        compraServiceBigDecimal.substituirRegrasPrecificacao(lidas);
+
+        assertThrows(IllegalStateException.class, () -> compraServiceBigDecimal.substituirRegrasPrecificacao(lidas));
+    }
+
+    @Test
+    @DisplayName("Tabela inválida deve ser recusada sem alterar as regras vigentes")
+    void substituirRegras_tabelaInvalida_lancaExcecao() {
+        RegrasPrecificacaoDTO atuais = compraServiceBigDecimal.regrasPrecificacao();
+        Map<Regiao, BigDecimal> semNorte = new EnumMap<>(atuais.fatoresRegiao());
+        semNorte.remove(Regiao.NORTE);
+
+        assertThrows(IllegalArgumentException.class, () -> compraServiceBigDecimal.substituirRegrasPrecificacao(
+                new RegrasPrecificacaoDTO(null, List.of(new DescontoQuantidadeDTO(3, new BigDecimal("1.5"))),
+                        atuais.descontosValor(), atuais.faixasPeso(), atuais.taxaItemFragil(),
+                        atuais.fatoresRegiao(), atuais.fatoresCliente())));
+        assertThrows(IllegalArgumentException.class, () -> compraServiceBigDecimal.substituirRegrasPrecificacao(
+                new RegrasPrecificacaoDTO(null, atuais.descontosCategoria(), atuais.descontosValor(),
+                        List.of(new FaixaPesoDTO(null, BigDecimal.ONE, BigDecimal.ZERO),
+                                new FaixaPesoDTO(null, BigDecimal.TEN, BigDecimal.ZERO)),
+                        atuais.taxaItemFragil(), atuais.fatoresRegiao(), atuais.fatoresCliente())));
+        assertThrows(IllegalArgumentException.class, () -> compraServiceBigDecimal.substituirRegrasPrecificacao(
+                new RegrasPrecificacaoDTO(null, atuais.descontosCategoria(), atuais.descontosValor(),
+                        atuais.faixasPeso(), atuais.taxaItemFragil(), semNorte, atuais.fatoresCliente())));
+        assertThrows(IllegalArgumentException.class, () -> compraServiceBigDecimal.substituirRegrasPrecificacao(null));
+
+        assertThat(compraServiceBigDecimal.regrasPrecificacao()).isEqualTo(atuais);
+    }
+
+    @Test
+    @DisplayName("Ponto fixo deve seguir as novas regras e recorrer ao BigDecimal quando elas não cabem na escala")
+    void calcularCustoTotal_regrasSubstituidas_motoresIdenticos() {
+        RegrasPrecificacaoDTO promocao = new RegrasPrecificacaoDTO(null,
+                List.of(new DescontoQuantidadeDTO(2, new BigDecimal("0.07")),
+                        new DescontoQuantidadeDTO(10, new BigDecimal("0.25"))),
+                List.of(new DescontoValorDTO(new BigDecimal("300.00"), new BigDecimal("0.05"))),
+                List.of(new FaixaPesoDTO(new BigDecimal("2.00"), BigDecimal.ZERO, BigDecimal.ZERO),
+                        new FaixaPesoDTO(null, new BigDecimal("3.50"), new BigDecimal("9.90"))),
+                new BigDecimal("2.50"), padrao().fatoresRegiao(),
+                Map.of(TipoCliente.BRONZE, BigDecimal.ONE, TipoCliente.PRATA, new BigDecimal("0.75"),
+                        TipoCliente.OURO, new BigDecimal("0.10")));
+        RegrasPrecificacaoDTO naoRepresentavel = new RegrasPrecificacaoDTO(null, promocao.descontosCategoria(),
+                List.of(new DescontoValorDTO(new BigDecimal("300.00"), new BigDecimal("0.125"))),
+                promocao.faixasPeso(), promocao.taxaItemFragil(), promocao.fatoresRegiao(), promocao.fatoresCliente());
+
+        assertThat(RegrasPrecificacao.compilar(promocao, 1).pontoFixo()).isNotNull();
+        assertThat(RegrasPrecificacao.compilar(naoRepresentavel, 1).pontoFixo()).isNull();
+
+        for (RegrasPrecificacaoDTO regras : List.of(promocao, naoRepresentavel)) {
+            compraServiceBigDecimal.substituirRegrasPrecificacao(regras);
+            compraServicePontoFixo.substituirRegrasPrecificacao(regras);
+
+            SplittableRandom random = new SplittableRandom(11);
+            for (int i = 0; i < 500; i++) {
+                CarrinhoDeCompras carrinho = carrinhoAleatorio(random, random.nextInt(1, 20));
+
+                for (Regiao regiao : Regiao.values()) {
+                    for (TipoCliente tipoCliente : TipoCliente.values()) {
+                        assertThat(compraServicePontoFixo.calcularCustoTotal(carrinho, regiao, tipoCliente))
+                                .isEqualTo(compraServiceBigDecimal.calcularCustoTotal(carrinho, regiao, tipoCliente));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Fator de frete deve combinar região e cliente para as 15 combinações")
+    void fatorFrete_todasCombinacoes_produtoDosFatores() {
+        RegrasPrecificacao regras = RegrasPrecificacao.compilar(padrao(), 1);
+
+        for (Regiao regiao : Regiao.values()) {
+            for (TipoCliente tipoCliente : TipoCliente.values()) {
+                assertThat(regras.fatorFrete(regiao, tipoCliente))
+                        .isEqualByComparingTo(regras.fatorRegiao(regiao).multiply(regras.fatorCliente(tipoCliente)));
+            }
+        }
+        assertThat(regras.fatorFrete(Regiao.NORTE, TipoCliente.PRATA)).isEqualByComparingTo("0.65");
+    }
+
+    @Test
+    @DisplayName("Frete isento não deve calcular o peso dos produtos, exceto quando a cotação é explicada")
+    void calcularCustoTotal_freteIsento_naoCalculaPeso() {
+        Produto produto = mock(Produto.class);
+        when(produto.getPreco()).thenReturn(new BigDecimal("100.00"));
+        when(produto.getPrecoCentavos()).thenReturn(10_000L);
+        when(produto.getTipo()).thenReturn(TipoProduto.LIVRO);
+        when(produto.calcularPesoTributavel()).thenReturn(new BigDecimal("20.0000"));
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(List.of(new ItemCompra(null, produto, 2L)));
+
+        assertThat(compraServiceBigDecimal.calcularCustoTotal(carrinho, Regiao.NORTE, TipoCliente.OURO))
+                .isEqualByComparingTo("200.00");
+        assertThat(compraServicePontoFixo.calcularCustoTotal(carrinho, Regiao.NORTE, TipoCliente.OURO))
+                .isEqualByComparingTo("200.00");
+        verify(produto, never()).calcularPesoTributavel();
+        verify(produto, never()).calcularPesoTributavelDecigramas();
+        verify(produto, never()).isFragil();
+
+        assertThat(compraServiceBigDecimal.explicarCustoTotal(carrinho, Regiao.NORTE, TipoCliente.OURO).regras())
+                .extracting(RegraAplicadaDTO::regra).contains("FAIXA_FRETE");
+        verify(produto, atLeastOnce()).calcularPesoTributavel();
+    }
+
+    private static RegrasPrecificacaoDTO padrao() {
+        return new CompraProperties().getPrecificacao().getRegras().paraDTO();
+    }
+
+    private static CarrinhoDeCompras carrinhoAleatorio(SplittableRandom random, int quantidadeItens) {
+        TipoProduto[] tipos = TipoProduto.values();
+        List<ItemCompra> itens = new ArrayList<>();
+
+        for (int i = 0; i < quantidadeItens; i++) {
+            Produto p = new Produto();
+            p.setPreco(BigDecimal.valueOf(random.nextLong(0, 150_000), 2));
+            p.setTipo(tipos[random.nextInt(tipos.length)]);
+            p.setFragil(random.nextBoolean());
+            p.setPesoFisico(BigDecimal.valueOf(random.nextLong(0, 3_000), 2));
+            p.setComprimento(BigDecimal.valueOf(random.nextLong(0, 80)));
+            p.setLargura(BigDecimal.valueOf(random.nextLong(0, 80)));
+            p.setAltura(BigDecimal.valueOf(random.nextLong(0, 800), 1));
+
+            itens.add(new ItemCompra(null, p, random.nextLong(1, 6)));
+        }
+
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setItens(itens);
+        return carrinho;
+    }
+}